@@ -17,19 +17,26 @@ import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.apache.karaf.cellar.core.event.EventBatcher;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.features.Feature;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
+import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The BundleEventHandler is responsible to process received cluster event for bundles.
@@ -40,8 +47,12 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
 
     public static final String SWITCH_ID = "org.apache.karaf.cellar.bundle.handler";
 
+    private static final long REFRESH_TIMEOUT = 30000;
+
     private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
 
+    private EventBatcher<ClusterBundleEvent> batcher;
+
     /**
      * Handle received bundle cluster events.
      *
@@ -84,6 +95,10 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
                         return;
                     }
                 }
+                if (batcher != null && batcher.isEnabled()) {
+                    batcher.enqueue(event);
+                    return;
+                }
                 if (event.getType() == Bundle.INSTALLED) {
                     installBundleFromLocation(event.getLocation(), event.getStartLevel());
                     LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
@@ -99,12 +114,8 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
                         LOGGER.debug("CELLAR BUNDLE: starting {}/{}", event.getSymbolicName(), event.getVersion());
                     } catch (Exception e) {
                         // start failed, update cluster state
-                        Map<String, BundleState> clusterBundles = clusterManager.getMap(Constants.BUNDLE_MAP + Configurations.SEPARATOR + event.getSourceGroup().getName());
-                        BundleState state = clusterBundles.get(event.getSymbolicName() + "/" + event.getVersion());
-                        if (state != null) {
-                            state.setStatus(Bundle.INSTALLED);
-                            clusterBundles.put(event.getSymbolicName() + "/" + event.getVersion(), state);
-                        }
+                        clusterManager.executeOnEntry(Constants.BUNDLE_MAP + Configurations.SEPARATOR + event.getSourceGroup().getName(),
+                                event.getSymbolicName() + "/" + event.getVersion(), BundleStateUpdate.status(Bundle.INSTALLED));
                     }
                 } else if (event.getType() == Bundle.RESOLVED) {
                     if (!isInstalled(event.getLocation())) {
@@ -135,12 +146,158 @@ public class BundleEventHandler extends BundleSupport implements EventHandler<Cl
         }
     }
 
+    /**
+     * Apply a batch of cluster bundle events, in the batch order.
+     * The uninstalled and updated bundles are refreshed once, and the installed bundles are resolved in a single
+     * operation, right before the next bundles start or stop (or at the end of the batch). The bundles started by
+     * consecutive events are resolved together and then started in the events order.
+     *
+     * @param events the ordered cluster bundle events.
+     */
+    protected void apply(List<ClusterBundleEvent> events) {
+        Set<Bundle> toRefresh = new LinkedHashSet<Bundle>();
+        Set<Bundle> toResolve = new LinkedHashSet<Bundle>();
+        List<ClusterBundleEvent> toStart = new ArrayList<ClusterBundleEvent>();
+
+        for (ClusterBundleEvent event : events) {
+            if (event.getType() != Bundle.ACTIVE) {
+                start(toStart, toRefresh, toResolve);
+            }
+            try {
+                if (event.getType() == Bundle.INSTALLED) {
+                    if (!isInstalled(event.getLocation())) {
+                        LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
+                        installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                    }
+                } else if (event.getType() == Bundle.UNINSTALLED) {
+                    Bundle bundle = findBundle(event.getLocation());
+                    if (bundle != null) {
+                        LOGGER.debug("CELLAR BUNDLE: uninstalling {}/{}", event.getSymbolicName(), event.getVersion());
+                        uninstallBundle(event.getSymbolicName(), event.getVersion());
+                        toResolve.remove(bundle);
+                        toRefresh.add(bundle);
+                    }
+                } else if (event.getType() == BundleState.UPDATE) {
+                    LOGGER.debug("CELLAR BUNDLE: updating {}/{}", event.getSymbolicName(), event.getVersion());
+                    updateBundle(event.getSymbolicName(), event.getVersion(), event.getLocation());
+                    Bundle bundle = findBundle(event.getLocation());
+                    if (bundle != null) {
+                        toRefresh.add(bundle);
+                    }
+                } else if (event.getType() == Bundle.ACTIVE) {
+                    if (!isInstalled(event.getLocation())) {
+                        LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
+                        installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                    }
+                    Bundle bundle = findBundle(event.getLocation());
+                    if (bundle != null) {
+                        toResolve.add(bundle);
+                    }
+                    toStart.add(event);
+                } else if (event.getType() == Bundle.RESOLVED) {
+                    if (!isInstalled(event.getLocation())) {
+                        LOGGER.debug("CELLAR BUNDLE: installing {}/{}", event.getSymbolicName(), event.getVersion());
+                        installBundleFromLocation(event.getLocation(), event.getStartLevel());
+                    }
+                    Bundle bundle = findBundle(event.getLocation());
+                    if (bundle == null) {
+                        LOGGER.warn("CELLAR BUNDLE: unable to find bundle located {} on node", event.getLocation());
+                    } else if (bundle.getState() == Bundle.ACTIVE) {
+                        wire(toRefresh, toResolve);
+                        LOGGER.debug("CELLAR BUNDLE: stopping bundle {}/{} on node", event.getSymbolicName(), event.getVersion());
+                        stopBundle(event.getSymbolicName(), event.getVersion());
+                    } else {
+                        toResolve.add(bundle);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.error("CELLAR BUNDLE: failed to handle bundle event {}/{}", event.getSymbolicName(), event.getVersion(), e);
+            }
+        }
+        start(toStart, toRefresh, toResolve);
+        wire(toRefresh, toResolve);
+    }
+
+    /**
+     * Start the bundles of consecutive events, after the pending refresh and resolution.
+     *
+     * @param toStart the pending start events, cleared once applied.
+     * @param toRefresh the bundles pending refresh.
+     * @param toResolve the bundles pending resolution.
+     */
+    private void start(List<ClusterBundleEvent> toStart, Set<Bundle> toRefresh, Set<Bundle> toResolve) {
+        if (toStart.isEmpty()) {
+            return;
+        }
+        wire(toRefresh, toResolve);
+        for (ClusterBundleEvent event : toStart) {
+            try {
+                startBundle(event.getSymbolicName(), event.getVersion());
+                LOGGER.debug("CELLAR BUNDLE: starting {}/{}", event.getSymbolicName(), event.getVersion());
+            } catch (Exception e) {
+                LOGGER.warn("CELLAR BUNDLE: failed to start bundle {}/{}", event.getSymbolicName(), event.getVersion(), e);
+                // start failed, update cluster state
+                clusterManager.executeOnEntry(Constants.BUNDLE_MAP + Configurations.SEPARATOR + event.getSourceGroup().getName(),
+                        event.getSymbolicName() + "/" + event.getVersion(), BundleStateUpdate.status(Bundle.INSTALLED));
+            }
+        }
+        toStart.clear();
+    }
+
+    /**
+     * Apply the pending refresh and resolution.
+     *
+     * @param toRefresh the bundles pending refresh, cleared once refreshed.
+     * @param toResolve the bundles pending resolution, cleared once resolved.
+     */
+    protected void wire(Set<Bundle> toRefresh, Set<Bundle> toResolve) {
+        if (toRefresh.isEmpty() && toResolve.isEmpty()) {
+            return;
+        }
+        FrameworkWiring wiring = getBundleContext().getBundle(0).adapt(FrameworkWiring.class);
+        if (!toRefresh.isEmpty()) {
+            refresh(wiring, toRefresh);
+            toRefresh.clear();
+        }
+        if (!toResolve.isEmpty()) {
+            wiring.resolveBundles(toResolve);
+            toResolve.clear();
+        }
+    }
+
+    /**
+     * Refresh the given bundles and wait for the end of the refresh.
+     *
+     * @param wiring the framework wiring.
+     * @param bundles the bundles to refresh.
+     */
+    private void refresh(FrameworkWiring wiring, Set<Bundle> bundles) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        wiring.refreshBundles(bundles, event -> {
+            if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED || event.getType() == FrameworkEvent.ERROR) {
+                latch.countDown();
+            }
+        });
+        try {
+            if (!latch.await(REFRESH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("CELLAR BUNDLE: bundles refresh is taking longer than expected");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void init() {
-        // nothing to do
+        batcher = new EventBatcher<ClusterBundleEvent>(Constants.CATEGORY, ClusterBundleEvent::getSequence, this::apply);
+        batcher.setConfigurationAdmin(configurationAdmin);
+        batcher.init();
     }
 
     public void destroy() {
-        // nothing to do
+        if (batcher != null) {
+            batcher.destroy();
+            batcher = null;
+        }
     }
 
     /**
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Immutable projection of the bundle headers used by Cellar to identify a bundle.
+ */
+public class BundleIdentity {
+
+    private final String symbolicName;
+    private final String version;
+    private final String name;
+    private final String location;
+    private final long lastModified;
+
+    public BundleIdentity(String symbolicName, String version, String name, String location, long lastModified) {
+        this.symbolicName = symbolicName;
+        this.version = version;
+        this.name = name;
+        this.location = location;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Read the identity of a bundle from its headers.
+     *
+     * @param bundle the bundle.
+     * @return the bundle identity.
+     */
+    public static BundleIdentity of(Bundle bundle) {
+        String symbolicName = bundle.getSymbolicName();
+        String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
+        // get the bundle name or location.
+        String name = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
+        // if there is no name, then default to symbolic name.
+        name = (name == null) ? symbolicName : name;
+        // if there is no symbolic name, resort to location.
+        name = (name == null) ? bundle.getLocation() : name;
+        return new BundleIdentity(symbolicName, version, name, bundle.getLocation(), bundle.getLastModified());
+    }
+
+    public String getSymbolicName() {
+        return symbolicName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Return the Cellar bundle ID (symbolicName/version).
+     *
+     * @return the Cellar bundle ID.
+     */
+    public String getId() {
+        return symbolicName + "/" + version;
+    }
+
+    /**
+     * Check if the identity matches the given symbolic name and version.
+     *
+     * @param symbolicName the bundle symbolic name.
+     * @param version the bundle version.
+     * @return true if the identity matches, false else.
+     */
+    public boolean matches(String symbolicName, String version) {
+        return this.symbolicName != null && this.symbolicName.equals(symbolicName)
+                && this.version != null && this.version.equals(version);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the bundles identity, to avoid resolving the bundle headers each time a bundle is identified.
+ * An entry is invalidated when the bundle is updated or uninstalled.
+ */
+public class BundleIdentityCache implements SynchronousBundleListener {
+
+    private final Map<Long, BundleIdentity> identities = new ConcurrentHashMap<Long, BundleIdentity>();
+
+    private BundleContext bundleContext;
+
+    public void init() {
+        bundleContext.addBundleListener(this);
+    }
+
+    public void destroy() {
+        bundleContext.removeBundleListener(this);
+        identities.clear();
+    }
+
+    /**
+     * Get the identity of a bundle.
+     *
+     * @param bundle the bundle.
+     * @return the bundle identity.
+     */
+    public BundleIdentity get(Bundle bundle) {
+        BundleIdentity identity = identities.get(bundle.getBundleId());
+        // the last modified check covers an update not yet notified to this listener
+        if (identity == null || identity.getLastModified() != bundle.getLastModified()) {
+            identity = BundleIdentity.of(bundle);
+            if (bundle.getState() != Bundle.UNINSTALLED) {
+                identities.put(bundle.getBundleId(), identity);
+            }
+        }
+        return identity;
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        if (event.getType() == BundleEvent.UPDATED || event.getType() == BundleEvent.UNINSTALLED) {
+            identities.remove(event.getBundle().getBundleId());
+        }
+    }
+
+    public BundleContext getBundleContext() {
+        return bundleContext;
+    }
+
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+}
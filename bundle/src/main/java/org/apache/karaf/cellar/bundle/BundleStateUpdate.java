@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+/**
+ * Atomic update of a bundle state in the cluster, applied where the bundle state is stored.
+ * Only the non null fields are updated.
+ */
+public class BundleStateUpdate implements ClusterEntryProcessor<String, BundleState> {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean create;
+    private Long id;
+    private String name;
+    private String symbolicName;
+    private String version;
+    private String location;
+    private Integer startLevel;
+    private Integer status;
+
+    /**
+     * Create or update the whole bundle state.
+     *
+     * @param id the bundle ID.
+     * @param name the bundle name.
+     * @param symbolicName the bundle symbolic name.
+     * @param version the bundle version.
+     * @param location the bundle location.
+     * @param startLevel the bundle start level.
+     * @param status the bundle status.
+     * @return the bundle state update.
+     */
+    public static BundleStateUpdate state(long id, String name, String symbolicName, String version, String location, Integer startLevel, int status) {
+        BundleStateUpdate update = new BundleStateUpdate();
+        update.create = true;
+        update.id = id;
+        update.name = name;
+        update.symbolicName = symbolicName;
+        update.version = version;
+        update.location = location;
+        update.startLevel = startLevel;
+        update.status = status;
+        return update;
+    }
+
+    /**
+     * Update the status of an existing bundle state.
+     *
+     * @param status the bundle status.
+     * @return the bundle state update.
+     */
+    public static BundleStateUpdate status(int status) {
+        BundleStateUpdate update = new BundleStateUpdate();
+        update.status = status;
+        return update;
+    }
+
+    @Override
+    public BundleState process(String key, BundleState state) {
+        if (state == null) {
+            if (!create) {
+                return null;
+            }
+            state = new BundleState();
+        }
+        if (id != null) {
+            state.setId(id);
+        }
+        if (name != null) {
+            state.setName(name);
+        }
+        if (symbolicName != null) {
+            state.setSymbolicName(symbolicName);
+        }
+        if (version != null) {
+            state.setVersion(version);
+        }
+        if (location != null) {
+            state.setLocation(location);
+        }
+        if (startLevel != null) {
+            state.setStartLevel(startLevel);
+        }
+        if (status != null) {
+            state.setStatus(status);
+        }
+        return state;
+    }
+
+}
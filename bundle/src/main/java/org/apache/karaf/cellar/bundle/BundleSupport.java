@@ -14,6 +14,7 @@
 package org.apache.karaf.cellar.bundle;
 
 import org.apache.karaf.cellar.core.CellarSupport;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.features.BundleInfo;
 import org.apache.karaf.features.Feature;
 import org.apache.karaf.features.FeaturesService;
@@ -36,6 +37,9 @@ public class BundleSupport extends CellarSupport {
 
     protected BundleContext bundleContext;
 	private FeaturesService featuresService;
+    private FeaturesBundleIndex featuresBundleIndex;
+    private BundleIdentityCache bundleIdentityCache;
+    private ArtifactCache artifactCache;
 
     /**
      * Locally install a bundle.
@@ -45,7 +49,17 @@ public class BundleSupport extends CellarSupport {
      * @throws BundleException in case of installation failure.
      */
     public void installBundleFromLocation(String location, Integer level) throws BundleException {
-        Bundle bundle = getBundleContext().installBundle(location);
+        Bundle bundle;
+        if (artifactCache != null && artifactCache.isEnabled() && ArtifactCache.isCacheable(location) && findBundle(location) == null) {
+            // get the bundle content from the cluster artifact cache, the bundle location is unchanged
+            try (InputStream is = artifactCache.openStream(location)) {
+                bundle = getBundleContext().installBundle(location, is);
+            } catch (IOException e) {
+                throw new BundleException("Can't install bundle " + location, e);
+            }
+        } else {
+            bundle = getBundleContext().installBundle(location);
+        }
         if (level != null) {
             bundle.adapt(BundleStartLevel.class).setStartLevel(level);
         }
@@ -76,7 +90,7 @@ public class BundleSupport extends CellarSupport {
         Bundle[] bundles = getBundleContext().getBundles();
         if (bundles != null) {
             for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
+                if (getIdentity(bundle).matches(symbolicName, version)) {
                     bundle.uninstall();
                 }
             }
@@ -94,7 +108,7 @@ public class BundleSupport extends CellarSupport {
         Bundle[] bundles = getBundleContext().getBundles();
         if (bundles != null) {
             for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
+                if (getIdentity(bundle).matches(symbolicName, version)) {
                     bundle.start();
                 }
             }
@@ -112,7 +126,7 @@ public class BundleSupport extends CellarSupport {
         Bundle[] bundles = getBundleContext().getBundles();
         if (bundles != null) {
             for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
+                if (getIdentity(bundle).matches(symbolicName, version)) {
                     bundle.stop();
                 }
             }
@@ -131,7 +145,7 @@ public class BundleSupport extends CellarSupport {
         Bundle[] bundles = getBundleContext().getBundles();
         if (bundles != null) {
             for (Bundle bundle : bundles) {
-                if (bundle.getSymbolicName().equals(symbolicName) && bundle.getHeaders().get("Bundle-Version").toString().equals(version)) {
+                if (getIdentity(bundle).matches(symbolicName, version)) {
                     if (location != null) {
                         try {
                             update(bundle, new URL(location));
@@ -173,6 +187,9 @@ public class BundleSupport extends CellarSupport {
      * @throws Exception in case of retrieval failure.
      */
 	protected List<Feature> retrieveFeature(String bundleLocation) throws Exception {
+		if (featuresBundleIndex != null) {
+			return featuresBundleIndex.getFeatures(bundleLocation);
+		}
 		Feature[] features = featuresService.listFeatures();
 		List<Feature> matchingFeatures = new ArrayList<Feature>();
 		for (Feature feature : features) {
@@ -204,6 +221,43 @@ public class BundleSupport extends CellarSupport {
 		this.featuresService = featureService;
 	}
 
+    /**
+     * Get the identity (symbolic name, version, name, location) of a bundle.
+     *
+     * @param bundle the bundle.
+     * @return the bundle identity.
+     */
+    protected BundleIdentity getIdentity(Bundle bundle) {
+        if (bundleIdentityCache != null) {
+            return bundleIdentityCache.get(bundle);
+        }
+        return BundleIdentity.of(bundle);
+    }
+
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+    public BundleIdentityCache getBundleIdentityCache() {
+        return bundleIdentityCache;
+    }
+
+    public void setBundleIdentityCache(BundleIdentityCache bundleIdentityCache) {
+        this.bundleIdentityCache = bundleIdentityCache;
+    }
+
+    public FeaturesBundleIndex getFeaturesBundleIndex() {
+        return featuresBundleIndex;
+    }
+
+    public void setFeaturesBundleIndex(FeaturesBundleIndex featuresBundleIndex) {
+        this.featuresBundleIndex = featuresBundleIndex;
+    }
+
     /**
      * Finds locally installed bundle by its location.
      * 
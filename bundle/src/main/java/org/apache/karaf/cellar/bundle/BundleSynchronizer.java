@@ -247,27 +247,22 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
                 // push local bundles to the cluster
                 for (Bundle bundle : bundles) {
                     long bundleId = bundle.getBundleId();
-                    String symbolicName = bundle.getSymbolicName();
-                    String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-                    String bundleLocation = bundle.getLocation();
+                    BundleIdentity identity = getIdentity(bundle);
+                    String symbolicName = identity.getSymbolicName();
+                    String version = identity.getVersion();
+                    String bundleLocation = identity.getLocation();
                     int status = bundle.getState();
                     int level = bundle.adapt(BundleStartLevel.class).getStartLevel();
 
-                    String id = getId(bundle);
+                    String id = identity.getId();
 
                     // check if the pid is marked as local.
                     if (isAllowed(group, Constants.CATEGORY, bundleLocation, EventType.OUTBOUND)) {
                         if (!clusterBundles.containsKey(id)) {
                             LOGGER.debug("CELLAR BUNDLE: deploying bundle {} on the cluster", id);
                             BundleState bundleState = new BundleState();
-                            // get the bundle name or location.
-                            String name = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
-                            // if there is no name, then default to symbolic name.
-                            name = (name == null) ? symbolicName : name;
-                            // if there is no symbolic name, resort to location.
-                            name = (name == null) ? bundle.getLocation() : name;
                             bundleState.setId(bundleId);
-                            bundleState.setName(name);
+                            bundleState.setName(identity.getName());
                             bundleState.setStartLevel(level);
                             bundleState.setSymbolicName(symbolicName);
                             bundleState.setVersion(version);
@@ -286,8 +281,7 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
                             if (bundleState.getStatus() != status) {
                                 LOGGER.debug("CELLAR BUNDLE: updating bundle id: {}, name: {}, location: {} status: {} on the cluster", id, symbolicName, bundleLocation, status);
                                 // update cluster state
-                                bundleState.setStatus(status);
-                                clusterBundles.put(id, bundleState);
+                                clusterManager.executeOnEntry(Constants.BUNDLE_MAP + Configurations.SEPARATOR + groupName, id, BundleStateUpdate.status(status));
                                 // send cluster event
                                 ClusterBundleEvent clusterEvent = new ClusterBundleEvent(symbolicName, version, bundleLocation, level, status);
                                 clusterEvent.setSourceGroup(group);
@@ -300,19 +294,15 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
                     } else LOGGER.trace("CELLAR BUNDLE: bundle {} is marked BLOCKED OUTBOUND for cluster group {}", bundleLocation, groupName);
                 }
                 // clean bundles on the cluster not present locally
+                Set<String> localBundleIds = new HashSet<String>();
+                for (Bundle bundle : bundleContext.getBundles()) {
+                    localBundleIds.add(getId(bundle));
+                }
                 for (Map.Entry<String, BundleState> entry : clusterBundles.entrySet()) {
                     String id = entry.getKey();
                     BundleState state = entry.getValue();
                     if (state != null && isAllowed(group, Constants.CATEGORY, state.getLocation(), EventType.OUTBOUND)) {
-                        boolean found = false;
-                        for (Bundle bundle : bundleContext.getBundles()) {
-                            String localBundleId = getId(bundle);
-                            if (id.equals(localBundleId)) {
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found) {
+                        if (!localBundleIds.contains(id)) {
                             clusterBundles.remove(id);
                         }
                     }
@@ -331,9 +321,7 @@ public class BundleSynchronizer extends BundleSupport implements Synchronizer {
      * @return The Cellar bundle ID.
      */
     private String getId(Bundle bundle) {
-        String symbolicName = bundle.getSymbolicName();
-        String version = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-        return symbolicName + "/" + version;
+        return getIdentity(bundle).getId();
     }
 
     /**
@@ -16,17 +16,22 @@ package org.apache.karaf.cellar.bundle;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Cluster bundle event.
  */
 public class ClusterBundleEvent extends Event {
 
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
     private String symbolicName;
     private String version;
     private String location;
     private Integer startLevel;
     private int type;
     private Node local;
+    private long sequence;
 
     public ClusterBundleEvent(String symbolicName, String version, String location, Integer startLevel, int type) {
         super(symbolicName + "/" + version);
@@ -35,6 +40,7 @@ public class ClusterBundleEvent extends Event {
         this.location = location;
         this.startLevel = startLevel;
         this.type = type;
+        this.sequence = SEQUENCE.incrementAndGet();
     }
 
     public String getSymbolicName() {
@@ -84,4 +90,18 @@ public class ClusterBundleEvent extends Event {
     public void setLocal(Node local) {
         this.local = local;
     }
+
+    /**
+     * Get the position of the event in the stream of bundle events produced by the source node.
+     *
+     * @return the event sequence number on the source node.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
 }
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.features.BundleInfo;
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.FeatureEvent;
+import org.apache.karaf.features.FeaturesListener;
+import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.RepositoryEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the features containing a given bundle location.
+ * The index is populated from the features repositories at init, and then maintained incrementally using the
+ * features repositories events. As the same feature can be provided by several repositories, each indexed feature
+ * is reference counted by repository, and only removed when the last repository providing it is removed.
+ */
+public class FeaturesBundleIndex implements FeaturesListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(FeaturesBundleIndex.class);
+
+    private final Map<String, List<Feature>> featuresByLocation = new ConcurrentHashMap<String, List<Feature>>();
+    // location -> feature id -> URIs of the repositories providing the feature, only updated while holding the
+    // featuresByLocation entry of the location
+    private final Map<String, Map<String, Set<String>>> repositoriesByLocation = new ConcurrentHashMap<String, Map<String, Set<String>>>();
+
+    private FeaturesService featuresService;
+
+    public void init() {
+        if (featuresService == null) {
+            return;
+        }
+        try {
+            for (Repository repository : featuresService.listRepositories()) {
+                addRepository(repository);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR BUNDLE: can't populate the features bundle index", e);
+        }
+    }
+
+    public void destroy() {
+        featuresByLocation.clear();
+        repositoriesByLocation.clear();
+    }
+
+    /**
+     * Get the features containing the given bundle location.
+     *
+     * @param bundleLocation the bundle location.
+     * @return the list of features containing the bundle (never null).
+     */
+    public List<Feature> getFeatures(String bundleLocation) {
+        if (bundleLocation == null) {
+            return Collections.emptyList();
+        }
+        List<Feature> features = featuresByLocation.get(key(bundleLocation));
+        return (features != null) ? features : Collections.<Feature>emptyList();
+    }
+
+    @Override
+    public void featureEvent(FeatureEvent event) {
+        // the features content doesn't change when a feature is installed or uninstalled
+    }
+
+    @Override
+    public void repositoryEvent(RepositoryEvent event) {
+        if (event == null || event.getRepository() == null) {
+            return;
+        }
+        if (RepositoryEvent.EventType.RepositoryAdded.equals(event.getType())) {
+            addRepository(event.getRepository());
+        } else {
+            removeRepository(event.getRepository());
+        }
+    }
+
+    private void addRepository(Repository repository) {
+        String uri = String.valueOf(repository.getURI());
+        try {
+            for (Feature feature : repository.getFeatures()) {
+                for (BundleInfo bundleInfo : feature.getBundles()) {
+                    add(bundleInfo.getLocation(), feature, uri);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR BUNDLE: can't index features repository {}", repository.getURI(), e);
+        }
+    }
+
+    private void removeRepository(Repository repository) {
+        String uri = String.valueOf(repository.getURI());
+        try {
+            for (Feature feature : repository.getFeatures()) {
+                for (BundleInfo bundleInfo : feature.getBundles()) {
+                    remove(bundleInfo.getLocation(), feature, uri);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR BUNDLE: can't remove features repository {} from index", repository.getURI(), e);
+        }
+    }
+
+    private void add(String location, final Feature feature, final String repository) {
+        if (location == null) {
+            return;
+        }
+        // the lists are copy-on-write, so readers never see a partially updated list
+        featuresByLocation.compute(key(location), (k, features) -> {
+            repositoriesByLocation.computeIfAbsent(k, l -> new HashMap<String, Set<String>>())
+                    .computeIfAbsent(feature.getId(), id -> new HashSet<String>()).add(repository);
+            List<Feature> updated = new ArrayList<Feature>();
+            if (features != null) {
+                for (Feature f : features) {
+                    if (!f.getId().equals(feature.getId())) {
+                        updated.add(f);
+                    }
+                }
+            }
+            updated.add(feature);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    private void remove(String location, final Feature feature, final String repository) {
+        if (location == null) {
+            return;
+        }
+        featuresByLocation.computeIfPresent(key(location), (k, features) -> {
+            Map<String, Set<String>> repositories = repositoriesByLocation.get(k);
+            if (repositories != null) {
+                Set<String> providers = repositories.get(feature.getId());
+                if (providers != null) {
+                    providers.remove(repository);
+                    if (!providers.isEmpty()) {
+                        // the feature is still provided by another repository
+                        return features;
+                    }
+                    repositories.remove(feature.getId());
+                }
+                if (repositories.isEmpty()) {
+                    repositoriesByLocation.remove(k);
+                }
+            }
+            List<Feature> updated = new ArrayList<Feature>();
+            for (Feature f : features) {
+                if (!f.getId().equals(feature.getId())) {
+                    updated.add(f);
+                }
+            }
+            return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+        });
+    }
+
+    private static String key(String location) {
+        return location.toLowerCase(Locale.ENGLISH);
+    }
+
+    public FeaturesService getFeaturesService() {
+        return featuresService;
+    }
+
+    public void setFeaturesService(FeaturesService featuresService) {
+        this.featuresService = featuresService;
+    }
+
+}
@@ -81,15 +81,11 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
             if (groups != null && !groups.isEmpty()) {
                 for (Group group : groups) {
 
-                    // get the bundle name or location.
-                    String name = (String) event.getBundle().getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
-                    // if there is no name, then default to symbolic name.
-                    name = (name == null) ? event.getBundle().getSymbolicName() : name;
-                    // if there is no symbolic name, resort to location.
-                    name = (name == null) ? event.getBundle().getLocation() : name;
-                    String symbolicName = event.getBundle().getSymbolicName();
-                    String version = event.getBundle().getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-                    String bundleLocation = event.getBundle().getLocation();
+                    BundleIdentity identity = getIdentity(event.getBundle());
+                    String name = identity.getName();
+                    String symbolicName = identity.getSymbolicName();
+                    String version = identity.getVersion();
+                    String bundleLocation = identity.getLocation();
                     int status = event.getBundle().getState();
                     int startLevel = event.getBundle().adapt(BundleStartLevel.class).getStartLevel();
 
@@ -104,18 +100,8 @@ public class LocalBundleListener extends BundleSupport implements SynchronousBun
                             if (event.getType() == BundleEvent.UNINSTALLED) {
                                 clusterBundles.remove(symbolicName + "/" + version);
                             } else {
-                                BundleState state = clusterBundles.get(symbolicName + "/" + version);
-                                if (state == null) {
-                                    state = new BundleState();
-                                }
-                                state.setId(event.getBundle().getBundleId());
-                                state.setName(name);
-                                state.setVersion(version);
-                                state.setSymbolicName(symbolicName);
-                                state.setStatus(status);
-                                state.setStartLevel(startLevel);
-                                state.setLocation(bundleLocation);
-                                clusterBundles.put(symbolicName + "/" + version, state);
+                                clusterManager.executeOnEntry(Constants.BUNDLE_MAP + Configurations.SEPARATOR + group.getName(), symbolicName + "/" + version,
+                                        BundleStateUpdate.state(event.getBundle().getBundleId(), name, symbolicName, version, bundleLocation, startLevel, status));
                             }
 
                             // check the features first
@@ -14,15 +14,19 @@
 package org.apache.karaf.cellar.bundle.internal.osgi;
 
 import org.apache.karaf.cellar.bundle.BundleEventHandler;
+import org.apache.karaf.cellar.bundle.BundleIdentityCache;
 import org.apache.karaf.cellar.bundle.BundleSynchronizer;
+import org.apache.karaf.cellar.bundle.FeaturesBundleIndex;
 import org.apache.karaf.cellar.bundle.LocalBundleListener;
 import org.apache.karaf.cellar.bundle.management.CellarBundleMBean;
 import org.apache.karaf.cellar.bundle.management.internal.CellarBundleMBeanImpl;
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.features.FeaturesListener;
 import org.apache.karaf.features.FeaturesService;
 import org.apache.karaf.util.tracker.BaseActivator;
 import org.apache.karaf.util.tracker.annotation.ProvideService;
@@ -38,11 +42,14 @@ import java.util.Hashtable;
 @Services(
         provides = {
                 @ProvideService(EventHandler.class),
+                @ProvideService(FeaturesListener.class),
                 @ProvideService(Synchronizer.class),
-                @ProvideService(CellarBundleMBean.class)
+                @ProvideService(CellarBundleMBean.class),
+                @ProvideService(BundleIdentityCache.class)
         },
         requires = {
                 @RequireService(ClusterManager.class),
+                @RequireService(ArtifactCache.class),
                 @RequireService(GroupManager.class),
                 @RequireService(ConfigurationAdmin.class),
                 @RequireService(EventProducer.class),
@@ -53,6 +60,8 @@ public class Activator extends BaseActivator {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
+    private BundleIdentityCache bundleIdentityCache;
+    private FeaturesBundleIndex featuresBundleIndex;
     private LocalBundleListener localBundleListener;
     private BundleSynchronizer synchronizer;
     private BundleEventHandler eventHandler;
@@ -76,6 +85,21 @@ public class Activator extends BaseActivator {
         FeaturesService featuresService = getTrackedService(FeaturesService.class);
         if (featuresService == null)
             return;
+        ArtifactCache artifactCache = getTrackedService(ArtifactCache.class);
+        if (artifactCache == null)
+            return;
+
+        LOGGER.debug("CELLAR BUNDLE: init bundle identity cache");
+        bundleIdentityCache = new BundleIdentityCache();
+        bundleIdentityCache.setBundleContext(bundleContext);
+        bundleIdentityCache.init();
+        register(BundleIdentityCache.class, bundleIdentityCache);
+
+        LOGGER.debug("CELLAR BUNDLE: init features bundle index");
+        featuresBundleIndex = new FeaturesBundleIndex();
+        featuresBundleIndex.setFeaturesService(featuresService);
+        featuresBundleIndex.init();
+        register(FeaturesListener.class, featuresBundleIndex);
 
         LOGGER.debug("CELLAR BUNDLE: init even handler");
         eventHandler = new BundleEventHandler();
@@ -83,7 +107,10 @@ public class Activator extends BaseActivator {
         eventHandler.setClusterManager(clusterManager);
         eventHandler.setGroupManager(groupManager);
         eventHandler.setBundleContext(bundleContext);
+        eventHandler.setBundleIdentityCache(bundleIdentityCache);
+        eventHandler.setArtifactCache(artifactCache);
         eventHandler.setFeaturesService(featuresService);
+        eventHandler.setFeaturesBundleIndex(featuresBundleIndex);
         eventHandler.init();
         Hashtable props = new Hashtable();
         props.put("managed", "true");
@@ -96,7 +123,9 @@ public class Activator extends BaseActivator {
         localBundleListener.setConfigurationAdmin(configurationAdmin);
         localBundleListener.setEventProducer(eventProducer);
         localBundleListener.setFeaturesService(featuresService);
+        localBundleListener.setFeaturesBundleIndex(featuresBundleIndex);
         localBundleListener.setBundleContext(bundleContext);
+        localBundleListener.setBundleIdentityCache(bundleIdentityCache);
         localBundleListener.init();
 
         LOGGER.debug("CELLAR BUNDLE: init synchronizer");
@@ -105,6 +134,8 @@ public class Activator extends BaseActivator {
         synchronizer.setGroupManager(groupManager);
         synchronizer.setClusterManager(clusterManager);
         synchronizer.setBundleContext(bundleContext);
+        synchronizer.setBundleIdentityCache(bundleIdentityCache);
+        synchronizer.setArtifactCache(artifactCache);
         synchronizer.setEventProducer(eventProducer);
         synchronizer.init(bundleContext);
         props = new Hashtable();
@@ -118,6 +149,7 @@ public class Activator extends BaseActivator {
         mbean.setGroupManager(groupManager);
         mbean.setEventProducer(eventProducer);
         mbean.setBundleContext(bundleContext);
+        mbean.setBundleIdentityCache(bundleIdentityCache);
         props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=bundle,name=" + System.getProperty("karaf.name"));
         mbeanRegistration = bundleContext.registerService(getInterfaceNames(mbean), mbean, props);
@@ -144,6 +176,14 @@ public class Activator extends BaseActivator {
             eventHandler.destroy();
             eventHandler = null;
         }
+        if (featuresBundleIndex != null) {
+            featuresBundleIndex.destroy();
+            featuresBundleIndex = null;
+        }
+        if (bundleIdentityCache != null) {
+            bundleIdentityCache.destroy();
+            bundleIdentityCache = null;
+        }
     }
 
 }
@@ -13,6 +13,8 @@
  */
 package org.apache.karaf.cellar.bundle.management.internal;
 
+import org.apache.karaf.cellar.bundle.BundleIdentity;
+import org.apache.karaf.cellar.bundle.BundleIdentityCache;
 import org.apache.karaf.cellar.bundle.BundleState;
 import org.apache.karaf.cellar.bundle.ClusterBundleEvent;
 import org.apache.karaf.cellar.bundle.Constants;
@@ -45,11 +47,20 @@ public class CellarBundleMBeanImpl extends StandardMBean implements CellarBundle
     private ConfigurationAdmin configurationAdmin;
     private EventProducer eventProducer;
     private BundleContext bundleContext;
+    private BundleIdentityCache bundleIdentityCache;
 
     public CellarBundleMBeanImpl() throws NotCompliantMBeanException {
         super(CellarBundleMBean.class);
     }
 
+    public BundleIdentityCache getBundleIdentityCache() {
+        return bundleIdentityCache;
+    }
+
+    public void setBundleIdentityCache(BundleIdentityCache bundleIdentityCache) {
+        this.bundleIdentityCache = bundleIdentityCache;
+    }
+
     public ClusterManager getClusterManager() {
         return this.clusterManager;
     }
@@ -683,26 +694,20 @@ public class CellarBundleMBeanImpl extends StandardMBean implements CellarBundle
 
         // retrieve local bundles
         for (Bundle bundle : bundleContext.getBundles()) {
-            String version = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-            String symbolicName = bundle.getSymbolicName();
-            String key = symbolicName + "/" + version;
+            BundleIdentity identity = (bundleIdentityCache != null) ? bundleIdentityCache.get(bundle) : BundleIdentity.of(bundle);
+            String symbolicName = identity.getSymbolicName();
+            String key = identity.getId();
             if (bundles.containsKey(key)) {
                 ExtendedBundleState extendedState = bundles.get(key);
                 extendedState.setLocal(true);
             } else {
                 ExtendedBundleState extendedState = new ExtendedBundleState();
 
-                // get the bundle name or location.
-                String name = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
-                // if there is no name, then default to symbolic name.
-                name = (name == null) ? symbolicName : name;
-                // if there is no symbolic name, resort to location.
-                name = (name == null) ? bundle.getLocation() : name;
                 extendedState.setId(bundle.getBundleId());
-                extendedState.setName(name);
-                extendedState.setVersion(bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION));
+                extendedState.setName(identity.getName());
+                extendedState.setVersion(identity.getVersion());
                 extendedState.setSymbolicName(symbolicName);
-                extendedState.setLocation(bundle.getLocation());
+                extendedState.setLocation(identity.getLocation());
                 extendedState.setStatus(bundle.getState());
                 extendedState.setCluster(false);
                 extendedState.setLocal(true);
@@ -13,6 +13,8 @@
  */
 package org.apache.karaf.cellar.bundle.shell;
 
+import org.apache.karaf.cellar.bundle.BundleIdentity;
+import org.apache.karaf.cellar.bundle.BundleIdentityCache;
 import org.apache.karaf.cellar.bundle.BundleState;
 import org.apache.karaf.cellar.bundle.Constants;
 import org.apache.karaf.cellar.bundle.shell.completers.AllBundlesNameCompleter;
@@ -45,6 +47,9 @@ public abstract class BundleCommandSupport extends CellarCommandSupport {
     @Reference
     protected BundleContext bundleContext;
 
+    @Reference(optional = true)
+    protected BundleIdentityCache bundleIdentityCache;
+
     protected abstract Object doExecute() throws Exception;
 
     /**
@@ -219,26 +224,20 @@ public abstract class BundleCommandSupport extends CellarCommandSupport {
 
         // retrieve local bundles
         for (Bundle bundle : bundleContext.getBundles()) {
-            String version = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION);
-            String symbolicName = bundle.getSymbolicName();
-            String key = symbolicName + "/" + version;
+            BundleIdentity identity = (bundleIdentityCache != null) ? bundleIdentityCache.get(bundle) : BundleIdentity.of(bundle);
+            String symbolicName = identity.getSymbolicName();
+            String key = identity.getId();
             if (bundles.containsKey(key)) {
                 ExtendedBundleState extendedState = bundles.get(key);
                 extendedState.setLocal(true);
             } else {
                 ExtendedBundleState extendedState = new ExtendedBundleState();
 
-                // get the bundle name or location.
-                String name = (String) bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_NAME);
-                // if there is no name, then default to symbolic name.
-                name = (name == null) ? symbolicName : name;
-                // if there is no symbolic name, resort to location.
-                name = (name == null) ? bundle.getLocation() : name;
                 extendedState.setId(bundle.getBundleId());
-                extendedState.setName(name);
+                extendedState.setName(identity.getName());
                 extendedState.setSymbolicName(symbolicName);
-                extendedState.setVersion(bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_VERSION));
-                extendedState.setLocation(bundle.getLocation());
+                extendedState.setVersion(identity.getVersion());
+                extendedState.setLocation(identity.getLocation());
                 extendedState.setStatus(bundle.getState());
                 extendedState.setCluster(false);
                 extendedState.setLocal(true);
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BundleEventHandlerTest {
+
+    @Test
+    public void testBatchOrder() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        handler.bundles.put("mvn:a", bundle(Bundle.RESOLVED));
+        handler.bundles.put("mvn:b", bundle(Bundle.ACTIVE));
+
+        handler.apply(Arrays.asList(
+                event("a", Bundle.ACTIVE),
+                event("b", Bundle.ACTIVE),
+                event("a", BundleState.UPDATE),
+                event("b", Bundle.RESOLVED),
+                event("a", Bundle.UNINSTALLED)));
+
+        Assert.assertEquals(Arrays.asList(
+                "wire 0/2", "start a", "start b",
+                "update a", "wire 1/0", "stop b",
+                "uninstall a", "wire 1/0"), handler.operations);
+    }
+
+    @Test
+    public void testBatchInstall() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        handler.apply(Arrays.asList(
+                event("a", Bundle.INSTALLED),
+                event("b", Bundle.INSTALLED),
+                event("a", Bundle.ACTIVE)));
+
+        Assert.assertEquals(Arrays.asList("install a", "install b", "wire 0/1", "start a"), handler.operations);
+    }
+
+    private static ClusterBundleEvent event(String name, int type) {
+        return new ClusterBundleEvent(name, "1.0", "mvn:" + name, null, type);
+    }
+
+    private static Bundle bundle(int state) {
+        Bundle bundle = EasyMock.createNiceMock(Bundle.class);
+        EasyMock.expect(bundle.getState()).andReturn(state).anyTimes();
+        EasyMock.replay(bundle);
+        return bundle;
+    }
+
+    private static class RecordingHandler extends BundleEventHandler {
+
+        private final List<String> operations = new ArrayList<String>();
+        private final Map<String, Bundle> bundles = new HashMap<String, Bundle>();
+
+        @Override
+        public void installBundleFromLocation(String location, Integer level) {
+            operations.add("install " + location.substring(4));
+            bundles.put(location, bundle(Bundle.INSTALLED));
+        }
+
+        @Override
+        public boolean isInstalled(String location) {
+            return bundles.containsKey(location);
+        }
+
+        @Override
+        public void uninstallBundle(String symbolicName, String version) {
+            operations.add("uninstall " + symbolicName);
+        }
+
+        @Override
+        public void startBundle(String symbolicName, String version) {
+            operations.add("start " + symbolicName);
+        }
+
+        @Override
+        public void stopBundle(String symbolicName, String version) {
+            operations.add("stop " + symbolicName);
+        }
+
+        @Override
+        public void updateBundle(String symbolicName, String version, String location) {
+            operations.add("update " + symbolicName);
+        }
+
+        @Override
+        protected Bundle findBundle(String location) {
+            return bundles.get(location);
+        }
+
+        @Override
+        protected void wire(Set<Bundle> toRefresh, Set<Bundle> toResolve) {
+            if (toRefresh.isEmpty() && toResolve.isEmpty()) {
+                return;
+            }
+            operations.add("wire " + toRefresh.size() + "/" + toResolve.size());
+            toRefresh.clear();
+            toResolve.clear();
+        }
+
+    }
+
+}
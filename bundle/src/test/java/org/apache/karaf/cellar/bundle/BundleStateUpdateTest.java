@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+public class BundleStateUpdateTest {
+
+    @Test
+    public void testState() throws Exception {
+        BundleState state = BundleStateUpdate.state(42, "Foo", "org.foo", "1.0", "mvn:org.foo/foo/1.0", 80, Bundle.ACTIVE)
+                .process("org.foo/1.0", null);
+        Assert.assertNotNull(state);
+        Assert.assertEquals("org.foo", state.getSymbolicName());
+        Assert.assertEquals("mvn:org.foo/foo/1.0", state.getLocation());
+        Assert.assertEquals(Bundle.ACTIVE, state.getStatus());
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        // the update of a missing bundle state is ignored
+        Assert.assertNull(BundleStateUpdate.status(Bundle.INSTALLED).process("org.foo/1.0", null));
+
+        BundleState existing = BundleStateUpdate.state(42, "Foo", "org.foo", "1.0", "mvn:org.foo/foo/1.0", 80, Bundle.ACTIVE)
+                .process("org.foo/1.0", null);
+        BundleState state = BundleStateUpdate.status(Bundle.INSTALLED).process("org.foo/1.0", existing);
+        Assert.assertEquals(Bundle.INSTALLED, state.getStatus());
+        Assert.assertEquals("mvn:org.foo/foo/1.0", state.getLocation());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.bundle;
+
+import org.apache.karaf.features.BundleInfo;
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.RepositoryEvent;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+
+public class FeaturesBundleIndexTest {
+
+    private static final String LOCATION = "mvn:org.foo/bar/1.0";
+
+    @Test
+    public void testSharedFeature() throws Exception {
+        FeaturesBundleIndex index = new FeaturesBundleIndex();
+        Repository first = repository("mvn:org.foo/first/1.0/xml/features", feature("foo/1.0", LOCATION));
+        Repository second = repository("mvn:org.foo/second/1.0/xml/features", feature("foo/1.0", LOCATION));
+
+        index.repositoryEvent(new RepositoryEvent(first, RepositoryEvent.EventType.RepositoryAdded, false));
+        index.repositoryEvent(new RepositoryEvent(second, RepositoryEvent.EventType.RepositoryAdded, false));
+        Assert.assertEquals(1, index.getFeatures(LOCATION).size());
+
+        // the feature is still provided by the second repository
+        index.repositoryEvent(new RepositoryEvent(first, RepositoryEvent.EventType.RepositoryRemoved, false));
+        Assert.assertEquals(1, index.getFeatures(LOCATION).size());
+        Assert.assertEquals("foo/1.0", index.getFeatures(LOCATION).get(0).getId());
+
+        index.repositoryEvent(new RepositoryEvent(second, RepositoryEvent.EventType.RepositoryRemoved, false));
+        Assert.assertTrue(index.getFeatures(LOCATION).isEmpty());
+    }
+
+    @Test
+    public void testDistinctFeatures() throws Exception {
+        FeaturesBundleIndex index = new FeaturesBundleIndex();
+        Repository first = repository("mvn:org.foo/first/1.0/xml/features", feature("foo/1.0", LOCATION));
+        Repository second = repository("mvn:org.foo/second/1.0/xml/features", feature("bar/1.0", LOCATION.toUpperCase()));
+
+        index.repositoryEvent(new RepositoryEvent(first, RepositoryEvent.EventType.RepositoryAdded, false));
+        index.repositoryEvent(new RepositoryEvent(second, RepositoryEvent.EventType.RepositoryAdded, false));
+        Assert.assertEquals(2, index.getFeatures(LOCATION).size());
+
+        index.repositoryEvent(new RepositoryEvent(second, RepositoryEvent.EventType.RepositoryRemoved, false));
+        Assert.assertEquals(1, index.getFeatures(LOCATION).size());
+        Assert.assertEquals("foo/1.0", index.getFeatures(LOCATION).get(0).getId());
+        Assert.assertTrue(index.getFeatures(null).isEmpty());
+    }
+
+    private static Feature feature(String id, String location) {
+        BundleInfo bundleInfo = EasyMock.createNiceMock(BundleInfo.class);
+        EasyMock.expect(bundleInfo.getLocation()).andReturn(location).anyTimes();
+        Feature feature = EasyMock.createNiceMock(Feature.class);
+        EasyMock.expect(feature.getId()).andReturn(id).anyTimes();
+        EasyMock.expect((Object) feature.getBundles()).andReturn(Collections.singletonList(bundleInfo)).anyTimes();
+        EasyMock.replay(bundleInfo, feature);
+        return feature;
+    }
+
+    private static Repository repository(String uri, Feature... features) throws Exception {
+        Repository repository = EasyMock.createNiceMock(Repository.class);
+        EasyMock.expect(repository.getURI()).andReturn(new URI(uri)).anyTimes();
+        EasyMock.expect(repository.getFeatures()).andReturn(features).anyTimes();
+        EasyMock.replay(repository);
+        return repository;
+    }
+
+}
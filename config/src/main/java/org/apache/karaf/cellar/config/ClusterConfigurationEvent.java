@@ -16,6 +16,9 @@ package org.apache.karaf.cellar.config;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 
+import java.util.Properties;
+import java.util.Set;
+
 /**
  * Cluster configuration event.
  */
@@ -23,6 +26,10 @@ public class ClusterConfigurationEvent extends Event {
 
 	private Integer type;
     private Node local;
+    private Long version;
+    private Long baseVersion;
+    private Properties delta;
+    private Set<String> removed;
 
     public ClusterConfigurationEvent(String id) {
         super(id);
@@ -44,6 +51,53 @@ public class ClusterConfigurationEvent extends Event {
         this.local = local;
     }
 
+    /**
+     * Get the cluster version of the configuration after this change.
+     *
+     * @return the configuration version.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    /**
+     * Get the cluster version of the configuration the delta applies on.
+     *
+     * @return the base configuration version.
+     */
+    public Long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(Long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    /**
+     * Get the added or changed properties, or null if the event doesn't carry a delta (full configuration in the cluster).
+     *
+     * @return the added or changed properties.
+     */
+    public Properties getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Properties delta) {
+        this.delta = delta;
+    }
+
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(Set<String> removed) {
+        this.removed = removed;
+    }
+
     @Override
 	public String toString() {
 		return "ClusterConfigurationEvent [type=" + type + ", id=" + id
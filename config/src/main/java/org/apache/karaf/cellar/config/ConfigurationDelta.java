@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Property level update of a configuration in the cluster, applied where the configuration is stored.
+ * The update is applied only if the cluster configuration is still at the base version of the delta, the version being
+ * increased and the content hash computed with the properties in the same operation.
+ */
+public class ConfigurationDelta implements ClusterEntryProcessor<String, Properties> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Properties changed;
+    private final Set<String> removed;
+    private final long baseVersion;
+
+    public ConfigurationDelta(Properties changed, Set<String> removed, long baseVersion) {
+        this.changed = changed;
+        this.removed = new HashSet<String>(removed);
+        this.baseVersion = baseVersion;
+    }
+
+    @Override
+    public Properties process(String pid, Properties properties) {
+        if (properties == null || !Long.valueOf(baseVersion).equals(ConfigurationSupport.getVersion(properties))) {
+            // the configuration has been updated or removed from the cluster in the meantime
+            return properties;
+        }
+        return apply(properties, changed, removed, baseVersion + 1);
+    }
+
+    @Override
+    public Object result(String pid, Properties previous, Properties value) {
+        return ConfigurationUpdateResult.of(isApplied(previous), previous, value);
+    }
+
+    /**
+     * Check if the delta has been applied on a cluster configuration.
+     *
+     * @param previous the cluster configuration before the update.
+     * @return true if the delta has been applied, false else.
+     */
+    public boolean isApplied(Properties previous) {
+        return previous != null && Long.valueOf(baseVersion).equals(ConfigurationSupport.getVersion(previous));
+    }
+
+    /**
+     * Apply a property level delta on a copy of a configuration.
+     *
+     * @param properties the configuration properties.
+     * @param changed the added or changed properties.
+     * @param removed the removed property keys.
+     * @param version the version of the updated configuration.
+     * @return the updated copy of the configuration properties, with the version and the content hash.
+     */
+    public static Properties apply(Properties properties, Properties changed, Set<String> removed, long version) {
+        Properties result = new Properties();
+        result.putAll(properties);
+        result.putAll(changed);
+        for (String key : removed) {
+            result.remove(key);
+        }
+        result.put(ConfigurationSupport.KARAF_CELLAR_VERSION, version);
+        result.put(ConfigurationSupport.KARAF_CELLAR_HASH, ConfigurationSupport.hash(result));
+        return result;
+    }
+
+}
@@ -25,6 +25,7 @@ import org.osgi.service.cm.ConfigurationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Map;
 import java.util.Properties;
@@ -70,12 +71,10 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
         Group group = event.getSourceGroup();
         String groupName = group.getName();
 
-        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
-
         String pid = event.getId();
 
         if (isAllowed(event.getSourceGroup(), Constants.CATEGORY, pid, EventType.INBOUND)) {
-            Dictionary clusterDictionary = clusterConfigurations.get(pid);
+            Dictionary clusterDictionary = getClusterDictionary(groupName, event);
             try {
                 // update the local configuration
                 Configuration localConfiguration = findLocalConfiguration(pid, clusterDictionary);
@@ -85,6 +84,8 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
                     if (localConfiguration != null) {
                         deleteConfiguration(localConfiguration);
                     }
+                    updateSnapshot(groupName, pid, null, null);
+                    acknowledgeDeletedConfiguration(groupName, pid);
                 } else {
                     if (clusterDictionary != null && shouldReplicateConfig(clusterDictionary)) {
                         if (localConfiguration == null) {
@@ -109,6 +110,35 @@ public class ConfigurationEventHandler extends ConfigurationSupport implements E
         } else LOGGER.trace("CELLAR CONFIG: configuration PID {} is marked BLOCKED INBOUND for cluster group {}", pid, groupName);
     }
 
+    /**
+     * Get the cluster configuration of an event.
+     * If the event carries a property level delta based on the local snapshot version, the delta is applied on the
+     * snapshot, else the full configuration is read from the cluster group.
+     *
+     * @param groupName the cluster group name.
+     * @param event the cluster configuration event.
+     * @return the cluster configuration.
+     */
+    private Dictionary getClusterDictionary(String groupName, ClusterConfigurationEvent event) {
+        String pid = event.getId();
+        if (event.getDelta() != null && configurationSnapshots != null) {
+            ConfigurationSnapshots.Snapshot snapshot = configurationSnapshots.get(groupName, pid);
+            if (snapshot != null && event.getBaseVersion() != null && snapshot.getVersion() == event.getBaseVersion()) {
+                LOGGER.debug("CELLAR CONFIG: applying delta version {} of configuration {}", event.getVersion(), pid);
+                Properties properties = ConfigurationDelta.apply(snapshot.getProperties(), event.getDelta(),
+                        event.getRemoved() != null ? event.getRemoved() : Collections.<String>emptySet(), event.getVersion());
+                configurationSnapshots.put(groupName, pid, event.getVersion(), properties);
+                return properties;
+            }
+            LOGGER.debug("CELLAR CONFIG: configuration {} version diverged, reading the full configuration", pid);
+        }
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        // the version is stored with the properties, so the snapshot is consistent
+        Properties properties = clusterConfigurations.get(pid);
+        updateSnapshot(groupName, pid, getVersion(properties), properties);
+        return properties;
+    }
+
     public void init() {
         // nothing to do
     }
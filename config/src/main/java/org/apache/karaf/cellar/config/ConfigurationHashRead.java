@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryReader;
+
+import java.util.Properties;
+
+/**
+ * Read of the content hash of a configuration in the cluster, applied where the configuration is stored, so only the
+ * hash is sent back.
+ */
+public class ConfigurationHashRead implements ClusterEntryReader<String, Properties> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Object read(String pid, Properties properties) {
+        return ConfigurationSupport.getClusterHash(properties);
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persist the configuration files in the storage (etc folder).
+ * When the write-behind is enabled, the updates of the same file are coalesced and written by a background task at a
+ * fixed interval (and when the persister is destroyed), the configurations in the ConfigurationAdmin being updated
+ * immediately by the caller.
+ * A file is always written in a temporary file renamed to the configuration file. The files written by the
+ * write-behind are also synced to the disk before the rename, outside of the event dispatching.
+ * The write-behind flag is read once, when the persister is initialized.
+ */
+public class ConfigurationPersister {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ConfigurationPersister.class);
+
+    // configuration file -> last pending update
+    private final Map<File, PendingWrite> pendingWrites = new ConcurrentHashMap<File, PendingWrite>();
+
+    // only created when the write-behind is enabled
+    private ScheduledExecutorService executor;
+
+    private ConfigurationAdmin configurationAdmin;
+
+    public void init() {
+        if (!isAsync()) {
+            return;
+        }
+        long interval = getInterval();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        // write the pending updates before stopping
+        flush();
+    }
+
+    /**
+     * Check if the write-behind of the configuration files is enabled in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return true if the write-behind is enabled, false else.
+     */
+    public boolean isAsync() {
+        return Boolean.parseBoolean(CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.PERSIST_ASYNC, "false"));
+    }
+
+    /**
+     * Persist a configuration file, immediately or with the next flush if the write-behind is enabled.
+     *
+     * @param storageFile the configuration file.
+     * @param configuration the configuration to store (the properties are read when the file is written).
+     * @param content the configuration file content, or null to store the configuration properties.
+     */
+    public void persist(File storageFile, Configuration configuration, String content) {
+        if (executor != null) {
+            pendingWrites.put(storageFile, new PendingWrite(configuration, content));
+            return;
+        }
+        try {
+            write(storageFile, configuration, content);
+        } catch (Exception e) {
+            LOGGER.error("CELLAR CONFIG: Issue when trying to persist configuration file", e);
+        }
+    }
+
+    /**
+     * Cancel the pending update of a configuration file (when the configuration is deleted).
+     * If the file is being written, wait the end of the write.
+     *
+     * @param storageFile the configuration file.
+     */
+    public synchronized void cancel(File storageFile) {
+        pendingWrites.remove(storageFile);
+    }
+
+    /**
+     * Write all pending updates of the configuration files.
+     */
+    public synchronized void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        for (File storageFile : new ArrayList<File>(pendingWrites.keySet())) {
+            PendingWrite pendingWrite = pendingWrites.remove(storageFile);
+            if (pendingWrite == null) {
+                continue;
+            }
+            try {
+                write(storageFile, pendingWrite.getConfiguration(), pendingWrite.getContent(), true);
+            } catch (IllegalStateException e) {
+                LOGGER.debug("CELLAR CONFIG: configuration {} has been deleted, file not persisted", storageFile);
+            } catch (Exception e) {
+                LOGGER.error("CELLAR CONFIG: Issue when trying to persist configuration file {}", storageFile, e);
+            }
+        }
+    }
+
+    /**
+     * Write a configuration file, through a temporary file renamed to the configuration file.
+     *
+     * @param storageFile the configuration file.
+     * @param configuration the configuration to store (the properties are read only if the content is null).
+     * @param content the configuration file content, or null to store the configuration properties.
+     * @throws IOException if the file can't be written.
+     */
+    static void write(File storageFile, Configuration configuration, String content) throws IOException {
+        write(storageFile, configuration, content, false);
+    }
+
+    /**
+     * Write a configuration file, through a temporary file renamed to the configuration file.
+     * The file content is written with the platform encoding, as read by the configuration support.
+     *
+     * @param storageFile the configuration file.
+     * @param configuration the configuration to store (the properties are read only if the content is null).
+     * @param content the configuration file content, or null to store the configuration properties.
+     * @param sync true to sync the temporary file to the disk before the rename, false else.
+     * @throws IOException if the file can't be written.
+     */
+    static void write(File storageFile, Configuration configuration, String content, boolean sync) throws IOException {
+        File directory = storageFile.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        // the temporary file name doesn't match the configuration files filter (.cfg)
+        File temporaryFile = new File(directory, storageFile.getName() + ".tmp");
+        try {
+            writeTemporaryFile(storageFile, temporaryFile, configuration, content, sync);
+            try {
+                Files.move(temporaryFile.toPath(), storageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), storageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // nothing to delete if the file has been renamed
+            temporaryFile.delete();
+        }
+    }
+
+    private static void writeTemporaryFile(File storageFile, File temporaryFile, Configuration configuration, String content, boolean sync) throws IOException {
+        try (FileOutputStream os = new FileOutputStream(temporaryFile)) {
+            if (content == null) {
+                org.apache.felix.utils.properties.Properties p = new org.apache.felix.utils.properties.Properties(storageFile);
+                List<String> propertiesToRemove = new ArrayList<String>();
+                Set<String> set = p.keySet();
+
+                for (String key : set) {
+                    if (!isInternalProperty(key)) {
+                        propertiesToRemove.add(key);
+                    }
+                }
+
+                for (String key : propertiesToRemove) {
+                    p.remove(key);
+                }
+                Dictionary props = configuration.getProperties();
+                for (Enumeration<String> keys = props.keys(); keys.hasMoreElements(); ) {
+                    String key = keys.nextElement();
+                    if (!isInternalProperty(key)) {
+                        p.put(key, (String) props.get(key));
+                    }
+                }
+                p.save(os);
+            } else {
+                Writer writer = new OutputStreamWriter(os);
+                writer.write(content);
+                writer.flush();
+            }
+            if (sync) {
+                // the data is on the disk before the rename
+                os.getFD().sync();
+            }
+        }
+    }
+
+    private static boolean isInternalProperty(String key) {
+        return org.osgi.framework.Constants.SERVICE_PID.equals(key)
+                || ConfigurationAdmin.SERVICE_FACTORYPID.equals(key)
+                || ConfigurationSupport.KARAF_CELLAR_FILENAME.equals(key)
+                || ConfigurationSupport.FELIX_FILEINSTALL_FILENAME.equals(key);
+    }
+
+    /**
+     * Get the write-behind interval defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the interval in milliseconds.
+     */
+    private long getInterval() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.PERSIST_INTERVAL, null);
+        if (value != null) {
+            try {
+                return Math.max(1, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR CONFIG: invalid persist interval {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_PERSIST_INTERVAL;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    /**
+     * Last pending update of a configuration file.
+     */
+    private static class PendingWrite {
+
+        private final Configuration configuration;
+        private final String content;
+
+        PendingWrite(Configuration configuration, String content) {
+            this.configuration = configuration;
+            this.content = content;
+        }
+
+        Configuration getConfiguration() {
+            return configuration;
+        }
+
+        String getContent() {
+            return content;
+        }
+
+    }
+
+}
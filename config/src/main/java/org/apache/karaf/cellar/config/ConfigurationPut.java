@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.Properties;
+
+/**
+ * Full update of a configuration in the cluster, applied where the configuration is stored.
+ * If the configuration is versioned, the version is increased with the properties in the same operation, as the
+ * content hash of the configuration.
+ */
+public class ConfigurationPut implements ClusterEntryProcessor<String, Properties> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Properties properties;
+    private final Long initialVersion;
+
+    /**
+     * Create a configuration update.
+     *
+     * @param properties the configuration properties.
+     * @param initialVersion the version used if the cluster configuration is not versioned yet, or null to store the
+     *                       configuration without version.
+     */
+    public ConfigurationPut(Properties properties, Long initialVersion) {
+        this.properties = properties;
+        this.initialVersion = initialVersion;
+    }
+
+    @Override
+    public Properties process(String pid, Properties current) {
+        Properties result = new Properties();
+        result.putAll(properties);
+        result.remove(ConfigurationSupport.KARAF_CELLAR_VERSION);
+        if (initialVersion != null) {
+            Long version = (current != null) ? ConfigurationSupport.getVersion(current) : null;
+            result.put(ConfigurationSupport.KARAF_CELLAR_VERSION, (version != null) ? version + 1 : initialVersion);
+        }
+        // the content hash of the written configuration, stored in the same operation
+        result.put(ConfigurationSupport.KARAF_CELLAR_HASH, ConfigurationSupport.hash(result));
+        return result;
+    }
+
+    @Override
+    public Object result(String pid, Properties previous, Properties value) {
+        return ConfigurationUpdateResult.of(true, previous, value);
+    }
+
+    /**
+     * Get the configuration written in the cluster, without reading it back.
+     *
+     * @param result the result of the update.
+     * @return the written configuration properties, with the version and the content hash.
+     */
+    public Properties getWritten(ConfigurationUpdateResult result) {
+        Properties written = new Properties();
+        written.putAll(properties);
+        written.remove(ConfigurationSupport.KARAF_CELLAR_VERSION);
+        if (result.getVersion() != null) {
+            written.put(ConfigurationSupport.KARAF_CELLAR_VERSION, result.getVersion());
+        }
+        written.put(ConfigurationSupport.KARAF_CELLAR_HASH, result.getHash());
+        return written;
+    }
+
+}
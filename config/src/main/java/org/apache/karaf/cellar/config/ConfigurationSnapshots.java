@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.Configurations;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last known cluster state (version and properties) of the configurations, per cluster group.
+ * The snapshots are the base of the property level deltas sent and received by the local node.
+ */
+public class ConfigurationSnapshots {
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+
+    public Snapshot get(String groupName, String pid) {
+        return snapshots.get(key(groupName, pid));
+    }
+
+    public void put(String groupName, String pid, long version, Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        snapshots.put(key(groupName, pid), new Snapshot(version, copy));
+    }
+
+    public void remove(String groupName, String pid) {
+        snapshots.remove(key(groupName, pid));
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    private static String key(String groupName, String pid) {
+        return groupName + Configurations.SEPARATOR + pid;
+    }
+
+    /**
+     * Version and properties of a configuration in the cluster.
+     */
+    public static class Snapshot {
+
+        private final long version;
+        private final Properties properties;
+
+        Snapshot(long version, Properties properties) {
+            this.version = version;
+            this.properties = properties;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Properties getProperties() {
+            return properties;
+        }
+
+    }
+
+}
@@ -15,6 +15,8 @@ package org.apache.karaf.cellar.config;
 
 import org.apache.karaf.cellar.core.CellarSupport;
 import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
@@ -22,6 +24,9 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -33,8 +38,14 @@ public class ConfigurationSupport extends CellarSupport {
     public static final String KARAF_CELLAR_FILENAME = "karaf.cellar.filename";
     public static final String KARAF_CELLAR_CONTENT = "karaf.cellar.content";
     public static final String KARAF_CELLAR_REMOVED = "karaf.cellar.removed";
+    public static final String KARAF_CELLAR_REMOVED_TIMESTAMP = "karaf.cellar.removed.timestamp";
+    public static final String KARAF_CELLAR_VERSION = "karaf.cellar.version";
+    public static final String KARAF_CELLAR_HASH = "karaf.cellar.hash";
 
     protected File storage;
+    protected ConfigurationSnapshots configurationSnapshots;
+    protected LocalConfigurationHashes localConfigurationHashes;
+    protected ConfigurationPersister configurationPersister;
 
     /**
      * Read a {@code Dictionary} and create a corresponding {@code Properties}.
@@ -73,13 +84,14 @@ public class ConfigurationSupport extends CellarSupport {
         if (source.isEmpty() && target.isEmpty())
             return true;
 
-        if (source.size() != target.size())
+        // the cluster metadata is not part of the configuration
+        if (size(source) != size(target))
             return false;
 
         Enumeration sourceKeys = source.keys();
         while (sourceKeys.hasMoreElements()) {
             Object key = sourceKeys.nextElement();
-            if (!key.equals(org.osgi.framework.Constants.SERVICE_PID)) {
+            if (!key.equals(org.osgi.framework.Constants.SERVICE_PID) && !isClusterMetadata(key)) {
                 Object sourceValue = source.get(key);
                 Object targetValue = target.get(key);
                 if (sourceValue != null && targetValue == null)
@@ -94,6 +106,395 @@ public class ConfigurationSupport extends CellarSupport {
         return true;
     }
 
+    private static int size(Dictionary dictionary) {
+        int size = dictionary.size();
+        if (dictionary.get(KARAF_CELLAR_VERSION) != null)
+            size--;
+        if (dictionary.get(KARAF_CELLAR_HASH) != null)
+            size--;
+        return size;
+    }
+
+    /**
+     * Check if a cluster configuration key is a cluster metadata (version or content hash), and not a configuration
+     * property.
+     *
+     * @param key the cluster configuration key.
+     * @return true if the key is a cluster metadata, false else.
+     */
+    public static boolean isClusterMetadata(Object key) {
+        return KARAF_CELLAR_VERSION.equals(key) || KARAF_CELLAR_HASH.equals(key);
+    }
+
+    /**
+     * Check if the property level delta replication is enabled in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return true if the delta replication is enabled, false else.
+     */
+    public boolean isDeltaEnabled() {
+        return Boolean.parseBoolean(CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.DELTA, "false"));
+    }
+
+    /**
+     * Update a configuration in a cluster group with the local configuration.
+     * If the delta replication is enabled and the local node has a snapshot of the configuration, only the properties
+     * changed since the snapshot are sent to the cluster, without reading the cluster configuration. The delta is
+     * applied only if the cluster configuration is still at the snapshot version, else the full configuration is sent.
+     *
+     * @param group the cluster group.
+     * @param pid the configuration PID.
+     * @param localDictionary the filtered local configuration.
+     * @return the cluster event to send, or null if the cluster configuration is already up to date.
+     */
+    protected ClusterConfigurationEvent updateClusterConfiguration(Group group, String pid, Dictionary localDictionary) {
+        String groupName = group.getName();
+        Properties localProperties = dictionaryToProperties(localDictionary);
+
+        if (configurationSnapshots != null && isDeltaEnabled()) {
+            ConfigurationSnapshots.Snapshot snapshot = configurationSnapshots.get(groupName, pid);
+            if (snapshot != null) {
+                Properties changed = new Properties();
+                Set<String> removed = new HashSet<String>();
+                diff(snapshot.getProperties(), localProperties, changed, removed);
+                if (changed.isEmpty() && removed.isEmpty()) {
+                    return null;
+                }
+                if (!canDistributeConfig(localDictionary)) {
+                    return null;
+                }
+                ConfigurationDelta delta = new ConfigurationDelta(changed, removed, snapshot.getVersion());
+                ConfigurationUpdateResult result = (ConfigurationUpdateResult) clusterManager.executeOnEntry(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName, pid, delta);
+                if (result.isApplied()) {
+                    LOGGER.debug("CELLAR CONFIG: sent {} changed and {} removed properties of configuration {}", changed.size(), removed.size(), pid);
+                    // the cluster configuration was the snapshot, the written configuration is built locally
+                    Properties written = ConfigurationDelta.apply(snapshot.getProperties(), changed, removed, result.getVersion());
+                    updateClusterState(groupName, pid, result.getPreviousFilename(), written);
+                    ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                    event.setBaseVersion(snapshot.getVersion());
+                    event.setVersion(result.getVersion());
+                    event.setDelta(changed);
+                    event.setRemoved(removed);
+                    return event;
+                }
+                LOGGER.debug("CELLAR CONFIG: configuration {} has been updated concurrently, sending the full configuration", pid);
+            }
+        }
+
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        Properties clusterProperties = clusterConfigurations.get(pid);
+        if (equals(localDictionary, clusterProperties)) {
+            updateSnapshot(groupName, pid, getVersion(clusterProperties), clusterProperties);
+            return null;
+        }
+        if (!canDistributeConfig(localDictionary)) {
+            return null;
+        }
+        ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+        event.setVersion(putClusterConfiguration(groupName, pid, localProperties));
+        return event;
+    }
+
+    /**
+     * Put the full configuration in a cluster group.
+     * If the delta replication is enabled, the configuration version is increased with the properties in the same
+     * operation, else the configuration is stored without version.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param properties the configuration properties.
+     * @return the new configuration version, or null if the configuration is not versioned.
+     */
+    public Long putClusterConfiguration(String groupName, String pid, Properties properties) {
+        // a configuration without version starts at the current time, so it never matches a snapshot of a previous
+        // version sequence
+        ConfigurationPut put = new ConfigurationPut(properties, isDeltaEnabled() ? System.currentTimeMillis() : null);
+        ConfigurationUpdateResult result = (ConfigurationUpdateResult) clusterManager.executeOnEntry(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName, pid, put);
+        updateClusterState(groupName, pid, result.getPreviousFilename(), put.getWritten(result));
+        return result.getVersion();
+    }
+
+    /**
+     * Remove a configuration from a cluster group.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @return the removed cluster configuration, or null if the configuration was not in the cluster group.
+     */
+    public Properties removeClusterConfiguration(String groupName, String pid) {
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        Properties previous = clusterConfigurations.remove(pid);
+        updateClusterState(groupName, pid, getReplicatedFilename(previous), null);
+        return previous;
+    }
+
+    /**
+     * Replace the configurations of a cluster group sharing the file of a deleted configuration with removed
+     * configuration markers, acknowledged by the local node.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the deleted configuration PID.
+     * @return the PIDs of the removed configurations, empty if the configuration was not in the cluster group.
+     */
+    protected Set<String> deleteClusterConfiguration(String groupName, String pid) {
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        Properties clusterConfiguration = clusterConfigurations.get(pid);
+        if (clusterConfiguration == null) {
+            return Collections.emptySet();
+        }
+        Object filename = clusterConfiguration.get(KARAF_CELLAR_FILENAME);
+        Map<String, Properties> matchingConfigurations = new LinkedHashMap<String, Properties>();
+        matchingConfigurations.put(pid, clusterConfiguration);
+        if (filename != null) {
+            Set<String> indexedPids = getFilenameIndex(groupName).get(filename.toString());
+            if (indexedPids != null && (indexedPids.contains(pid) || !shouldReplicateConfig(clusterConfiguration))) {
+                // only look at the configurations sharing the same file name
+                for (String indexedPid : indexedPids) {
+                    Properties indexedConfiguration = clusterConfigurations.get(indexedPid);
+                    if (indexedConfiguration != null && filename.equals(indexedConfiguration.get(KARAF_CELLAR_FILENAME))) {
+                        matchingConfigurations.put(indexedPid, indexedConfiguration);
+                    }
+                }
+            } else {
+                // configuration not indexed (stored by a writer not maintaining the index), look at all configurations
+                for (Map.Entry<String, Properties> entry : clusterConfigurations.entrySet()) {
+                    if (filename.equals(entry.getValue().get(KARAF_CELLAR_FILENAME))) {
+                        matchingConfigurations.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Properties> matchingConfiguration : matchingConfigurations.entrySet()) {
+            putDeletedConfigurationMarker(groupName, matchingConfiguration.getKey(), matchingConfiguration.getValue());
+        }
+        return matchingConfigurations.keySet();
+    }
+
+    /**
+     * Update the file names index, the content hash and the local snapshot of a configuration written in a cluster
+     * group. All the writes of the cluster configurations go through this method, so the file names index stays
+     * complete.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param previousFilename the file name of the replicated cluster configuration before the update (can be null).
+     * @param written the cluster configuration written (null if removed).
+     */
+    private void updateClusterState(String groupName, String pid, Object previousFilename, Properties written) {
+        Object filename = getReplicatedFilename(written);
+        if (previousFilename != null && !previousFilename.equals(filename)) {
+            indexFilename(groupName, pid, previousFilename, false);
+        }
+        indexFilename(groupName, pid, filename, true);
+        updateClusterHash(groupName, pid, written);
+        updateSnapshot(groupName, pid, getVersion(written), written);
+    }
+
+    private Object getReplicatedFilename(Properties properties) {
+        return (properties != null && shouldReplicateConfig(properties)) ? properties.get(KARAF_CELLAR_FILENAME) : null;
+    }
+
+    /**
+     * Get the cluster version of a configuration.
+     *
+     * @param properties the cluster configuration (can be null).
+     * @return the cluster version of the configuration, or null if the configuration is not versioned.
+     */
+    public static Long getVersion(Dictionary properties) {
+        Object version = (properties != null) ? properties.get(KARAF_CELLAR_VERSION) : null;
+        return (version instanceof Long) ? (Long) version : null;
+    }
+
+    /**
+     * Add or remove a configuration PID in the cluster index of the configuration file names.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param filename the configuration file name (nothing is done if null).
+     * @param add true to add the PID in the index, false to remove it.
+     */
+    protected void indexFilename(String groupName, String pid, Object filename, boolean add) {
+        if (filename == null) {
+            return;
+        }
+        clusterManager.executeOnEntry(Constants.CONFIGURATION_FILENAMES_MAP + Configurations.SEPARATOR + groupName,
+                filename.toString(), new FilenameIndexUpdate(pid, add));
+    }
+
+    /**
+     * Get the cluster index of the configuration file names: file name to the PIDs of the replicated configurations.
+     * On first use, the index is rebuilt from all the cluster configurations, as the configurations stored before the
+     * index existed are not indexed.
+     *
+     * @param groupName the cluster group name.
+     * @return the file names index.
+     */
+    protected Map<String, Set<String>> getFilenameIndex(String groupName) {
+        String indexName = Constants.CONFIGURATION_FILENAMES_MAP + Configurations.SEPARATOR + groupName;
+        if (!getSynchronizerMap().containsKey(indexName)) {
+            LOGGER.debug("CELLAR CONFIG: building the configuration file names index of cluster group {}", groupName);
+            Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+            for (Map.Entry<String, Properties> entry : clusterConfigurations.entrySet()) {
+                if (shouldReplicateConfig(entry.getValue())) {
+                    indexFilename(groupName, entry.getKey(), entry.getValue().get(KARAF_CELLAR_FILENAME), true);
+                }
+            }
+            getSynchronizerMap().putIfAbsent(indexName, true);
+        }
+        return clusterManager.getMap(indexName);
+    }
+
+    /**
+     * Store the content hash of a cluster configuration, compared with the local hashes during the sync.
+     * The hash is the one computed with the configuration written. As the hashes are stored apart from the
+     * configurations, the hash of the cluster configuration is read again after the update (only the hash is sent
+     * back), so the last writer stores the hash of the current configuration whatever the order of the concurrent
+     * writes.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param properties the cluster properties of the configuration (the hash is removed if null or deleted marker).
+     */
+    protected void updateClusterHash(String groupName, String pid, Dictionary properties) {
+        Map<String, String> clusterHashes = clusterManager.getMap(Constants.CONFIGURATION_HASHES_MAP + Configurations.SEPARATOR + groupName);
+        String hash = getClusterHash(properties);
+        putClusterHash(clusterHashes, pid, hash);
+        String current = (String) clusterManager.readEntry(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName, pid,
+                new ConfigurationHashRead());
+        if (!Objects.equals(hash, current)) {
+            putClusterHash(clusterHashes, pid, current);
+        }
+    }
+
+    private static void putClusterHash(Map<String, String> clusterHashes, String pid, String hash) {
+        if (hash == null) {
+            clusterHashes.remove(pid);
+        } else {
+            clusterHashes.put(pid, hash);
+        }
+    }
+
+    /**
+     * Get the content hash of a cluster configuration, stored with the configuration when it has been written.
+     *
+     * @param properties the cluster configuration (can be null).
+     * @return the content hash, or null if the configuration is null or a removed configuration marker.
+     */
+    protected static String getClusterHash(Dictionary properties) {
+        if (properties == null || properties.get(KARAF_CELLAR_REMOVED) != null) {
+            return null;
+        }
+        Object hash = properties.get(KARAF_CELLAR_HASH);
+        // configurations written before the hash was stored with the configuration
+        return (hash != null) ? hash.toString() : hash(properties);
+    }
+
+    /**
+     * Get the content hashes of the configurations in a cluster group.
+     *
+     * @param groupName the cluster group name.
+     * @return a copy of the cluster configuration hashes (PID to hash).
+     */
+    protected Map<String, String> getClusterHashes(String groupName) {
+        Map<String, String> clusterHashes = clusterManager.getMap(Constants.CONFIGURATION_HASHES_MAP + Configurations.SEPARATOR + groupName);
+        return new HashMap<String, String>(clusterHashes);
+    }
+
+    /**
+     * Get the content hash of a local configuration, from the local hashes cache if possible.
+     * The hash is computed on the filtered configuration, including the configuration file content.
+     *
+     * @param configuration the local configuration.
+     * @return the content hash of the local configuration.
+     */
+    protected String getLocalHash(Configuration configuration) {
+        String pid = configuration.getPid();
+        if (localConfigurationHashes == null) {
+            return hash(filter(configuration.getProperties()));
+        }
+        String hash = localConfigurationHashes.get(pid);
+        if (hash == null) {
+            long generation = localConfigurationHashes.getGeneration();
+            hash = hash(filter(configuration.getProperties()));
+            localConfigurationHashes.put(pid, hash, generation);
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the content hash of a filtered configuration.
+     * The PID and the cluster metadata are not part of the hash, the configuration file content is.
+     *
+     * @param dictionary the filtered configuration.
+     * @return the SHA-256 hash of the configuration properties.
+     */
+    protected static String hash(Dictionary dictionary) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Set<String> keys = new TreeSet<String>();
+        Enumeration enumeration = dictionary.keys();
+        while (enumeration.hasMoreElements()) {
+            String key = enumeration.nextElement().toString();
+            if (!key.equals(org.osgi.framework.Constants.SERVICE_PID) && !isClusterMetadata(key)) {
+                keys.add(key);
+            }
+        }
+        for (String key : keys) {
+            Object value = dictionary.get(key);
+            if (value == null) {
+                continue;
+            }
+            // the type is part of the hash, as for the dictionaries comparison
+            String entry = key + "=" + value.getClass().getName() + ":" + Arrays.deepToString(new Object[]{ value });
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Store the cluster state of a configuration as base of the next deltas.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param version the cluster version of the configuration (read before the properties).
+     * @param properties the cluster properties of the configuration.
+     */
+    protected void updateSnapshot(String groupName, String pid, Long version, Dictionary properties) {
+        if (configurationSnapshots == null) {
+            return;
+        }
+        if (version == null || properties == null || !shouldReplicateConfig(properties)) {
+            configurationSnapshots.remove(groupName, pid);
+        } else {
+            configurationSnapshots.put(groupName, pid, version, dictionaryToProperties(properties));
+        }
+    }
+
+    private static void diff(Properties source, Properties target, Properties changed, Set<String> removed) {
+        for (Map.Entry<Object, Object> entry : target.entrySet()) {
+            if (isClusterMetadata(entry.getKey())) {
+                continue;
+            }
+            if (!Objects.deepEquals(entry.getValue(), source.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Object key : source.keySet()) {
+            if (!isClusterMetadata(key) && !target.containsKey(key)) {
+                removed.add(key.toString());
+            }
+        }
+    }
+
     public boolean canDistributeConfig(Dictionary dictionary) {
         if (dictionary.get(ConfigurationAdmin.SERVICE_FACTORYPID) != null) {
             return dictionary.get(KARAF_CELLAR_FILENAME) != null;
@@ -140,9 +541,41 @@ public class ConfigurationSupport extends CellarSupport {
         result.put(org.osgi.framework.Constants.SERVICE_PID, dictionary.get(org.osgi.framework.Constants.SERVICE_PID));
         result.put(KARAF_CELLAR_FILENAME, dictionary.get(KARAF_CELLAR_FILENAME));
         result.put(KARAF_CELLAR_REMOVED, true);
+        result.put(KARAF_CELLAR_REMOVED_TIMESTAMP, System.currentTimeMillis());
         return result;
     }
 
+    /**
+     * Replace a configuration in a cluster group with a removed configuration marker, acknowledged by the local node.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param clusterConfiguration the cluster configuration.
+     */
+    protected void putDeletedConfigurationMarker(String groupName, String pid, Dictionary clusterConfiguration) {
+        Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+        Map<String, HashSet<String>> acknowledgements = clusterManager.getMap(Constants.CONFIGURATION_TOMBSTONES_MAP + Configurations.SEPARATOR + groupName);
+        Properties previous = clusterConfigurations.put(pid, getDeletedConfigurationMarker(clusterConfiguration));
+        updateClusterState(groupName, pid, getReplicatedFilename(previous), null);
+        acknowledgements.put(pid, new HashSet<String>(Collections.singleton(clusterManager.getNode().getId())));
+    }
+
+    /**
+     * Acknowledge the deletion of a configuration by the local node, the removed configuration marker being
+     * garbage collected when all cluster group members acknowledged it. A marker already acknowledged by the local
+     * node is not written again.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     */
+    protected void acknowledgeDeletedConfiguration(String groupName, String pid) {
+        String acknowledgementsName = Constants.CONFIGURATION_TOMBSTONES_MAP + Configurations.SEPARATOR + groupName;
+        String nodeId = clusterManager.getNode().getId();
+        if (!Boolean.TRUE.equals(clusterManager.readEntry(acknowledgementsName, pid, new TombstoneAcknowledged(nodeId)))) {
+            clusterManager.executeOnEntry(acknowledgementsName, pid, new TombstoneAcknowledge(nodeId));
+        }
+    }
+
     public Configuration findLocalConfiguration(String pid, Dictionary dictionary) throws IOException, InvalidSyntaxException {
         String filter;
         Object filename = dictionary != null ? dictionary.get(KARAF_CELLAR_FILENAME) : null;
@@ -178,7 +611,7 @@ public class ConfigurationSupport extends CellarSupport {
                 if (key.equals(KARAF_CELLAR_FILENAME)) {
                     String value = dictionary.get(key).toString();
                     result.put(FELIX_FILEINSTALL_FILENAME, new File(storage, value).toURI().toString());
-                } else if (key.equals(KARAF_CELLAR_CONTENT)) {
+                } else if (key.equals(KARAF_CELLAR_CONTENT) || isClusterMetadata(key)) {
                     // skip
                 } else {
                     Object value = dictionary.get(key);
@@ -233,39 +666,11 @@ public class ConfigurationSupport extends CellarSupport {
 
             String content = clusterDictionary == null ? null : (String) clusterDictionary.get(KARAF_CELLAR_CONTENT);
 
-            if (content == null) {
-                org.apache.felix.utils.properties.Properties p = new org.apache.felix.utils.properties.Properties(storageFile);
-                List<String> propertiesToRemove = new ArrayList<String>();
-                Set<String> set = p.keySet();
-
-                for (String key : set) {
-                    if (!org.osgi.framework.Constants.SERVICE_PID.equals(key)
-                            && !ConfigurationAdmin.SERVICE_FACTORYPID.equals(key)
-                            && !KARAF_CELLAR_FILENAME.equals(key)
-                            && !FELIX_FILEINSTALL_FILENAME.equals(key)) {
-                        propertiesToRemove.add(key);
-                    }
-                }
-
-                for (String key : propertiesToRemove) {
-                    p.remove(key);
-                }
-                Dictionary props = cfg.getProperties();
-                for (Enumeration<String> keys = props.keys(); keys.hasMoreElements(); ) {
-                    String key = keys.nextElement();
-                    if (!org.osgi.framework.Constants.SERVICE_PID.equals(key)
-                            && !ConfigurationAdmin.SERVICE_FACTORYPID.equals(key)
-                            && !KARAF_CELLAR_FILENAME.equals(key)
-                            && !FELIX_FILEINSTALL_FILENAME.equals(key)) {
-                        p.put(key, (String) props.get(key));
-                    }
-                }
-
-                // save the cfg file
-                storage.mkdirs();
-                p.save();
+            if (configurationPersister != null) {
+                // written now or later (write-behind)
+                configurationPersister.persist(storageFile, cfg, content);
             } else {
-                writeFile(storageFile, content);
+                ConfigurationPersister.write(storageFile, cfg, content);
             }
         } catch (Exception e) {
             LOGGER.error("CELLAR CONFIG: Issue when trying to persist configuration file", e);
@@ -292,7 +697,17 @@ public class ConfigurationSupport extends CellarSupport {
     }
 
     public String getKarafFilename(Dictionary dictionary) {
-        return (String) filter(dictionary).get(KARAF_CELLAR_FILENAME);
+        // same as the filter, without reading the configuration file content
+        if (dictionary == null) {
+            return null;
+        }
+        Object value = dictionary.get(FELIX_FILEINSTALL_FILENAME);
+        if (value != null) {
+            String filename = value.toString();
+            return filename.substring(filename.lastIndexOf("/") + 1);
+        }
+        value = dictionary.get(KARAF_CELLAR_FILENAME);
+        return (value != null && !isExcludedProperty(KARAF_CELLAR_FILENAME)) ? value.toString() : null;
     }
 
     /**
@@ -304,11 +719,38 @@ public class ConfigurationSupport extends CellarSupport {
         String filename = getKarafFilename(localConfiguration.getProperties());
         localConfiguration.delete();
         File cfgFile = new File(storage, filename == null ? (localConfiguration.getPid() + ".cfg") : filename);
+        if (configurationPersister != null) {
+            configurationPersister.cancel(cfgFile);
+        }
         if (cfgFile.exists()) {
             cfgFile.delete();
         }
     }
 
+    public ConfigurationSnapshots getConfigurationSnapshots() {
+        return configurationSnapshots;
+    }
+
+    public void setConfigurationSnapshots(ConfigurationSnapshots configurationSnapshots) {
+        this.configurationSnapshots = configurationSnapshots;
+    }
+
+    public LocalConfigurationHashes getLocalConfigurationHashes() {
+        return localConfigurationHashes;
+    }
+
+    public void setLocalConfigurationHashes(LocalConfigurationHashes localConfigurationHashes) {
+        this.localConfigurationHashes = localConfigurationHashes;
+    }
+
+    public ConfigurationPersister getConfigurationPersister() {
+        return configurationPersister;
+    }
+
+    public void setConfigurationPersister(ConfigurationPersister configurationPersister) {
+        this.configurationPersister = configurationPersister;
+    }
+
     public File getStorage() {
         return storage;
     }
@@ -333,13 +775,5 @@ public class ConfigurationSupport extends CellarSupport {
             reader.close();
         }
     }
-    private void writeFile(File file, String content) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-        try {
-            writer.write(content);
-        } finally {
-            writer.close();
-        }
-    }
 
 }
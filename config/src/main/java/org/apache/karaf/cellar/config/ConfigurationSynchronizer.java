@@ -121,10 +121,26 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
             try {
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
+                Map<String, String> clusterHashes = getClusterHashes(groupName);
+                Map<String, String> localHashes = getLocalHashes();
+                boolean delta = configurationSnapshots != null && isDeltaEnabled();
+
                 // get configurations on the cluster to update local configurations
                 for (String pid : clusterConfigurations.keySet()) {
-                    if (isAllowed(group, Constants.CATEGORY, pid, EventType.INBOUND) && shouldReplicateConfig(clusterConfigurations.get(pid))) {
-                        Dictionary clusterDictionary = clusterConfigurations.get(pid);
+                    String clusterHash = clusterHashes.get(pid);
+                    if (clusterHash != null && clusterHash.equals(localHashes.get(pid))) {
+                        // same content hash, the local configuration is up to date
+                        LOGGER.trace("CELLAR CONFIG: configuration {} is up to date on node", pid);
+                        if (delta) {
+                            refreshSnapshot(groupName, pid, clusterConfigurations);
+                        }
+                        continue;
+                    }
+                    boolean allowed = isAllowed(group, Constants.CATEGORY, pid, EventType.INBOUND);
+                    Properties clusterConfiguration = allowed ? clusterConfigurations.get(pid) : null;
+                    if (clusterConfiguration != null && shouldReplicateConfig(clusterConfiguration)) {
+                        Dictionary clusterDictionary = clusterConfiguration;
+                        updateSnapshot(groupName, pid, getVersion(clusterConfiguration), clusterConfiguration);
                         try {
                             // update the local configuration if needed
                             Configuration localConfiguration = findLocalConfiguration(pid, clusterDictionary);
@@ -146,23 +162,28 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                         } catch (IOException ex) {
                             LOGGER.error("CELLAR CONFIG: failed to read local configuration", ex);
                         }
-                    } else  LOGGER.trace("CELLAR CONFIG: configuration with PID {} is marked BLOCKED INBOUND for cluster group {}", pid, groupName);
+                    } else if (clusterConfiguration != null) {
+                        // removed configuration, acknowledged if not present locally
+                        if (!localHashes.containsKey(pid)) {
+                            acknowledgeDeletedConfiguration(groupName, pid);
+                        }
+                    } else if (!allowed) {
+                        LOGGER.trace("CELLAR CONFIG: configuration with PID {} is marked BLOCKED INBOUND for cluster group {}", pid, groupName);
+                    }
                 }
                 // cleanup the local configurations not present on the cluster if the node is not the first one in the cluster
                 if (CellarUtils.doCleanupResourcesNotPresentInCluster(configurationAdmin) && getSynchronizerMap().containsKey(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName)) {
                     try {
-                        Set<String> filenames = new HashSet();
-                        for (Properties configuration : clusterConfigurations.values()) {
-                            if (shouldReplicateConfig(configuration)) {
-                                filenames.add(getKarafFilename(configuration));
-                            }
-                        }
-                        filenames.remove(null);
+                        Set<String> filenames = getReplicatedFilenames(groupName, clusterConfigurations);
                         for (Configuration configuration : configurationAdmin.listConfigurations(null)) {
                             String pid = configuration.getPid();
-                            if ((!clusterConfigurations.containsKey(pid) || !shouldReplicateConfig(clusterConfigurations.get(pid))) && !filenames.contains(getKarafFilename(configuration.getProperties())) && isAllowed(group, Constants.CATEGORY, pid, EventType.INBOUND)) {
+                            // check the file names first, to read the cluster configurations only when needed
+                            if (!filenames.contains(getKarafFilename(configuration.getProperties())) && isAllowed(group, Constants.CATEGORY, pid, EventType.INBOUND) && (!clusterConfigurations.containsKey(pid) || !shouldReplicateConfig(clusterConfigurations.get(pid)))) {
                                 LOGGER.debug("CELLAR CONFIG: deleting local configuration {} which is not present in cluster", pid);
                                 deleteConfiguration(configuration);
+                                if (clusterConfigurations.containsKey(pid)) {
+                                    acknowledgeDeletedConfiguration(groupName, pid);
+                                }
                             }
                         }
                     } catch (Exception e) {
@@ -199,32 +220,39 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
                 Configuration[] localConfigurations;
                 try {
+                    Map<String, String> clusterHashes = getClusterHashes(groupName);
+                    Set<String> localPids = new HashSet<String>();
                     localConfigurations = configurationAdmin.listConfigurations(null);
                     // push local configurations to the cluster
                     for (Configuration localConfiguration : localConfigurations) {
                         String pid = localConfiguration.getPid();
+                        localPids.add(pid);
                         // check if the pid is marked as local.
                         if (isAllowed(group, Constants.CATEGORY, pid, EventType.OUTBOUND)) {
+                            if (getLocalHash(localConfiguration).equals(clusterHashes.get(pid))) {
+                                // same content hash, the cluster configuration is up to date
+                                LOGGER.trace("CELLAR CONFIG: configuration {} is up to date on the cluster", pid);
+                                continue;
+                            }
                             Dictionary localDictionary = localConfiguration.getProperties();
                             localDictionary = filter(localDictionary);
                             if (!clusterConfigurations.containsKey(pid)) {
                                 LOGGER.debug("CELLAR CONFIG: creating configuration pid {} on the cluster", pid);
                                 // update cluster configurations
-                                clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
+                                Long version = putClusterConfiguration(groupName, pid, dictionaryToProperties(localDictionary));
                                 // send cluster event
                                 ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                                event.setVersion(version);
                                 event.setSourceGroup(group);
                                 event.setSourceNode(clusterManager.getNode());
                                 event.setLocal(clusterManager.getNode());
                                 eventProducer.produce(event);
                             } else {
-                                Dictionary clusterDictionary = clusterConfigurations.get(pid);
-                                if (!equals(clusterDictionary, localDictionary) && canDistributeConfig(localDictionary)) {
+                                // update cluster configurations (property level delta if possible)
+                                ClusterConfigurationEvent event = updateClusterConfiguration(group, pid, localDictionary);
+                                if (event != null) {
                                     LOGGER.debug("CELLAR CONFIG: updating configuration pid {} on the cluster", pid);
-                                    // update cluster configurations
-                                    clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
                                     // send cluster event
-                                    ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
                                     event.setSourceGroup(group);
                                     event.setLocal(clusterManager.getNode());
                                     event.setSourceNode(clusterManager.getNode());
@@ -236,9 +264,10 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
                     }
                     // clean configurations on the cluster not present locally
                     for (String pid : clusterConfigurations.keySet()) {
-                        if (isAllowed(group, Constants.CATEGORY, pid, EventType.OUTBOUND)) {
-                            if (findLocalConfiguration(pid,clusterConfigurations.get(pid)) == null) {
-                                clusterConfigurations.remove(pid);
+                        if (!localPids.contains(pid) && isAllowed(group, Constants.CATEGORY, pid, EventType.OUTBOUND)) {
+                            Properties clusterConfiguration = clusterConfigurations.get(pid);
+                            if (findLocalConfiguration(pid, clusterConfiguration) == null) {
+                                removeClusterConfiguration(groupName, pid);
                             }
                         }
                     }
@@ -254,6 +283,63 @@ public class ConfigurationSynchronizer extends ConfigurationSupport implements S
         }
     }
 
+    /**
+     * Get the content hashes of all local configurations.
+     *
+     * @return the local configuration hashes (PID to hash).
+     * @throws IOException in case of local configurations access failure.
+     * @throws InvalidSyntaxException never (no filter).
+     */
+    private Map<String, String> getLocalHashes() throws IOException, InvalidSyntaxException {
+        Map<String, String> localHashes = new HashMap<String, String>();
+        Configuration[] localConfigurations = configurationAdmin.listConfigurations(null);
+        if (localConfigurations != null) {
+            for (Configuration localConfiguration : localConfigurations) {
+                localHashes.put(localConfiguration.getPid(), getLocalHash(localConfiguration));
+            }
+        }
+        return localHashes;
+    }
+
+    /**
+     * Create the snapshot of a configuration (base of the deltas) if the local node doesn't have it.
+     * An existing snapshot is kept: if its version is not the cluster one, the next delta falls back to the full
+     * configuration.
+     *
+     * @param groupName the cluster group name.
+     * @param pid the configuration PID.
+     * @param clusterConfigurations the cluster configurations.
+     */
+    private void refreshSnapshot(String groupName, String pid, Map<String, Properties> clusterConfigurations) {
+        if (configurationSnapshots.get(groupName, pid) == null) {
+            Properties clusterConfiguration = clusterConfigurations.get(pid);
+            updateSnapshot(groupName, pid, getVersion(clusterConfiguration), clusterConfiguration);
+        }
+    }
+
+    /**
+     * Get the file names of the configurations replicated in a cluster group.
+     * The file names index is used, removing the PIDs not present in the cluster anymore.
+     *
+     * @param groupName the cluster group name.
+     * @param clusterConfigurations the cluster configurations.
+     * @return the set of replicated configuration file names.
+     */
+    private Set<String> getReplicatedFilenames(String groupName, Map<String, Properties> clusterConfigurations) {
+        Set<String> filenames = new HashSet<String>();
+        Map<String, Set<String>> index = getFilenameIndex(groupName);
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            for (String pid : entry.getValue()) {
+                if (clusterConfigurations.containsKey(pid)) {
+                    filenames.add(entry.getKey());
+                } else {
+                    indexFilename(groupName, pid, entry.getKey(), false);
+                }
+            }
+        }
+        return filenames;
+    }
+
     /**
      * Get the configuration sync policy for the given cluster group.
      *
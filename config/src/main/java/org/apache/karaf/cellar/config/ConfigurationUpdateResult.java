@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+/**
+ * Result of a configuration update in the cluster, sent back to the writer instead of the configuration.
+ */
+public class ConfigurationUpdateResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean applied;
+    private final Long version;
+    private final String hash;
+    private final String previousFilename;
+
+    public ConfigurationUpdateResult(boolean applied, Long version, String hash, String previousFilename) {
+        this.applied = applied;
+        this.version = version;
+        this.hash = hash;
+        this.previousFilename = previousFilename;
+    }
+
+    /**
+     * Create the result of a configuration update.
+     *
+     * @param applied true if the update has been applied, false else.
+     * @param previous the cluster configuration before the update (can be null).
+     * @param value the cluster configuration after the update (can be null).
+     * @return the update result.
+     */
+    public static ConfigurationUpdateResult of(boolean applied, Properties previous, Properties value) {
+        Object hash = (value != null) ? value.get(ConfigurationSupport.KARAF_CELLAR_HASH) : null;
+        Object previousFilename = (previous != null && previous.get(ConfigurationSupport.KARAF_CELLAR_REMOVED) == null)
+                ? previous.get(ConfigurationSupport.KARAF_CELLAR_FILENAME) : null;
+        return new ConfigurationUpdateResult(applied, ConfigurationSupport.getVersion(value),
+                (hash != null) ? hash.toString() : null, (previousFilename != null) ? previousFilename.toString() : null);
+    }
+
+    /**
+     * Check if the update has been applied.
+     *
+     * @return true if the update has been applied, false if the cluster configuration has been left as is.
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    /**
+     * Get the cluster version of the configuration after the update.
+     *
+     * @return the configuration version, or null if the configuration is not versioned.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the content hash of the configuration after the update.
+     *
+     * @return the content hash, or null if the configuration doesn't exist.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the file name of the replicated configuration before the update, used to maintain the file names index.
+     *
+     * @return the previous file name, or null if the configuration didn't exist, was a removed configuration marker
+     * or had no file name.
+     */
+    public String getPreviousFilename() {
+        return previousFilename;
+    }
+
+}
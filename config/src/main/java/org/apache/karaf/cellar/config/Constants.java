@@ -20,5 +20,22 @@ public class Constants {
 
     public static final String CATEGORY = "config";
     public static final String CONFIGURATION_MAP = "org.apache.karaf.cellar.configuration.map";
+    public static final String CONFIGURATION_FILENAMES_MAP = "org.apache.karaf.cellar.configuration.filenames";
+    public static final String CONFIGURATION_HASHES_MAP = "org.apache.karaf.cellar.configuration.hashes";
+    public static final String CONFIGURATION_TOMBSTONES_MAP = "org.apache.karaf.cellar.configuration.tombstones";
+
+    // property level delta replication
+    public static final String DELTA = "delta";
+
+    // write-behind persistence of the configuration files
+    public static final String PERSIST_ASYNC = "persist.async";
+    public static final String PERSIST_INTERVAL = "persist.interval";
+    public static final long DEFAULT_PERSIST_INTERVAL = 500;
+
+    // retention of the removed configuration markers
+    public static final String TOMBSTONE_RETENTION = "tombstone.retention";
+    public static final long DEFAULT_TOMBSTONE_RETENTION = 24 * 60 * 60 * 1000L;
+    public static final String TOMBSTONE_COMPACTION_INTERVAL = "tombstone.compaction.interval";
+    public static final long DEFAULT_TOMBSTONE_COMPACTION_INTERVAL = 10 * 60 * 1000L;
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.HashSet;
+
+/**
+ * Atomic update of the configuration file name index in the cluster, applied where the index entry is stored.
+ */
+public class FilenameIndexUpdate implements ClusterEntryProcessor<String, HashSet<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String pid;
+    private final boolean add;
+
+    public FilenameIndexUpdate(String pid, boolean add) {
+        this.pid = pid;
+        this.add = add;
+    }
+
+    @Override
+    public HashSet<String> process(String filename, HashSet<String> pids) {
+        HashSet<String> result = (pids != null) ? new HashSet<String>(pids) : new HashSet<String>();
+        if (add) {
+            result.add(pid);
+        } else {
+            result.remove(pid);
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content hashes of the local configurations, per PID.
+ * A hash is invalidated when a local configuration event occurs for the PID, and all hashes are invalidated when the
+ * Cellar node configuration (excluded properties) changes.
+ */
+public class LocalConfigurationHashes {
+
+    private final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+
+    // increased on each invalidation, a hash computed before an invalidation is not cached
+    private long generation;
+
+    public String get(String pid) {
+        return hashes.get(pid);
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized void put(String pid, String hash, long generation) {
+        if (this.generation == generation) {
+            hashes.put(pid, hash);
+        }
+    }
+
+    public synchronized void invalidate(String pid) {
+        generation++;
+        hashes.remove(pid);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        hashes.clear();
+    }
+
+}
@@ -44,6 +44,16 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
     @Override
     public void configurationEvent(ConfigurationEvent event) {
 
+        // the local configuration hash is invalidated even if the listener is disabled
+        if (localConfigurationHashes != null) {
+            if (Configurations.NODE.equals(event.getPid())) {
+                // the excluded properties may have changed
+                localConfigurationHashes.clear();
+            } else {
+                localConfigurationHashes.invalidate(event.getPid());
+            }
+        }
+
         if (!isEnabled()) {
             LOGGER.trace("CELLAR CONFIG: local listener is disabled");
             return;
@@ -69,18 +79,8 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
                     try {
                         if (event.getType() == ConfigurationEvent.CM_DELETED) {
 
-                            if (clusterConfigurations.containsKey(pid)) {
-                                String filename = (String) clusterConfigurations.get(pid).get(KARAF_CELLAR_FILENAME);
-                                List<String> matchingPids = new ArrayList<String>();
-                                for (Map.Entry<String, Properties> entry : clusterConfigurations.entrySet()) {
-                                    if (filename.equals(entry.getValue().get(KARAF_CELLAR_FILENAME))) {
-                                        matchingPids.add(entry.getKey());
-                                    }
-                                }
-                                for (String matchingPid : matchingPids) {
-                                    // update the configurations in the cluster group
-                                    clusterConfigurations.put(matchingPid, getDeletedConfigurationMarker(clusterConfigurations.get(matchingPid)));
-                                }
+                            // update the configurations in the cluster group
+                            if (!deleteClusterConfiguration(group.getName(), pid).isEmpty()) {
                                 // send the cluster event
                                 ClusterConfigurationEvent clusterConfigurationEvent = new ClusterConfigurationEvent(pid);
                                 clusterConfigurationEvent.setType(event.getType());
@@ -95,13 +95,10 @@ public class LocalConfigurationListener extends ConfigurationSupport implements
                             Dictionary localDictionary = conf.getProperties();
                             localDictionary = filter(localDictionary);
 
-                            Properties distributedDictionary = clusterConfigurations.get(pid);
-
-                            if (!equals(localDictionary, distributedDictionary) && canDistributeConfig(localDictionary)) {
-                                // update the configurations in the cluster group
-                                clusterConfigurations.put(pid, dictionaryToProperties(localDictionary));
+                            // update the configurations in the cluster group (property level delta if possible)
+                            ClusterConfigurationEvent clusterConfigurationEvent = updateClusterConfiguration(group, pid, localDictionary);
+                            if (clusterConfigurationEvent != null) {
                                 // send the cluster event
-                                ClusterConfigurationEvent clusterConfigurationEvent = new ClusterConfigurationEvent(pid);
                                 clusterConfigurationEvent.setSourceGroup(group);
                                 clusterConfigurationEvent.setSourceNode(clusterManager.getNode());
                                 clusterConfigurationEvent.setLocal(clusterManager.getNode());
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.HashSet;
+
+/**
+ * Atomic acknowledgement of a removed configuration marker by a node, applied where the acknowledgements entry is stored.
+ */
+public class TombstoneAcknowledge implements ClusterEntryProcessor<String, HashSet<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String nodeId;
+
+    public TombstoneAcknowledge(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public HashSet<String> process(String pid, HashSet<String> nodeIds) {
+        HashSet<String> result = (nodeIds != null) ? new HashSet<String>(nodeIds) : new HashSet<String>();
+        result.add(nodeId);
+        return result;
+    }
+
+}
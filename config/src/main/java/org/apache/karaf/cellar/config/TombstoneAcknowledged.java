@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryReader;
+
+import java.util.HashSet;
+
+/**
+ * Check if a node already acknowledged a removed configuration marker, applied where the acknowledgements entry is stored.
+ */
+public class TombstoneAcknowledged implements ClusterEntryReader<String, HashSet<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String nodeId;
+
+    public TombstoneAcknowledged(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public Object read(String pid, HashSet<String> nodeIds) {
+        return nodeIds != null && nodeIds.contains(nodeId);
+    }
+
+}
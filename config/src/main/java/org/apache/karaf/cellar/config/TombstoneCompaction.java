@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.Properties;
+
+/**
+ * Compaction of a removed configuration marker, applied where the configuration is stored.
+ * The marker is checked by key in the same operation, so a configuration written again in the meantime is left as is.
+ */
+public class TombstoneCompaction implements ClusterEntryProcessor<String, Properties> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long timestamp;
+    private final long now;
+
+    /**
+     * Create a marker compaction.
+     *
+     * @param timestamp the deletion timestamp of the marker to remove, or null to stamp a marker created without
+     *                  timestamp.
+     * @param now the current time, used to stamp the marker.
+     */
+    public TombstoneCompaction(Long timestamp, long now) {
+        this.timestamp = timestamp;
+        this.now = now;
+    }
+
+    @Override
+    public Properties process(String pid, Properties properties) {
+        if (properties == null || properties.get(ConfigurationSupport.KARAF_CELLAR_REMOVED) == null) {
+            // the configuration has been written again in the meantime
+            return properties;
+        }
+        Object current = properties.get(ConfigurationSupport.KARAF_CELLAR_REMOVED_TIMESTAMP);
+        if (timestamp == null) {
+            if (current instanceof Long) {
+                return properties;
+            }
+            Properties stamped = new Properties();
+            stamped.putAll(properties);
+            stamped.put(ConfigurationSupport.KARAF_CELLAR_REMOVED_TIMESTAMP, now);
+            return stamped;
+        }
+        // only the compacted marker is removed, not a marker of a later deletion
+        return timestamp.equals(current) ? null : properties;
+    }
+
+    /**
+     * Check if the marker has been removed from the cluster.
+     *
+     * @param pid the configuration PID.
+     * @param previous the cluster configuration before the compaction.
+     * @param value the cluster configuration after the compaction.
+     * @return true if the marker has been removed, false else.
+     */
+    @Override
+    public Object result(String pid, Properties previous, Properties value) {
+        return previous != null && value == null;
+    }
+
+}
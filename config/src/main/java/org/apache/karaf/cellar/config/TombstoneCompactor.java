@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.GroupManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage collect the removed configuration markers (tombstones) of a cluster group.
+ * A marker is removed when all current members of the cluster group acknowledged the deletion, or when the retention
+ * period is elapsed since the deletion.
+ * The markers of the local cluster groups are compacted at a fixed interval by one member of each cluster group, and
+ * on demand with the cluster:config-compact command.
+ */
+public class TombstoneCompactor {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(TombstoneCompactor.class);
+
+    private ClusterManager clusterManager;
+    private GroupManager groupManager;
+    private ConfigurationAdmin configurationAdmin;
+
+    private ScheduledExecutorService executor;
+
+    public void init() {
+        long interval = getInterval();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::compactLocalGroups, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Compact the markers of the local cluster groups, where the local node is the compacting member.
+     */
+    public void compactLocalGroups() {
+        try {
+            Set<Group> groups = groupManager.listLocalGroups();
+            if (groups == null) {
+                return;
+            }
+            for (Group group : groups) {
+                if (isCompactingMember(group)) {
+                    compact(group);
+                }
+            }
+        } catch (Exception e) {
+            // keep the next executions scheduled
+            LOGGER.warn("CELLAR CONFIG: failed to compact the removed configuration markers", e);
+        }
+    }
+
+    /**
+     * Check if the local node compacts the markers of a cluster group at the fixed interval: the member of the
+     * cluster group with the lowest ID, so the markers are compacted by one node only.
+     *
+     * @param group the cluster group.
+     * @return true if the local node is the compacting member of the cluster group, false else.
+     */
+    protected boolean isCompactingMember(Group group) {
+        Node local = clusterManager.getNode();
+        if (local == null || group.getNodes() == null) {
+            return false;
+        }
+        Set<String> alive = new HashSet<String>();
+        Set<Node> nodes = clusterManager.listNodes();
+        if (nodes != null) {
+            for (Node node : nodes) {
+                alive.add(node.getId());
+            }
+        }
+        String compacting = null;
+        for (Node node : group.getNodes()) {
+            String id = node.getId();
+            // the group may still reference a node which left the cluster
+            if (alive.contains(id) && (compacting == null || id.compareTo(compacting) < 0)) {
+                compacting = id;
+            }
+        }
+        return local.getId().equals(compacting);
+    }
+
+    /**
+     * Remove the acknowledged and expired markers of a cluster group, using the retention defined in
+     * etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @param group the cluster group.
+     * @return the number of removed markers.
+     */
+    public int compact(Group group) {
+        return compact(group, getRetention());
+    }
+
+    /**
+     * Remove the acknowledged and expired markers of a cluster group.
+     * The markers are found with the acknowledgements map, each marker having an acknowledgements entry, so only
+     * the timestamp of the markers is read from the cluster configurations.
+     *
+     * @param group the cluster group.
+     * @param retention the retention period in milliseconds (negative to only remove the acknowledged markers).
+     * @return the number of removed markers.
+     */
+    public int compact(Group group, long retention) {
+        String groupName = group.getName();
+        String mapName = Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName;
+        Map<String, Set<String>> acknowledgements = getAcknowledgements(groupName);
+
+        Set<String> members = new HashSet<String>();
+        if (group.getNodes() != null) {
+            for (Node node : group.getNodes()) {
+                members.add(node.getId());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Map.Entry<String, Set<String>> entry : acknowledgements.entrySet()) {
+            String pid = entry.getKey();
+            Object timestamp = clusterManager.readEntry(mapName, pid, new TombstoneTimestampRead());
+            if (timestamp == null) {
+                // the configuration is not removed anymore
+                acknowledgements.remove(pid);
+                continue;
+            }
+            if (TombstoneTimestampRead.UNSTAMPED.equals(timestamp)) {
+                // marker created before the tombstones lifecycle, the retention starts now
+                clusterManager.executeOnEntry(mapName, pid, new TombstoneCompaction(null, now));
+                continue;
+            }
+            Set<String> acknowledged = entry.getValue();
+            boolean expired = retention >= 0 && now - (Long) timestamp >= retention;
+            boolean complete = !members.isEmpty() && acknowledged != null && acknowledged.containsAll(members);
+            if (!expired && !complete) {
+                continue;
+            }
+            // the marker is checked and removed by key, where the configuration is stored
+            TombstoneCompaction compaction = new TombstoneCompaction((Long) timestamp, now);
+            Object removed = clusterManager.executeOnEntry(mapName, pid, compaction);
+            if (Boolean.TRUE.equals(removed)) {
+                LOGGER.debug("CELLAR CONFIG: removing marker of deleted configuration {} from cluster group {} ({})", pid, groupName,
+                        complete ? "acknowledged" : "expired");
+                acknowledgements.remove(pid);
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            LOGGER.info("CELLAR CONFIG: {} removed configuration markers compacted in cluster group {}", count, groupName);
+        }
+        return count;
+    }
+
+    /**
+     * Get the acknowledgements map of a cluster group, indexing the markers of the deleted configurations.
+     * On first use, an acknowledgements entry is created for the markers stored before the acknowledgements existed.
+     *
+     * @param groupName the cluster group name.
+     * @return the acknowledgements map.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<String>> getAcknowledgements(String groupName) {
+        String acknowledgementsName = Constants.CONFIGURATION_TOMBSTONES_MAP + Configurations.SEPARATOR + groupName;
+        Map<String, Set<String>> acknowledgements = clusterManager.getMap(acknowledgementsName);
+        Map<String, Boolean> synchronizers = clusterManager.getMap("org.apache.karaf.cellar.synchronizers");
+        if (!synchronizers.containsKey(acknowledgementsName)) {
+            LOGGER.debug("CELLAR CONFIG: indexing the removed configuration markers of cluster group {}", groupName);
+            Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
+            for (Map.Entry<String, Properties> entry : clusterConfigurations.entrySet()) {
+                if (entry.getValue() != null && entry.getValue().get(ConfigurationSupport.KARAF_CELLAR_REMOVED) != null) {
+                    acknowledgements.putIfAbsent(entry.getKey(), new HashSet<String>());
+                }
+            }
+            synchronizers.putIfAbsent(acknowledgementsName, true);
+        }
+        return acknowledgements;
+    }
+
+    /**
+     * Get the retention of the removed configuration markers defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the retention in milliseconds.
+     */
+    public long getRetention() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.TOMBSTONE_RETENTION, null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR CONFIG: invalid tombstone retention {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_TOMBSTONE_RETENTION;
+    }
+
+    /**
+     * Get the compaction interval of the removed configuration markers defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the interval in milliseconds.
+     */
+    private long getInterval() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.TOMBSTONE_COMPACTION_INTERVAL, null);
+        if (value != null) {
+            try {
+                return Math.max(1, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR CONFIG: invalid tombstone compaction interval {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_TOMBSTONE_COMPACTION_INTERVAL;
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    public void setClusterManager(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+    public GroupManager getGroupManager() {
+        return groupManager;
+    }
+
+    public void setGroupManager(GroupManager groupManager) {
+        this.groupManager = groupManager;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryReader;
+
+import java.util.Properties;
+
+/**
+ * Read of the deletion timestamp of a removed configuration marker, applied where the configuration is stored.
+ */
+public class TombstoneTimestampRead implements ClusterEntryReader<String, Properties> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Result of the read for a marker created without timestamp.
+     */
+    public static final Long UNSTAMPED = -1L;
+
+    /**
+     * Get the deletion timestamp of the marker.
+     *
+     * @param pid the configuration PID.
+     * @param properties the cluster configuration.
+     * @return the deletion timestamp, {@link #UNSTAMPED} for a marker without timestamp, or null if the configuration
+     *         is not removed.
+     */
+    @Override
+    public Object read(String pid, Properties properties) {
+        if (properties == null || properties.get(ConfigurationSupport.KARAF_CELLAR_REMOVED) == null) {
+            return null;
+        }
+        Object timestamp = properties.get(ConfigurationSupport.KARAF_CELLAR_REMOVED_TIMESTAMP);
+        return (timestamp instanceof Long) ? timestamp : UNSTAMPED;
+    }
+
+}
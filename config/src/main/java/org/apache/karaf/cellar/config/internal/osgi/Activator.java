@@ -14,8 +14,12 @@
 package org.apache.karaf.cellar.config.internal.osgi;
 
 import org.apache.karaf.cellar.config.ConfigurationEventHandler;
+import org.apache.karaf.cellar.config.ConfigurationPersister;
+import org.apache.karaf.cellar.config.ConfigurationSnapshots;
 import org.apache.karaf.cellar.config.ConfigurationSynchronizer;
+import org.apache.karaf.cellar.config.LocalConfigurationHashes;
 import org.apache.karaf.cellar.config.LocalConfigurationListener;
+import org.apache.karaf.cellar.config.TombstoneCompactor;
 import org.apache.karaf.cellar.config.management.CellarConfigMBean;
 import org.apache.karaf.cellar.config.management.internal.CellarConfigMBeanImpl;
 import org.apache.karaf.cellar.core.ClusterManager;
@@ -49,7 +53,8 @@ import java.util.Hashtable;
                 @ProvideService(ConfigurationListener.class),
                 @ProvideService(Synchronizer.class),
                 @ProvideService(EventHandler.class),
-                @ProvideService(CellarConfigMBean.class)
+                @ProvideService(CellarConfigMBean.class),
+                @ProvideService(TombstoneCompactor.class)
         }
 )
 @Managed("org.apache.karaf.shell.config")
@@ -60,6 +65,8 @@ public class Activator extends BaseActivator implements ManagedService {
     private LocalConfigurationListener localConfigurationListener;
     private ConfigurationSynchronizer configurationSynchronizer;
     private ConfigurationEventHandler configurationEventHandler;
+    private ConfigurationPersister configurationPersister;
+    private TombstoneCompactor tombstoneCompactor;
     private ServiceRegistration cellarConfigMBeanRegistration;
 
     @Override
@@ -80,12 +87,30 @@ public class Activator extends BaseActivator implements ManagedService {
 
         File storage = new File(getString("storage", System.getProperty("karaf.etc")));
 
+        ConfigurationSnapshots configurationSnapshots = new ConfigurationSnapshots();
+        LocalConfigurationHashes localConfigurationHashes = new LocalConfigurationHashes();
+
+        LOGGER.debug("CELLAR CONFIG: init configuration persister");
+        configurationPersister = new ConfigurationPersister();
+        configurationPersister.setConfigurationAdmin(configurationAdmin);
+        configurationPersister.init();
+
+        LOGGER.debug("CELLAR CONFIG: init tombstone compactor");
+        tombstoneCompactor = new TombstoneCompactor();
+        tombstoneCompactor.setClusterManager(clusterManager);
+        tombstoneCompactor.setGroupManager(groupManager);
+        tombstoneCompactor.setConfigurationAdmin(configurationAdmin);
+        tombstoneCompactor.init();
+        register(TombstoneCompactor.class, tombstoneCompactor);
+
         LOGGER.debug("CELLAR CONFIG: init event handler");
         configurationEventHandler = new ConfigurationEventHandler();
         configurationEventHandler.setConfigurationAdmin(configurationAdmin);
         configurationEventHandler.setGroupManager(groupManager);
         configurationEventHandler.setClusterManager(clusterManager);
         configurationEventHandler.setStorage(storage);
+        configurationEventHandler.setConfigurationSnapshots(configurationSnapshots);
+        configurationEventHandler.setConfigurationPersister(configurationPersister);
         configurationEventHandler.init();
         Hashtable props = new Hashtable();
         props.put("managed", "true");
@@ -98,6 +123,8 @@ public class Activator extends BaseActivator implements ManagedService {
         localConfigurationListener.setConfigurationAdmin(configurationAdmin);
         localConfigurationListener.setEventProducer(eventProducer);
         localConfigurationListener.setStorage(storage);
+        localConfigurationListener.setConfigurationSnapshots(configurationSnapshots);
+        localConfigurationListener.setLocalConfigurationHashes(localConfigurationHashes);
         localConfigurationListener.init();
         register(ConfigurationListener.class, localConfigurationListener);
 
@@ -108,6 +135,9 @@ public class Activator extends BaseActivator implements ManagedService {
         configurationSynchronizer.setClusterManager(clusterManager);
         configurationSynchronizer.setEventProducer(eventProducer);
         configurationSynchronizer.setStorage(storage);
+        configurationSynchronizer.setConfigurationSnapshots(configurationSnapshots);
+        configurationSynchronizer.setConfigurationPersister(configurationPersister);
+        configurationSynchronizer.setLocalConfigurationHashes(localConfigurationHashes);
         configurationSynchronizer.init(bundleContext);
         props = new Hashtable();
         props.put("resource", "config");
@@ -119,6 +149,7 @@ public class Activator extends BaseActivator implements ManagedService {
         cellarConfigMBean.setGroupManager(groupManager);
         cellarConfigMBean.setConfigurationAdmin(configurationAdmin);
         cellarConfigMBean.setEventProducer(eventProducer);
+        cellarConfigMBean.setTombstoneCompactor(tombstoneCompactor);
         props = new Hashtable();
         props.put("jmx.objectname", "org.apache.karaf.cellar:type=config,name=" + System.getProperty("karaf.name"));
         cellarConfigMBeanRegistration = bundleContext.registerService(getInterfaceNames(cellarConfigMBean), cellarConfigMBean, props);
@@ -144,6 +175,14 @@ public class Activator extends BaseActivator implements ManagedService {
             configurationEventHandler.destroy();
             configurationEventHandler = null;
         }
+        if (configurationPersister != null) {
+            configurationPersister.destroy();
+            configurationPersister = null;
+        }
+        if (tombstoneCompactor != null) {
+            tombstoneCompactor.destroy();
+            tombstoneCompactor = null;
+        }
     }
 
 }
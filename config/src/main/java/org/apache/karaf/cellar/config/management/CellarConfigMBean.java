@@ -111,4 +111,14 @@ public interface CellarConfigMBean {
      */
     void block(String groupName, String pid, boolean whitelist, boolean blacklist, boolean in, boolean out) throws Exception;
 
+    /**
+     * Remove the markers of the deleted configurations in a cluster group, acknowledged by all cluster group members
+     * or older than the retention period.
+     *
+     * @param groupName the cluster group name.
+     * @return the number of removed markers.
+     * @throws Exception in case of compaction failure.
+     */
+    int compact(String groupName) throws Exception;
+
 }
@@ -14,7 +14,9 @@
 package org.apache.karaf.cellar.config.management.internal;
 
 import org.apache.karaf.cellar.config.ClusterConfigurationEvent;
+import org.apache.karaf.cellar.config.ConfigurationSupport;
 import org.apache.karaf.cellar.config.Constants;
+import org.apache.karaf.cellar.config.TombstoneCompactor;
 import org.apache.karaf.cellar.core.*;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
 import org.apache.karaf.cellar.core.event.EventProducer;
@@ -38,6 +40,7 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
     private GroupManager groupManager;
     private ConfigurationAdmin configurationAdmin;
     private EventProducer eventProducer;
+    private TombstoneCompactor tombstoneCompactor;
 
     public CellarConfigMBeanImpl() throws NotCompliantMBeanException {
         super(CellarConfigMBean.class);
@@ -86,7 +89,7 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
         Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
         if (clusterConfigurations != null) {
             // update the cluster group
-            Properties properties = clusterConfigurations.remove(pid);
+            getConfigurationSupport().removeClusterConfiguration(groupName, pid);
 
             // broadcast the cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
@@ -109,6 +112,10 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
             Enumeration propertyNames = clusterProperties.propertyNames();
             while (propertyNames.hasMoreElements()) {
                 String key = (String) propertyNames.nextElement();
+                if (ConfigurationSupport.isClusterMetadata(key)) {
+                    // cluster metadata, not a configuration property
+                    continue;
+                }
                 String value = (String) clusterProperties.get(key);
                 properties.put(key, value);
             }
@@ -146,10 +153,11 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
                 clusterProperties = new Properties();
             }
             clusterProperties.put(key, value);
-            clusterConfigurations.put(pid, clusterProperties);
+            Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, clusterProperties);
 
             // broadcast the cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            event.setVersion(version);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
@@ -195,10 +203,11 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
             } else {
                 throw new IllegalStateException("Append failed: current value is not a String");
             }
-            clusterConfigurations.put(pid, clusterProperties);
+            Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, clusterProperties);
 
             // broadcast the cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            event.setVersion(version);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
@@ -235,9 +244,10 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
             Properties clusterDictionary = clusterConfigurations.get(pid);
             if (clusterDictionary != null) {
                 clusterDictionary.remove(key);
-                clusterConfigurations.put(pid, clusterDictionary);
+                Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, clusterDictionary);
                 // broadcast the cluster event
                 ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                event.setVersion(version);
                 event.setSourceGroup(group);
                 event.setSourceNode(clusterManager.getNode());
                 eventProducer.produce(event);
@@ -292,6 +302,25 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
         }
     }
 
+    @Override
+    public int compact(String groupName) throws Exception {
+        // check if the group exists
+        Group group = groupManager.findGroupByName(groupName);
+        if (group == null) {
+            throw new IllegalArgumentException("Cluster group " + groupName + " doesn't exist");
+        }
+
+        return tombstoneCompactor.compact(group);
+    }
+
+    private ConfigurationSupport getConfigurationSupport() {
+        ConfigurationSupport support = new ConfigurationSupport();
+        support.setClusterManager(this.clusterManager);
+        support.setGroupManager(this.groupManager);
+        support.setConfigurationAdmin(this.configurationAdmin);
+        return support;
+    }
+
     public ClusterManager getClusterManager() {
         return this.clusterManager;
     }
@@ -324,4 +353,12 @@ public class CellarConfigMBeanImpl extends StandardMBean implements CellarConfig
         this.configurationAdmin = configurationAdmin;
     }
 
+    public TombstoneCompactor getTombstoneCompactor() {
+        return tombstoneCompactor;
+    }
+
+    public void setTombstoneCompactor(TombstoneCompactor tombstoneCompactor) {
+        this.tombstoneCompactor = tombstoneCompactor;
+    }
+
 }
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config.shell;
+
+import org.apache.karaf.cellar.config.TombstoneCompactor;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.shell.completer.AllGroupsCompleter;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+
+@Command(scope = "cluster", name = "config-compact", description = "Remove the markers of the deleted configurations acknowledged by all nodes or expired in a cluster group")
+@Service
+public class CompactCommand extends ConfigCommandSupport {
+
+    @Argument(index = 0, name = "group", description = "The cluster group name", required = true, multiValued = false)
+    @Completion(AllGroupsCompleter.class)
+    String groupName;
+
+    @Option(name = "-r", aliases = {"--retention"}, description = "The retention period of the markers in milliseconds (default from the node configuration)", required = false, multiValued = false)
+    Long retention;
+
+    @Reference
+    private TombstoneCompactor tombstoneCompactor;
+
+    @Override
+    protected Object doExecute() throws Exception {
+        // check if the group exists
+        Group group = groupManager.findGroupByName(groupName);
+        if (group == null) {
+            System.err.println("Cluster group " + groupName + " doesn't exist");
+            return null;
+        }
+
+        int count = (retention != null) ? tombstoneCompactor.compact(group, retention) : tombstoneCompactor.compact(group);
+        System.out.println(count + " deleted configuration marker(s) removed from cluster group " + groupName);
+        return null;
+    }
+
+}
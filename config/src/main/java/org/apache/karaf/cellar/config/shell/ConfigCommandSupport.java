@@ -13,6 +13,7 @@
  */
 package org.apache.karaf.cellar.config.shell;
 
+import org.apache.karaf.cellar.config.ConfigurationSupport;
 import org.apache.karaf.cellar.core.CellarSupport;
 import org.apache.karaf.cellar.core.Group;
 import org.apache.karaf.cellar.core.event.EventType;
@@ -40,4 +41,17 @@ public abstract class ConfigCommandSupport extends CellarCommandSupport {
         return support.isAllowed(group, category, pid, type);
     }
 
+    /**
+     * Get a configuration support to update the cluster configurations.
+     *
+     * @return the configuration support.
+     */
+    protected ConfigurationSupport getConfigurationSupport() {
+        ConfigurationSupport support = new ConfigurationSupport();
+        support.setClusterManager(this.clusterManager);
+        support.setGroupManager(this.groupManager);
+        support.setConfigurationAdmin(this.configurationAdmin);
+        return support;
+    }
+
 }
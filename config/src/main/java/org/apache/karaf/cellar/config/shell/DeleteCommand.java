@@ -71,7 +71,7 @@ public class DeleteCommand extends ConfigCommandSupport {
         Map<String, Properties> clusterConfigurations = clusterManager.getMap(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + groupName);
         if (clusterConfigurations != null) {
             // update configurations in the cluster group
-            clusterConfigurations.remove(pid);
+            getConfigurationSupport().removeClusterConfiguration(groupName, pid);
 
             // broadcast a cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
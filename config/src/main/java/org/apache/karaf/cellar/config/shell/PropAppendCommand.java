@@ -89,10 +89,11 @@ public class PropAppendCommand extends ConfigCommandSupport {
                 System.err.println("Append failed: current value is not a String");
                 return null;
             }
-            clusterConfigurations.put(pid, properties);
+            Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, properties);
 
             // broadcast the cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            event.setVersion(version);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
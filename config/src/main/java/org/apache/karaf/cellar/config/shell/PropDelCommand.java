@@ -76,10 +76,11 @@ public class PropDelCommand extends ConfigCommandSupport {
             Properties distributedDictionary = clusterConfigurations.get(pid);
             if (distributedDictionary != null) {
                 distributedDictionary.remove(key);
-                clusterConfigurations.put(pid, distributedDictionary);
+                Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, distributedDictionary);
 
                 // broadcast the cluster event
                 ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+                event.setVersion(version);
                 event.setSourceGroup(group);
                 event.setSourceNode(clusterManager.getNode());
                 eventProducer.produce(event);
@@ -81,10 +81,11 @@ public class PropSetCommand extends ConfigCommandSupport {
                 properties = new Properties();
             }
             properties.put(key, value);
-            clusterConfigurations.put(pid, properties);
+            Long version = getConfigurationSupport().putClusterConfiguration(groupName, pid, properties);
 
             // broadcast the cluster event
             ClusterConfigurationEvent event = new ClusterConfigurationEvent(pid);
+            event.setVersion(version);
             event.setSourceGroup(group);
             event.setSourceNode(clusterManager.getNode());
             eventProducer.produce(event);
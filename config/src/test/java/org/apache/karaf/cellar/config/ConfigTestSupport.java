@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+import org.apache.karaf.cellar.core.ClusterEntryReader;
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Node;
+import org.easymock.EasyMock;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local stand-ins of the cluster manager and configuration admin used by the configuration tests.
+ */
+class ConfigTestSupport {
+
+    /**
+     * Create a cluster manager storing the maps locally, and applying the entry processors and readers in place
+     * (returning their result).
+     *
+     * @param nodeId the local node ID.
+     * @return the cluster manager.
+     */
+    @SuppressWarnings("unchecked")
+    static ClusterManager clusterManager(String nodeId) {
+        final Map<String, Map<Object, Object>> maps = new ConcurrentHashMap<String, Map<Object, Object>>();
+        Node node = EasyMock.createMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn(nodeId).anyTimes();
+        ClusterManager clusterManager = EasyMock.createMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getNode()).andReturn(node).anyTimes();
+        EasyMock.expect(clusterManager.listNodes()).andReturn(Collections.singleton(node)).anyTimes();
+        EasyMock.expect(clusterManager.getMap(EasyMock.anyString())).andAnswer(() ->
+                maps.computeIfAbsent((String) EasyMock.getCurrentArguments()[0], name -> new ConcurrentHashMap<Object, Object>())).anyTimes();
+        EasyMock.expect(clusterManager.executeOnEntry(EasyMock.anyString(), EasyMock.anyObject(), EasyMock.<ClusterEntryProcessor<Object, Object>>anyObject())).andAnswer(() -> {
+            Object[] arguments = EasyMock.getCurrentArguments();
+            Map<Object, Object> map = maps.computeIfAbsent((String) arguments[0], name -> new ConcurrentHashMap<Object, Object>());
+            ClusterEntryProcessor<Object, Object> processor = (ClusterEntryProcessor<Object, Object>) arguments[2];
+            synchronized (map) {
+                Object previous = map.get(arguments[1]);
+                Object value = processor.process(arguments[1], previous);
+                if (value == null) {
+                    map.remove(arguments[1]);
+                } else {
+                    map.put(arguments[1], value);
+                }
+                return processor.result(arguments[1], previous, value);
+            }
+        }).anyTimes();
+        EasyMock.expect(clusterManager.readEntry(EasyMock.anyString(), EasyMock.anyObject(), EasyMock.<ClusterEntryReader<Object, Object>>anyObject())).andAnswer(() -> {
+            Object[] arguments = EasyMock.getCurrentArguments();
+            Map<Object, Object> map = maps.computeIfAbsent((String) arguments[0], name -> new ConcurrentHashMap<Object, Object>());
+            return ((ClusterEntryReader<Object, Object>) arguments[2]).read(arguments[1], map.get(arguments[1]));
+        }).anyTimes();
+        EasyMock.replay(node, clusterManager);
+        return clusterManager;
+    }
+
+    /**
+     * Create a configuration admin providing only the Cellar node configuration.
+     *
+     * @param nodeProperties the node configuration properties.
+     * @return the configuration admin.
+     * @throws Exception never.
+     */
+    static ConfigurationAdmin configurationAdmin(Dictionary<String, Object> nodeProperties) throws Exception {
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(nodeProperties).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(configuration).anyTimes();
+        EasyMock.replay(configuration, configurationAdmin);
+        return configurationAdmin;
+    }
+
+    static Dictionary<String, Object> nodeProperties(String... entries) {
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("config.excluded.properties", "felix.fileinstall.filename, felix.fileinstall.dir, felix.fileinstall.tmpdir");
+        for (int i = 0; i + 1 < entries.length; i += 2) {
+            properties.put(entries[i], entries[i + 1]);
+        }
+        return properties;
+    }
+
+    static <K, V> Map<K, V> map(ClusterManager clusterManager, String name, String groupName) {
+        return clusterManager.getMap(name + Configurations.SEPARATOR + groupName);
+    }
+
+}
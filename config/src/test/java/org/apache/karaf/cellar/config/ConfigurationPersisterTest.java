@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.cm.Configuration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Properties;
+
+public class ConfigurationPersisterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Configuration configuration(Dictionary<String, Object> properties) {
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(properties).anyTimes();
+        EasyMock.replay(configuration);
+        return configuration;
+    }
+
+    private static Properties load(File file) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            properties.load(is);
+        }
+        return properties;
+    }
+
+    @Test
+    public void testWriteContent() throws Exception {
+        File storageFile = new File(folder.getRoot(), "org.foo.cfg");
+        String content = "# caf\u00e9\nfoo = bar\n";
+        ConfigurationPersister.write(storageFile, null, content);
+        Assert.assertArrayEquals(content.getBytes(Charset.defaultCharset()), Files.readAllBytes(storageFile.toPath()));
+        Assert.assertFalse(new File(folder.getRoot(), "org.foo.cfg.tmp").exists());
+    }
+
+    @Test
+    public void testWriteProperties() throws Exception {
+        File storageFile = new File(folder.getRoot(), "org.foo.cfg");
+        Files.write(storageFile.toPath(), "foo = bar\nremoved = value\n".getBytes(StandardCharsets.ISO_8859_1));
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(org.osgi.framework.Constants.SERVICE_PID, "org.foo");
+        properties.put("foo", "baz");
+        ConfigurationPersister.write(storageFile, configuration(properties), null);
+
+        Properties written = load(storageFile);
+        Assert.assertEquals("baz", written.getProperty("foo"));
+        Assert.assertNull(written.getProperty("removed"));
+        Assert.assertNull(written.getProperty(org.osgi.framework.Constants.SERVICE_PID));
+        Assert.assertFalse(new File(folder.getRoot(), "org.foo.cfg.tmp").exists());
+    }
+
+    @Test
+    public void testWriteFailure() throws Exception {
+        File storageFile = new File(folder.getRoot(), "org.foo.cfg");
+        Files.write(storageFile.toPath(), "foo = bar\n".getBytes(StandardCharsets.ISO_8859_1));
+        // the configuration has been deleted in the meantime
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andThrow(new IllegalStateException("deleted"));
+        EasyMock.replay(configuration);
+        try {
+            ConfigurationPersister.write(storageFile, configuration, null);
+            Assert.fail("the write should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals("bar", load(storageFile).getProperty("foo"));
+        Assert.assertFalse(new File(folder.getRoot(), "org.foo.cfg.tmp").exists());
+    }
+
+}
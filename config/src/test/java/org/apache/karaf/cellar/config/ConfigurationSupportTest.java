@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Group;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+
+public class ConfigurationSupportTest {
+
+    private static final String GROUP = "default";
+    private static final String PID = "org.foo";
+
+    private ClusterManager clusterManager;
+    private Map<String, Properties> clusterConfigurations;
+
+    @Before
+    public void setUp() {
+        clusterManager = ConfigTestSupport.clusterManager("node1");
+        clusterConfigurations = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_MAP, GROUP);
+    }
+
+    private ConfigurationSupport support(boolean delta) throws Exception {
+        ConfigurationSupport support = new ConfigurationSupport();
+        support.setClusterManager(clusterManager);
+        support.setConfigurationAdmin(ConfigTestSupport.configurationAdmin(
+                ConfigTestSupport.nodeProperties("config.delta", Boolean.toString(delta))));
+        support.setConfigurationSnapshots(new ConfigurationSnapshots());
+        return support;
+    }
+
+    private static Properties properties(String... entries) {
+        Properties properties = new Properties();
+        for (int i = 0; i + 1 < entries.length; i += 2) {
+            properties.put(entries[i], entries[i + 1]);
+        }
+        return properties;
+    }
+
+    @Test
+    public void testPutWithoutDelta() throws Exception {
+        ConfigurationSupport support = support(false);
+        Assert.assertNull(support.putClusterConfiguration(GROUP, PID, properties("foo", "bar")));
+        Properties stored = clusterConfigurations.get(PID);
+        Assert.assertEquals("bar", stored.get("foo"));
+        Assert.assertNull(ConfigurationSupport.getVersion(stored));
+        Assert.assertNull(support.getConfigurationSnapshots().get(GROUP, PID));
+    }
+
+    @Test
+    public void testPutVersioned() throws Exception {
+        ConfigurationSupport support = support(true);
+        Long version = support.putClusterConfiguration(GROUP, PID, properties("foo", "bar"));
+        Assert.assertNotNull(version);
+        Assert.assertEquals(version, ConfigurationSupport.getVersion(clusterConfigurations.get(PID)));
+        Assert.assertEquals(version.longValue(), support.getConfigurationSnapshots().get(GROUP, PID).getVersion());
+
+        // the version stored in the written properties is ignored, the cluster version is increased
+        Properties update = clusterConfigurations.get(PID);
+        update.put("foo", "baz");
+        Assert.assertEquals(Long.valueOf(version + 1), support.putClusterConfiguration(GROUP, PID, update));
+        Assert.assertEquals("baz", clusterConfigurations.get(PID).get("foo"));
+
+        // a write without delta drops the version
+        Assert.assertNull(support(false).putClusterConfiguration(GROUP, PID, update));
+        Assert.assertNull(ConfigurationSupport.getVersion(clusterConfigurations.get(PID)));
+    }
+
+    @Test
+    public void testDelta() throws Exception {
+        ConfigurationSupport support = support(true);
+        Long version = support.putClusterConfiguration(GROUP, PID, properties("foo", "bar", "removed", "value"));
+
+        ClusterConfigurationEvent event = support.updateClusterConfiguration(new Group(GROUP), PID, properties("foo", "baz", "added", "value"));
+        Assert.assertNotNull(event);
+        Assert.assertEquals(version, event.getBaseVersion());
+        Assert.assertEquals(Long.valueOf(version + 1), event.getVersion());
+        Assert.assertEquals(properties("foo", "baz", "added", "value"), event.getDelta());
+        Assert.assertTrue(event.getRemoved().contains("removed"));
+
+        Properties stored = clusterConfigurations.get(PID);
+        Assert.assertEquals(Long.valueOf(version + 1), ConfigurationSupport.getVersion(stored));
+        Assert.assertEquals("baz", stored.get("foo"));
+        Assert.assertEquals("value", stored.get("added"));
+        Assert.assertNull(stored.get("removed"));
+
+        // nothing changed
+        Assert.assertNull(support.updateClusterConfiguration(new Group(GROUP), PID, properties("foo", "baz", "added", "value")));
+    }
+
+    @Test
+    public void testDeltaConcurrentUpdate() throws Exception {
+        ConfigurationSupport support = support(true);
+        Long version = support.putClusterConfiguration(GROUP, PID, properties("foo", "bar"));
+        // another node updates the configuration, the local snapshot is not at the cluster version anymore
+        Long concurrent = support(true).putClusterConfiguration(GROUP, PID, properties("foo", "other"));
+        Assert.assertEquals(Long.valueOf(version + 1), concurrent);
+
+        ConfigurationDelta delta = new ConfigurationDelta(properties("foo", "baz"), new HashSet<String>(), version);
+        ConfigurationUpdateResult result = (ConfigurationUpdateResult) clusterManager.executeOnEntry(Constants.CONFIGURATION_MAP + Configurations.SEPARATOR + GROUP, PID, delta);
+        Assert.assertFalse(result.isApplied());
+        Assert.assertEquals(concurrent, result.getVersion());
+        Assert.assertEquals("other", clusterConfigurations.get(PID).get("foo"));
+
+        // the full configuration is sent
+        ClusterConfigurationEvent event = support.updateClusterConfiguration(new Group(GROUP), PID, properties("foo", "baz"));
+        Assert.assertNotNull(event);
+        Assert.assertNull(event.getDelta());
+        Assert.assertEquals(Long.valueOf(concurrent + 1), event.getVersion());
+        Assert.assertEquals("baz", clusterConfigurations.get(PID).get("foo"));
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        ConfigurationSupport support = support(false);
+        Properties local = properties("foo", "bar", ConfigurationSupport.KARAF_CELLAR_CONTENT, "foo = bar\n");
+        Properties cluster = properties("foo", "bar", ConfigurationSupport.KARAF_CELLAR_CONTENT, "foo = bar\n");
+        cluster.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 42L);
+        // the cluster version is not part of the configuration
+        Assert.assertTrue(support.equals(local, cluster));
+        // the content is compared, even if only one side has it
+        cluster.remove(ConfigurationSupport.KARAF_CELLAR_CONTENT);
+        Assert.assertFalse(support.equals(local, cluster));
+        Assert.assertFalse(support.equals(cluster, local));
+    }
+
+    @Test
+    public void testHashOfWrittenConfiguration() throws Exception {
+        ConfigurationSupport support = support(true);
+        Map<String, String> clusterHashes = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_HASHES_MAP, GROUP);
+        support.putClusterConfiguration(GROUP, PID, properties("foo", "bar", "other", "value"));
+        Assert.assertEquals(ConfigurationSupport.hash(properties("foo", "bar", "other", "value")), clusterHashes.get(PID));
+
+        // the delta only contains the changed property, the hash is the one of the merged configuration
+        Assert.assertNotNull(support.updateClusterConfiguration(new Group(GROUP), PID, properties("foo", "baz", "other", "value")));
+        Properties stored = clusterConfigurations.get(PID);
+        Assert.assertEquals(ConfigurationSupport.hash(properties("foo", "baz", "other", "value")), stored.get(ConfigurationSupport.KARAF_CELLAR_HASH));
+        Assert.assertEquals(stored.get(ConfigurationSupport.KARAF_CELLAR_HASH), clusterHashes.get(PID));
+
+        support.removeClusterConfiguration(GROUP, PID);
+        Assert.assertNull(clusterHashes.get(PID));
+    }
+
+    @Test
+    public void testHashContent() throws Exception {
+        Properties properties = properties("foo", "bar", ConfigurationSupport.KARAF_CELLAR_CONTENT, "foo = bar\n");
+        Properties commented = properties("foo", "bar", ConfigurationSupport.KARAF_CELLAR_CONTENT, "# comment\nfoo = bar\n");
+        Assert.assertNotEquals(ConfigurationSupport.hash(properties), ConfigurationSupport.hash(commented));
+        // the cluster metadata is not part of the hash
+        Properties versioned = properties("foo", "bar", ConfigurationSupport.KARAF_CELLAR_CONTENT, "foo = bar\n");
+        versioned.put(ConfigurationSupport.KARAF_CELLAR_VERSION, 42L);
+        versioned.put(ConfigurationSupport.KARAF_CELLAR_HASH, "hash");
+        Assert.assertEquals(ConfigurationSupport.hash(properties), ConfigurationSupport.hash(versioned));
+    }
+
+    @Test
+    public void testHashConcurrentUpdate() throws Exception {
+        ConfigurationSupport support = support(false);
+        Map<String, String> clusterHashes = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_HASHES_MAP, GROUP);
+        support.putClusterConfiguration(GROUP, PID, properties("foo", "bar"));
+        Properties first = clusterConfigurations.get(PID);
+        // another node writes the configuration, and stores its hash before the first writer
+        support(false).putClusterConfiguration(GROUP, PID, properties("foo", "baz"));
+
+        // the late hash update of the first writer doesn't override the hash of the current configuration
+        support.updateClusterHash(GROUP, PID, first);
+        Assert.assertEquals(ConfigurationSupport.hash(properties("foo", "baz")), clusterHashes.get(PID));
+    }
+
+}
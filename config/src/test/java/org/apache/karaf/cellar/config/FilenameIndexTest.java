@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class FilenameIndexTest {
+
+    private static final String GROUP = "default";
+
+    private ClusterManager clusterManager;
+    private Map<String, Properties> clusterConfigurations;
+    private ConfigurationSupport support;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterManager = ConfigTestSupport.clusterManager("node1");
+        clusterConfigurations = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_MAP, GROUP);
+        support = new ConfigurationSupport();
+        support.setClusterManager(clusterManager);
+        support.setConfigurationAdmin(ConfigTestSupport.configurationAdmin(ConfigTestSupport.nodeProperties()));
+        support.setConfigurationSnapshots(new ConfigurationSnapshots());
+    }
+
+    private static Properties configuration(String pid, String filename) {
+        Properties properties = new Properties();
+        properties.put(org.osgi.framework.Constants.SERVICE_PID, pid);
+        properties.put(ConfigurationSupport.KARAF_CELLAR_FILENAME, filename);
+        properties.put("foo", "bar");
+        return properties;
+    }
+
+    private Map<String, Set<String>> index() {
+        return ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_FILENAMES_MAP, GROUP);
+    }
+
+    @Test
+    public void testPartialIndexIsRebuilt() throws Exception {
+        // one configuration stored by a helper, one stored before the index existed
+        support.putClusterConfiguration(GROUP, "org.foo", configuration("org.foo", "org.foo.cfg"));
+        clusterConfigurations.put("org.bar", configuration("org.bar", "org.bar.cfg"));
+        Assert.assertFalse(index().containsKey("org.bar.cfg"));
+
+        Map<String, Set<String>> index = support.getFilenameIndex(GROUP);
+        Assert.assertEquals(Collections.singleton("org.foo"), index.get("org.foo.cfg"));
+        Assert.assertEquals(Collections.singleton("org.bar"), index.get("org.bar.cfg"));
+
+        // the index is rebuilt only once
+        clusterConfigurations.put("org.baz", configuration("org.baz", "org.baz.cfg"));
+        Assert.assertFalse(support.getFilenameIndex(GROUP).containsKey("org.baz.cfg"));
+    }
+
+    @Test
+    public void testDeleteUnindexedConfiguration() throws Exception {
+        support.getFilenameIndex(GROUP);
+        support.putClusterConfiguration(GROUP, "org.foo", configuration("org.foo", "shared.cfg"));
+        // stored without maintaining the index, sharing the file name of an indexed configuration
+        clusterConfigurations.put("org.bar", configuration("org.bar", "shared.cfg"));
+
+        Set<String> deleted = support.deleteClusterConfiguration(GROUP, "org.bar");
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("org.foo", "org.bar")), new HashSet<String>(deleted));
+        Assert.assertNotNull(clusterConfigurations.get("org.foo").get(ConfigurationSupport.KARAF_CELLAR_REMOVED));
+        Assert.assertNotNull(clusterConfigurations.get("org.bar").get(ConfigurationSupport.KARAF_CELLAR_REMOVED));
+        Assert.assertNull(index().get("shared.cfg"));
+    }
+
+    @Test
+    public void testDeleteIndexedConfiguration() throws Exception {
+        support.putClusterConfiguration(GROUP, "org.foo", configuration("org.foo", "shared.cfg"));
+        support.putClusterConfiguration(GROUP, "org.bar", configuration("org.bar", "shared.cfg"));
+        support.putClusterConfiguration(GROUP, "org.baz", configuration("org.baz", "org.baz.cfg"));
+
+        Set<String> deleted = support.deleteClusterConfiguration(GROUP, "org.foo");
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("org.foo", "org.bar")), new HashSet<String>(deleted));
+        Assert.assertNull(clusterConfigurations.get("org.baz").get(ConfigurationSupport.KARAF_CELLAR_REMOVED));
+        Assert.assertTrue(support.deleteClusterConfiguration(GROUP, "org.unknown").isEmpty());
+    }
+
+    @Test
+    public void testWritesMaintainIndex() throws Exception {
+        support.putClusterConfiguration(GROUP, "org.foo", configuration("org.foo", "org.foo.cfg"));
+        Assert.assertEquals(Collections.singleton("org.foo"), support.getFilenameIndex(GROUP).get("org.foo.cfg"));
+
+        // file name change
+        support.putClusterConfiguration(GROUP, "org.foo", configuration("org.foo", "org.foo-new.cfg"));
+        Assert.assertNull(index().get("org.foo.cfg"));
+        Assert.assertEquals(Collections.singleton("org.foo"), index().get("org.foo-new.cfg"));
+
+        // removed configuration marker
+        support.putDeletedConfigurationMarker(GROUP, "org.foo", clusterConfigurations.get("org.foo"));
+        Assert.assertNull(index().get("org.foo-new.cfg"));
+
+        // remove
+        support.putClusterConfiguration(GROUP, "org.bar", configuration("org.bar", "org.bar.cfg"));
+        Assert.assertNotNull(support.removeClusterConfiguration(GROUP, "org.bar"));
+        Assert.assertNull(index().get("org.bar.cfg"));
+        Assert.assertNull(clusterConfigurations.get("org.bar"));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.config;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.Node;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class TombstoneCompactorTest {
+
+    private static final String GROUP = "default";
+    private static final long RETENTION = 60000;
+
+    private ClusterManager clusterManager;
+    private Map<String, Properties> clusterConfigurations;
+    private Map<String, Set<String>> acknowledgements;
+    private TombstoneCompactor compactor;
+    private Group group;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterManager = ConfigTestSupport.clusterManager("node1");
+        clusterConfigurations = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_MAP, GROUP);
+        acknowledgements = ConfigTestSupport.map(clusterManager, Constants.CONFIGURATION_TOMBSTONES_MAP, GROUP);
+        compactor = new TombstoneCompactor();
+        compactor.setClusterManager(clusterManager);
+        compactor.setConfigurationAdmin(ConfigTestSupport.configurationAdmin(ConfigTestSupport.nodeProperties()));
+        group = new Group(GROUP);
+        group.setNodes(new HashSet<Node>(Arrays.asList(node("node1"), node("node2"))));
+    }
+
+    private static Node node(String id) {
+        Node node = EasyMock.createMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn(id).anyTimes();
+        EasyMock.replay(node);
+        return node;
+    }
+
+    private static Properties marker(Long timestamp) {
+        Properties marker = new Properties();
+        marker.put(ConfigurationSupport.KARAF_CELLAR_REMOVED, true);
+        if (timestamp != null) {
+            marker.put(ConfigurationSupport.KARAF_CELLAR_REMOVED_TIMESTAMP, timestamp);
+        }
+        return marker;
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        long now = System.currentTimeMillis();
+        clusterConfigurations.put("acknowledged", marker(now));
+        acknowledgements.put("acknowledged", new HashSet<String>(Arrays.asList("node1", "node2")));
+        clusterConfigurations.put("partially", marker(now));
+        acknowledgements.put("partially", new HashSet<String>(Arrays.asList("node1")));
+        clusterConfigurations.put("expired", marker(now - 2 * RETENTION));
+        clusterConfigurations.put("unstamped", marker(null));
+        Properties configuration = new Properties();
+        configuration.put("foo", "bar");
+        clusterConfigurations.put("configuration", configuration);
+
+        Assert.assertEquals(2, compactor.compact(group, RETENTION));
+        Assert.assertNull(clusterConfigurations.get("acknowledged"));
+        Assert.assertNull(acknowledgements.get("acknowledged"));
+        Assert.assertNull(clusterConfigurations.get("expired"));
+        Assert.assertNotNull(clusterConfigurations.get("partially"));
+        Assert.assertEquals("bar", clusterConfigurations.get("configuration").get("foo"));
+        // the retention of the markers created without timestamp starts now
+        Assert.assertTrue(clusterConfigurations.get("unstamped").get(ConfigurationSupport.KARAF_CELLAR_REMOVED_TIMESTAMP) instanceof Long);
+    }
+
+    @Test
+    public void testIndexedMarkers() throws Exception {
+        long now = System.currentTimeMillis();
+        // the markers stored before the acknowledgements are indexed on first compaction
+        Assert.assertEquals(0, compactor.compact(group, RETENTION));
+        clusterConfigurations.put("unindexed", marker(now - 2 * RETENTION));
+        clusterConfigurations.put("indexed", marker(now - 2 * RETENTION));
+        acknowledgements.put("indexed", new HashSet<String>());
+
+        Assert.assertEquals(1, compactor.compact(group, RETENTION));
+        Assert.assertNull(clusterConfigurations.get("indexed"));
+        Assert.assertNotNull(clusterConfigurations.get("unindexed"));
+    }
+
+    @Test
+    public void testCompactingMember() throws Exception {
+        Assert.assertTrue(compactor.isCompactingMember(group));
+        // node1 left the cluster but is still referenced by the cluster group
+        compactor.setClusterManager(ConfigTestSupport.clusterManager("node2"));
+        Assert.assertTrue(compactor.isCompactingMember(group));
+        Group other = new Group("other");
+        other.setNodes(new HashSet<Node>(Arrays.asList(node("node1"))));
+        Assert.assertFalse(compactor.isCompactingMember(other));
+    }
+
+    @Test
+    public void testAcknowledged() throws Exception {
+        Assert.assertEquals(false, new TombstoneAcknowledged("node1").read("pid", null));
+        Assert.assertEquals(false, new TombstoneAcknowledged("node1").read("pid", new HashSet<String>(Arrays.asList("node2"))));
+        Assert.assertEquals(true, new TombstoneAcknowledged("node1").read("pid", new HashSet<String>(Arrays.asList("node1", "node2"))));
+    }
+
+    @Test
+    public void testCompactionByKey() throws Exception {
+        long now = System.currentTimeMillis();
+        Properties configuration = new Properties();
+        configuration.put("foo", "bar");
+        // the configuration has been written again since the marker was read
+        TombstoneCompaction compaction = new TombstoneCompaction(now, now);
+        Assert.assertSame(configuration, compaction.process("pid", configuration));
+        Assert.assertEquals(false, compaction.result("pid", configuration, configuration));
+        // the configuration has been deleted again since the marker was read
+        Properties later = marker(now + 1);
+        Assert.assertSame(later, compaction.process("pid", later));
+        // the marker is removed
+        Assert.assertNull(compaction.process("pid", marker(now)));
+        Assert.assertEquals(true, compaction.result("pid", marker(now), null));
+        Assert.assertEquals(false, compaction.result("pid", null, null));
+    }
+
+}
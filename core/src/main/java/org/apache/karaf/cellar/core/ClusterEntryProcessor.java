@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import java.io.Serializable;
+
+/**
+ * Update applied atomically on a cluster map entry, where the entry is stored.
+ * The processor is serialized and sent to the entry owner, so it should be small and deterministic. The entry value is
+ * not sent back to the caller, only the result of the processor.
+ */
+public interface ClusterEntryProcessor<K, V> extends Serializable {
+
+    /**
+     * Compute the new value of a map entry.
+     *
+     * @param key the entry key.
+     * @param value the current entry value (null if the entry doesn't exist).
+     * @return the new entry value, or null to remove the entry.
+     */
+    public V process(K key, V value);
+
+    /**
+     * Compute the result of the update sent back to the caller.
+     * By default, nothing is sent back.
+     *
+     * @param key the entry key.
+     * @param previous the entry value before the update (null if the entry didn't exist).
+     * @param value the entry value after the update (null if the entry has been removed).
+     * @return the update result (should be small and serializable), or null.
+     */
+    public default Object result(K key, V previous, V value) {
+        return null;
+    }
+
+}
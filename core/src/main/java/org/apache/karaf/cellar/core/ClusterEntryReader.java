@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+import java.io.Serializable;
+
+/**
+ * Read of a cluster map entry, applied where the entry is stored.
+ * The reader is serialized and sent to the entry owner, and only its result is sent back, not the entry value.
+ */
+public interface ClusterEntryReader<K, V> extends Serializable {
+
+    /**
+     * Compute the result of the read.
+     *
+     * @param key the entry key.
+     * @param value the entry value (null if the entry doesn't exist).
+     * @return the read result (should be small and serializable), or null.
+     */
+    public Object read(K key, V value);
+
+}
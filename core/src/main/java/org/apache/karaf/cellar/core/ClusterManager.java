@@ -31,6 +31,78 @@ public interface ClusterManager {
      */
     public Map getMap(String mapName);
 
+    /**
+     * Atomically update an entry of a map in the cluster.
+     * The processor is applied on the node owning the entry: only the processor and its result are sent on the
+     * network, not the value.
+     *
+     * @param mapName the map name in the cluster.
+     * @param key the entry key.
+     * @param processor the update to apply on the entry.
+     * @return the result of the update (see {@link ClusterEntryProcessor#result(Object, Object, Object)}).
+     */
+    public <K, V> Object executeOnEntry(String mapName, K key, ClusterEntryProcessor<K, V> processor);
+
+    /**
+     * Read an entry of a map in the cluster, where the entry is stored: only the reader and its result are sent on
+     * the network, not the value.
+     * By default, the entry value is read and the reader is applied locally.
+     *
+     * @param mapName the map name in the cluster.
+     * @param key the entry key.
+     * @param reader the read to apply on the entry.
+     * @return the result of the read (see {@link ClusterEntryReader#read(Object, Object)}).
+     */
+    @SuppressWarnings("unchecked")
+    public default <K, V> Object readEntry(String mapName, K key, ClusterEntryReader<K, V> reader) {
+        Map<K, V> map = getMap(mapName);
+        return reader.read(key, map.get(key));
+    }
+
+    /**
+     * Register a listener notified of the changes of a cluster map entries.
+     * By default, the map changes are not notified.
+     *
+     * @param mapName the map name.
+     * @param listener the map listener.
+     * @param <K> the entry key type.
+     * @param <V> the entry value type.
+     * @return the listener registration ID, or null if the map changes are not notified.
+     */
+    public default <K, V> String addMapListener(String mapName, ClusterMapListener<K, V> listener) {
+        return null;
+    }
+
+    /**
+     * Unregister a cluster map listener.
+     *
+     * @param mapName the map name.
+     * @param registrationId the listener registration ID.
+     */
+    public default void removeMapListener(String mapName, String registrationId) {
+        // nothing to do
+    }
+
+    /**
+     * Register a listener notified when a node joins or leaves the cluster.
+     * By default, the node changes are not notified.
+     *
+     * @param listener the node listener.
+     * @return the listener registration ID, or null if the node changes are not notified.
+     */
+    public default String addNodeListener(ClusterNodeListener listener) {
+        return null;
+    }
+
+    /**
+     * Unregister a cluster node listener.
+     *
+     * @param registrationId the listener registration ID.
+     */
+    public default void removeNodeListener(String registrationId) {
+        // nothing to do
+    }
+
     /**
      * Get a list in the cluster.
      *
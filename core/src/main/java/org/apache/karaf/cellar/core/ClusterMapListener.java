@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+/**
+ * Listener notified of the changes of a cluster map entries, to maintain a local view of the map.
+ */
+public interface ClusterMapListener<K, V> {
+
+    /**
+     * Callback method called when an entry is added or updated.
+     *
+     * @param key the entry key.
+     * @param value the new entry value.
+     */
+    public void entryUpdated(K key, V value);
+
+    /**
+     * Callback method called when an entry is removed or evicted.
+     *
+     * @param key the entry key.
+     */
+    public void entryRemoved(K key);
+
+    /**
+     * Callback method called when all entries are removed.
+     */
+    public void mapCleared();
+
+}
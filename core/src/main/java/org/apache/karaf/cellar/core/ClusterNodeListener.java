@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.core;
+
+/**
+ * Listener notified when a node joins or leaves the cluster.
+ */
+public interface ClusterNodeListener {
+
+    /**
+     * Callback method called when a node joins the cluster.
+     *
+     * @param node the added node.
+     */
+    public void nodeAdded(Node node);
+
+    /**
+     * Callback method called when a node leaves the cluster.
+     *
+     * @param node the removed node.
+     */
+    public void nodeRemoved(Node node);
+
+}
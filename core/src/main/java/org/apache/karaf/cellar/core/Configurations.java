@@ -25,6 +25,8 @@ public class Configurations {
     public static final String PRODUCER = "producer";
     public static final String CONSUMER = "consumer";
     public static final String HANDLER = "handler";
+    public static final String BATCH = "batch";
+    public static final String BATCH_WINDOW = "batch.window";
     public static final String LISTENER = "listener";
     public static final String SEPARATOR = ".";
     public static final String DELIMETER = ",";
@@ -0,0 +1,562 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.core.artifact;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Dictionary;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Cluster wide content-addressed artifact cache.
+ * The first node resolving an artifact shares it in the cluster, split in chunks keyed by their SHA-256. The other
+ * nodes get the chunks from the cluster instead of downloading the artifact again from the remote repository. Each
+ * node keeps the artifacts in a local content-addressed storage.
+ * Only the immutable artifacts (released Maven artifacts) are cached, and only the artifacts smaller than
+ * {@code artifact.cache.max.size} are shared in the cluster.
+ * The artifacts needed by the features resolver and the KAR service are copied in a Maven repository owned by Cellar
+ * ({@code data/cellar/repository}), added to the default repositories of the Maven URL handler while the cache is
+ * enabled.
+ */
+public class ArtifactCache {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    public static final String ARTIFACTS_MAP = "org.apache.karaf.cellar.artifacts";
+    public static final String CHUNKS_MAP = "org.apache.karaf.cellar.artifacts.chunks";
+    public static final String ENABLED = "artifact.cache";
+    public static final String MAX_SIZE = "artifact.cache.max.size";
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+    public static final int CHUNK_SIZE = 512 * 1024;
+    public static final String REPOSITORY_ID = "cellar.artifacts";
+    public static final String LOCAL_INDEX = "locations.properties";
+
+    private static final String MVN_PID = "org.ops4j.pax.url.mvn";
+    private static final String MVN_DEFAULT_REPOSITORIES = "org.ops4j.pax.url.mvn.defaultRepositories";
+
+    private ClusterManager clusterManager;
+    private ConfigurationAdmin configurationAdmin;
+    private File storage;
+    private File repository;
+    private volatile boolean repositoryRegistered;
+    private Properties localIndex;
+
+    public void init() {
+        if (isEnabled()) {
+            registerRepository();
+        } else {
+            // the repository may have been added before the cache was disabled
+            unregisterRepository();
+        }
+    }
+
+    public void destroy() {
+        if (repositoryRegistered) {
+            unregisterRepository();
+        }
+    }
+
+    /**
+     * Check if the artifact cache is enabled in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return true if the artifact cache is enabled, false else.
+     */
+    public boolean isEnabled() {
+        return configurationAdmin != null && clusterManager != null
+                && Boolean.parseBoolean(CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, ENABLED, "false"));
+    }
+
+    /**
+     * Get the maximum size (in bytes) of the artifacts shared in the cluster, defined in
+     * etc/org.apache.karaf.cellar.node.cfg. The bigger artifacts are only kept in the local storage.
+     *
+     * @return the maximum size of the shared artifacts.
+     */
+    public long getMaxSize() {
+        if (configurationAdmin == null) {
+            return DEFAULT_MAX_SIZE;
+        }
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, MAX_SIZE, null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR ARTIFACT: invalid maximum size {}, using default", value);
+            }
+        }
+        return DEFAULT_MAX_SIZE;
+    }
+
+    /**
+     * Check if an artifact location can be cached: only released Maven artifacts are immutable.
+     *
+     * @param location the artifact location.
+     * @return true if the artifact can be cached, false else.
+     */
+    public static boolean isCacheable(String location) {
+        if (location == null || !location.startsWith("mvn:") || location.contains("!")) {
+            return false;
+        }
+        String[] coordinates = location.substring("mvn:".length()).split("/");
+        return coordinates.length >= 3 && !coordinates[2].isEmpty() && !coordinates[2].endsWith("SNAPSHOT");
+    }
+
+    /**
+     * Get the path of a Maven artifact in a Maven repository.
+     *
+     * @param location the Maven artifact location (mvn:groupId/artifactId/version[/type[/classifier]]).
+     * @return the path of the artifact in a Maven repository.
+     */
+    public static String getMavenPath(String location) {
+        String[] coordinates = location.substring("mvn:".length()).split("/");
+        if (coordinates.length < 3) {
+            throw new IllegalArgumentException("Invalid Maven location " + location);
+        }
+        String groupId = coordinates[0];
+        String artifactId = coordinates[1];
+        String version = coordinates[2];
+        String type = (coordinates.length > 3 && !coordinates[3].isEmpty()) ? coordinates[3] : "jar";
+        String classifier = (coordinates.length > 4 && !coordinates[4].isEmpty()) ? coordinates[4] : null;
+        StringBuilder path = new StringBuilder();
+        path.append(groupId.replace('.', '/')).append('/').append(artifactId).append('/').append(version).append('/');
+        path.append(artifactId).append('-').append(version);
+        if (classifier != null) {
+            path.append('-').append(classifier);
+        }
+        path.append('.').append(type);
+        return path.toString();
+    }
+
+    /**
+     * Open an artifact, using the cluster artifact cache if enabled.
+     *
+     * @param location the artifact location.
+     * @return the artifact content stream.
+     * @throws IOException in case of read failure.
+     */
+    public InputStream openStream(String location) throws IOException {
+        if (isEnabled() && isCacheable(location)) {
+            try {
+                return new FileInputStream(fetch(location));
+            } catch (IOException e) {
+                LOGGER.warn("CELLAR ARTIFACT: can't get {} from the artifact cache", location, e);
+            }
+        }
+        return openSource(location);
+    }
+
+    /**
+     * Populate the Cellar Maven repository with an artifact, using the cluster artifact cache if enabled.
+     * The Maven URL handler then resolves the artifact locally instead of downloading it from the remote repositories.
+     *
+     * @param location the artifact location.
+     */
+    public void prefetch(String location) {
+        if (!isEnabled()) {
+            if (repositoryRegistered) {
+                unregisterRepository();
+            }
+            return;
+        }
+        if (!isCacheable(location)) {
+            return;
+        }
+        registerRepository();
+        try {
+            File target = new File(getRepository(), getMavenPath(location));
+            if (target.exists()) {
+                return;
+            }
+            File file = fetch(location);
+            target.getParentFile().mkdirs();
+            File tmp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+            Files.copy(file.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            move(tmp, target);
+            LOGGER.debug("CELLAR ARTIFACT: {} copied in the local Maven repository", location);
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR ARTIFACT: can't prefetch {}", location, e);
+        }
+    }
+
+    /**
+     * Get an artifact in the local storage. If the artifact is not present locally, it's fetched from the cluster,
+     * or downloaded and shared in the cluster if no other node resolved it yet.
+     * The artifacts of the local storage are found with the local index of the locations, so the artifacts too large
+     * to be shared in the cluster are downloaded only once.
+     *
+     * @param location the artifact location.
+     * @return the artifact file in the local storage.
+     * @throws IOException in case of fetch failure.
+     */
+    public File fetch(String location) throws IOException {
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            String sha256 = getLocalSha256(location);
+            if (sha256 != null) {
+                File file = getStorageFile(sha256);
+                if (file.exists()) {
+                    LOGGER.debug("CELLAR ARTIFACT: {} found in the local storage", location);
+                    return file;
+                }
+            }
+            Map<String, ArtifactDescriptor> artifacts = clusterManager.getMap(ARTIFACTS_MAP);
+            ArtifactDescriptor descriptor = artifacts.get(location);
+            if (descriptor != null) {
+                File file = getStorageFile(descriptor.getSha256());
+                if (file.exists() && file.length() == descriptor.getSize()) {
+                    LOGGER.debug("CELLAR ARTIFACT: {} found in the local storage", location);
+                    putLocalSha256(location, descriptor.getSha256());
+                    return file;
+                }
+                try {
+                    return fetchFromCluster(descriptor);
+                } catch (IOException e) {
+                    LOGGER.debug("CELLAR ARTIFACT: can't fetch {} from the cluster, downloading it", location, e);
+                }
+            }
+            return download(location);
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    private File fetchFromCluster(ArtifactDescriptor descriptor) throws IOException {
+        Map<String, byte[]> chunks = clusterManager.getMap(CHUNKS_MAP);
+        File dir = getStorage();
+        File tmp = File.createTempFile(descriptor.getSha256(), ".tmp", dir);
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream os = new FileOutputStream(tmp)) {
+                for (String chunkSha256 : descriptor.getChunks()) {
+                    byte[] chunk = chunks.get(chunkSha256);
+                    if (chunk == null) {
+                        throw new IOException("Chunk " + chunkSha256 + " is not available in the cluster");
+                    }
+                    if (!chunkSha256.equals(toHex(newDigest().digest(chunk)))) {
+                        throw new IOException("Chunk " + chunkSha256 + " is corrupted");
+                    }
+                    digest.update(chunk);
+                    os.write(chunk);
+                }
+            }
+            if (!descriptor.getSha256().equals(toHex(digest.digest()))) {
+                throw new IOException("Artifact " + descriptor.getLocation() + " is corrupted");
+            }
+            File file = getStorageFile(descriptor.getSha256());
+            move(tmp, file);
+            putLocalSha256(descriptor.getLocation(), descriptor.getSha256());
+            LOGGER.debug("CELLAR ARTIFACT: {} fetched from the cluster", descriptor.getLocation());
+            return file;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private File download(String location) throws IOException {
+        File dir = getStorage();
+        File tmp = File.createTempFile("artifact", ".tmp", dir);
+        try {
+            MessageDigest digest = newDigest();
+            long size = 0;
+            try (InputStream is = openSource(location); OutputStream os = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = is.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, length);
+                    os.write(buffer, 0, length);
+                    size += length;
+                }
+            }
+            String sha256 = toHex(digest.digest());
+            File file = getStorageFile(sha256);
+            move(tmp, file);
+            putLocalSha256(location, sha256);
+            if (size <= getMaxSize()) {
+                share(location, sha256, size, file);
+                LOGGER.debug("CELLAR ARTIFACT: {} downloaded and shared in the cluster", location);
+            } else {
+                LOGGER.debug("CELLAR ARTIFACT: {} downloaded, too large ({} bytes) to be shared in the cluster", location, size);
+            }
+            return file;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Share an artifact of the local storage in the cluster.
+     *
+     * @param location the artifact location.
+     * @param sha256 the artifact content SHA-256.
+     * @param size the artifact size.
+     * @param file the artifact file in the local storage.
+     * @throws IOException in case of read failure.
+     */
+    private void share(String location, String sha256, long size, File file) throws IOException {
+        Map<String, byte[]> chunks = clusterManager.getMap(CHUNKS_MAP);
+        Map<String, ArtifactDescriptor> artifacts = clusterManager.getMap(ARTIFACTS_MAP);
+        ArtifactDescriptor descriptor = new ArtifactDescriptor();
+        descriptor.setLocation(location);
+        descriptor.setSha256(sha256);
+        descriptor.setSize(size);
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int length;
+            while ((length = readChunk(is, buffer)) > 0) {
+                byte[] chunk = new byte[length];
+                System.arraycopy(buffer, 0, chunk, 0, length);
+                String chunkSha256 = toHex(newDigest().digest(chunk));
+                // the chunks evicted from the cluster are shared again by the next download
+                chunks.putIfAbsent(chunkSha256, chunk);
+                descriptor.getChunks().add(chunkSha256);
+            }
+        }
+        artifacts.putIfAbsent(location, descriptor);
+    }
+
+    /**
+     * Add the Cellar Maven repository to the default repositories of the Maven URL handler (if not already there),
+     * so the artifacts prefetched by Cellar are resolved without remote download.
+     */
+    protected void registerRepository() {
+        if (repositoryRegistered || configurationAdmin == null) {
+            return;
+        }
+        synchronized (this) {
+            if (repositoryRegistered) {
+                return;
+            }
+            try {
+                Configuration configuration = configurationAdmin.getConfiguration(MVN_PID, null);
+                Dictionary<String, Object> properties = configuration.getProperties();
+                if (properties == null) {
+                    LOGGER.warn("CELLAR ARTIFACT: the Maven URL handler is not configured, the prefetched artifacts are not used");
+                } else {
+                    String repositories = (String) properties.get(MVN_DEFAULT_REPOSITORIES);
+                    if (repositories == null || !repositories.contains("@id=" + REPOSITORY_ID)) {
+                        String entry = getRepository().toURI().toString() + "@id=" + REPOSITORY_ID;
+                        properties.put(MVN_DEFAULT_REPOSITORIES,
+                                (repositories == null || repositories.trim().isEmpty()) ? entry : entry + ", " + repositories.trim());
+                        configuration.update(properties);
+                        LOGGER.debug("CELLAR ARTIFACT: repository {} added to the Maven URL handler", entry);
+                    }
+                }
+                repositoryRegistered = true;
+            } catch (IOException e) {
+                LOGGER.warn("CELLAR ARTIFACT: can't add the Cellar repository to the Maven URL handler", e);
+            }
+        }
+    }
+
+    /**
+     * Remove the Cellar Maven repository from the default repositories of the Maven URL handler (if there), when the
+     * artifact cache is disabled or stopped, so the Maven URL handler configuration is left as it was.
+     */
+    protected void unregisterRepository() {
+        if (configurationAdmin == null) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                Configuration configuration = configurationAdmin.getConfiguration(MVN_PID, null);
+                Dictionary<String, Object> properties = configuration.getProperties();
+                String repositories = (properties != null) ? (String) properties.get(MVN_DEFAULT_REPOSITORIES) : null;
+                if (repositories != null && repositories.contains("@id=" + REPOSITORY_ID)) {
+                    StringBuilder builder = new StringBuilder();
+                    for (String repository : repositories.split(",")) {
+                        if (!repository.trim().isEmpty() && !repository.contains("@id=" + REPOSITORY_ID)) {
+                            builder.append((builder.length() > 0) ? ", " : "").append(repository.trim());
+                        }
+                    }
+                    if (builder.length() > 0) {
+                        properties.put(MVN_DEFAULT_REPOSITORIES, builder.toString());
+                    } else {
+                        properties.remove(MVN_DEFAULT_REPOSITORIES);
+                    }
+                    configuration.update(properties);
+                    LOGGER.debug("CELLAR ARTIFACT: repository {} removed from the Maven URL handler", REPOSITORY_ID);
+                }
+                repositoryRegistered = false;
+            } catch (IOException e) {
+                LOGGER.warn("CELLAR ARTIFACT: can't remove the Cellar repository from the Maven URL handler", e);
+            }
+        }
+    }
+
+    /**
+     * Get the SHA-256 of an artifact in the local storage.
+     *
+     * @param location the artifact location.
+     * @return the artifact content SHA-256, or null if the artifact is not in the local index.
+     */
+    private synchronized String getLocalSha256(String location) {
+        return getLocalIndex().getProperty(location);
+    }
+
+    /**
+     * Add an artifact of the local storage in the local index, stored with the artifacts.
+     *
+     * @param location the artifact location.
+     * @param sha256 the artifact content SHA-256.
+     */
+    private synchronized void putLocalSha256(String location, String sha256) {
+        Properties index = getLocalIndex();
+        if (sha256.equals(index.getProperty(location))) {
+            return;
+        }
+        index.setProperty(location, sha256);
+        try {
+            File tmp = File.createTempFile(LOCAL_INDEX, ".tmp", getStorage());
+            try {
+                try (OutputStream os = new FileOutputStream(tmp)) {
+                    index.store(os, null);
+                }
+                move(tmp, new File(getStorage(), LOCAL_INDEX));
+            } finally {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("CELLAR ARTIFACT: can't store the local artifacts index", e);
+        }
+    }
+
+    private Properties getLocalIndex() {
+        if (localIndex == null) {
+            localIndex = new Properties();
+            File file = new File(getStorage(), LOCAL_INDEX);
+            if (file.exists()) {
+                try (InputStream is = new FileInputStream(file)) {
+                    localIndex.load(is);
+                } catch (IOException e) {
+                    LOGGER.warn("CELLAR ARTIFACT: can't read the local artifacts index", e);
+                }
+            }
+        }
+        return localIndex;
+    }
+
+    /**
+     * Open the artifact from its original location.
+     *
+     * @param location the artifact location.
+     * @return the artifact content stream.
+     * @throws IOException in case of read failure.
+     */
+    protected InputStream openSource(String location) throws IOException {
+        return new URL(location).openStream();
+    }
+
+    private static int readChunk(InputStream is, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = is.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private File getStorageFile(String sha256) {
+        return new File(getStorage(), sha256);
+    }
+
+    public File getStorage() {
+        if (storage == null) {
+            String data = System.getProperty("karaf.data", System.getProperty("java.io.tmpdir"));
+            storage = new File(data, "cellar" + File.separator + "artifacts");
+        }
+        storage.mkdirs();
+        return storage;
+    }
+
+    public void setStorage(File storage) {
+        this.storage = storage;
+    }
+
+    public File getRepository() {
+        if (repository == null) {
+            String data = System.getProperty("karaf.data", System.getProperty("java.io.tmpdir"));
+            repository = new File(data, "cellar" + File.separator + "repository");
+        }
+        repository.mkdirs();
+        return repository;
+    }
+
+    public void setRepository(File repository) {
+        this.repository = repository;
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    public void setClusterManager(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+}
@@ -44,6 +44,12 @@ public class ClusteredExecutionContext implements ExecutionContext {
 
     @Override
     public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws StoreNotFoundException, ProducerNotFoundException, InterruptedException {
+        submit(command);
+        return command.getResult();
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void submit(C command) throws StoreNotFoundException, ProducerNotFoundException {
         if (command == null) {
             throw new StoreNotFoundException("Command store not found");
         } else {
@@ -54,7 +60,18 @@ public class ClusteredExecutionContext implements ExecutionContext {
 
         if (producer != null) {
             producer.produce(command);
-            return command.getResult();
+        } else {
+            throw new ProducerNotFoundException("Command producer not found");
+        }
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void post(C command) throws StoreNotFoundException, ProducerNotFoundException {
+        if (command == null) {
+            throw new StoreNotFoundException("Command store not found");
+        }
+        if (producer != null) {
+            producer.produce(command);
         } else {
             throw new ProducerNotFoundException("Command producer not found");
         }
@@ -33,4 +33,30 @@ public interface ExecutionContext {
      */
     public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws Exception;
 
+    /**
+     * Send {@link Command} without waiting the {@link Result}, the results being added to the command when received.
+     * By default, the command is executed, waiting the results.
+     *
+     * @param command the command to send.
+     * @param <R> the result type.
+     * @param <C> the command type.
+     * @throws Exception in case of sending failure.
+     */
+    public default <R extends Result, C extends Command<R>> void submit(C command) throws Exception {
+        execute(command);
+    }
+
+    /**
+     * Send {@link Command} without expecting any {@link Result} (one-way), the command is not kept as pending.
+     * By default, the command is submitted.
+     *
+     * @param command the command to send.
+     * @param <R> the result type.
+     * @param <C> the command type.
+     * @throws Exception in case of sending failure.
+     */
+    public default <R extends Result, C extends Command<R>> void post(C command) throws Exception {
+        submit(command);
+    }
+
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collect the cluster events received by an event handler during a batch window, and pass them to the handler in a
+ * single call at the end of the window.
+ * The batch mode of a handler is enabled in etc/org.apache.karaf.cellar.node.cfg with the
+ * {@code <category>.handler.batch} and {@code <category>.handler.batch.window} properties.
+ * The events of a batch keep the reception order, except that the events produced by the same source node are put
+ * back in their production order (using the event sequence number) in the positions that node's events occupy.
+ * The batches are applied one after the other, on a single thread.
+ */
+public class EventBatcher<E extends Event> {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(EventBatcher.class);
+
+    public static final long DEFAULT_BATCH_WINDOW = 500;
+
+    private final String category;
+    private final ToLongFunction<E> sequence;
+    private final Consumer<List<E>> processor;
+
+    private final List<E> pendingEvents = new ArrayList<E>();
+    private ScheduledFuture<?> pendingFlush;
+    private ScheduledExecutorService executor;
+
+    private ConfigurationAdmin configurationAdmin;
+
+    /**
+     * @param category the resource category of the events (bundle, feature, ...), used as configuration prefix.
+     * @param sequence the sequence number of an event on its source node.
+     * @param processor the handler applying a batch of events.
+     */
+    public EventBatcher(String category, ToLongFunction<E> sequence, Consumer<List<E>> processor) {
+        this.category = category;
+        this.sequence = sequence;
+        this.processor = processor;
+    }
+
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        synchronized (pendingEvents) {
+            if (!pendingEvents.isEmpty()) {
+                LOGGER.warn("CELLAR {}: {} pending cluster events not applied", category.toUpperCase(), pendingEvents.size());
+                pendingEvents.clear();
+            }
+            pendingFlush = null;
+        }
+    }
+
+    /**
+     * Check if the batch mode is enabled in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return true if the cluster events are applied by batch, false else.
+     */
+    public boolean isEnabled() {
+        return Boolean.parseBoolean(CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                category + Configurations.SEPARATOR + Configurations.HANDLER + Configurations.SEPARATOR + Configurations.BATCH, "false"));
+    }
+
+    /**
+     * Get the batch window (in milliseconds) defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the batch window in milliseconds.
+     */
+    public long getWindow() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                category + Configurations.SEPARATOR + Configurations.HANDLER + Configurations.SEPARATOR + Configurations.BATCH_WINDOW, null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR {}: invalid batch window {}, using default", category.toUpperCase(), value);
+            }
+        }
+        return DEFAULT_BATCH_WINDOW;
+    }
+
+    /**
+     * Add a cluster event in the current batch, and schedule the batch flush at the end of the batch window.
+     *
+     * @param event the cluster event to add in the batch.
+     */
+    public void enqueue(E event) {
+        synchronized (pendingEvents) {
+            pendingEvents.add(event);
+            if (pendingFlush == null && executor != null) {
+                pendingFlush = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, getWindow(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Pass the events collected during the batch window to the processor.
+     */
+    public void flush() {
+        List<E> events;
+        synchronized (pendingEvents) {
+            events = new ArrayList<E>(pendingEvents);
+            pendingEvents.clear();
+            pendingFlush = null;
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("CELLAR {}: applying a batch of {} cluster events", category.toUpperCase(), events.size());
+        try {
+            processor.accept(order(events, sequence));
+        } catch (Exception e) {
+            LOGGER.error("CELLAR {}: failed to apply a batch of cluster events", category.toUpperCase(), e);
+        }
+    }
+
+    /**
+     * Order a batch of events: the events produced by the same source node are sorted by sequence number, in the
+     * positions occupied by that node's events in the reception order, so the interleaving of the source nodes is kept.
+     *
+     * @param events the events in reception order.
+     * @param sequence the sequence number of an event on its source node.
+     * @return the ordered events.
+     */
+    public static <E extends Event> List<E> order(List<E> events, ToLongFunction<E> sequence) {
+        Map<String, List<E>> eventsBySource = new LinkedHashMap<String, List<E>>();
+        for (E event : events) {
+            eventsBySource.computeIfAbsent(getSource(event), source -> new ArrayList<E>()).add(event);
+        }
+        for (List<E> sourceEvents : eventsBySource.values()) {
+            sourceEvents.sort((e1, e2) -> Long.compare(sequence.applyAsLong(e1), sequence.applyAsLong(e2)));
+        }
+        Map<String, Integer> positions = new LinkedHashMap<String, Integer>();
+        List<E> ordered = new ArrayList<E>(events.size());
+        for (E event : events) {
+            String source = getSource(event);
+            int position = positions.getOrDefault(source, 0);
+            ordered.add(eventsBySource.get(source).get(position));
+            positions.put(source, position + 1);
+        }
+        return ordered;
+    }
+
+    private static String getSource(Event event) {
+        return (event.getSourceNode() != null) ? event.getSourceNode().getId() : null;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.artifact;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+public class ArtifactCacheTest {
+
+    private static final String LOCATION = "mvn:org.apache.karaf.cellar.test/test-bundle/1.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, ArtifactDescriptor> artifacts = new ConcurrentHashMap<String, ArtifactDescriptor>();
+    private final Map<String, byte[]> chunks = new ConcurrentHashMap<String, byte[]>();
+    private ClusterManager clusterManager;
+    private File repository;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterManager = createMock(ClusterManager.class);
+        expect(clusterManager.getMap(ArtifactCache.ARTIFACTS_MAP)).andReturn(artifacts).anyTimes();
+        expect(clusterManager.getMap(ArtifactCache.CHUNKS_MAP)).andReturn(chunks).anyTimes();
+        replay(clusterManager);
+
+        // local file based stand-in of the remote Maven repository
+        repository = folder.newFolder("repository");
+        content = new byte[ArtifactCache.CHUNK_SIZE * 2 + 1234];
+        new Random(42).nextBytes(content);
+        File artifact = new File(repository, ArtifactCache.getMavenPath(LOCATION));
+        artifact.getParentFile().mkdirs();
+        Files.write(artifact.toPath(), content);
+    }
+
+    @Test
+    public void testMavenPath() {
+        Assert.assertEquals("org/apache/karaf/cellar/test/test-bundle/1.0.0/test-bundle-1.0.0.jar", ArtifactCache.getMavenPath(LOCATION));
+        Assert.assertEquals("org/apache/karaf/cellar/test/test-features/1.0.0/test-features-1.0.0-features.xml",
+                ArtifactCache.getMavenPath("mvn:org.apache.karaf.cellar.test/test-features/1.0.0/xml/features"));
+    }
+
+    @Test
+    public void testCacheable() {
+        Assert.assertTrue(ArtifactCache.isCacheable(LOCATION));
+        Assert.assertFalse(ArtifactCache.isCacheable("mvn:org.apache.karaf.cellar.test/test-bundle/1.0.0-SNAPSHOT"));
+        Assert.assertFalse(ArtifactCache.isCacheable("mvn:http://repo.example.org!org.apache.karaf.cellar.test/test-bundle/1.0.0"));
+        Assert.assertFalse(ArtifactCache.isCacheable("file:/tmp/test-bundle-1.0.0.jar"));
+        Assert.assertFalse(ArtifactCache.isCacheable(null));
+    }
+
+    @Test
+    public void testFetchShareAndReuse() throws Exception {
+        RepositoryArtifactCache first = newCache("node1");
+        File file = first.fetch(LOCATION);
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        Assert.assertEquals(1, first.downloads);
+        Assert.assertEquals(1, artifacts.size());
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(file.getName(), artifacts.get(LOCATION).getSha256());
+
+        // second fetch on the same node uses the local storage
+        Assert.assertEquals(file, first.fetch(LOCATION));
+        Assert.assertEquals(1, first.downloads);
+
+        // another node gets the artifact from the cluster chunks
+        RepositoryArtifactCache second = newCache("node2");
+        File other = second.fetch(LOCATION);
+        Assert.assertArrayEquals(content, Files.readAllBytes(other.toPath()));
+        Assert.assertEquals(0, second.downloads);
+    }
+
+    @Test
+    public void testFetchFallbackToDownload() throws Exception {
+        newCache("node1").fetch(LOCATION);
+        chunks.clear();
+
+        RepositoryArtifactCache second = newCache("node2");
+        File file = second.fetch(LOCATION);
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        Assert.assertEquals(1, second.downloads);
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        RepositoryArtifactCache first = newCache("node1");
+        first.setConfigurationAdmin(configurationAdmin(nodeProperties(content.length - 1), new Hashtable<String, Object>()));
+        File file = first.fetch(LOCATION);
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // too large to be shared in the cluster
+        Assert.assertTrue(artifacts.isEmpty());
+        Assert.assertTrue(chunks.isEmpty());
+        // found with the local index, without download
+        Assert.assertEquals(file, first.fetch(LOCATION));
+        Assert.assertEquals(1, first.downloads);
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Hashtable<String, Object> mvnProperties = new Hashtable<String, Object>();
+        mvnProperties.put("org.ops4j.pax.url.mvn.defaultRepositories", "file:${karaf.home}/system@id=system.repository");
+        RepositoryArtifactCache cache = newCache("node1");
+        File repository = folder.newFolder("cellar-repository");
+        cache.setRepository(repository);
+        cache.setConfigurationAdmin(configurationAdmin(nodeProperties(ArtifactCache.DEFAULT_MAX_SIZE), mvnProperties));
+
+        cache.prefetch(LOCATION);
+        Assert.assertArrayEquals(content, Files.readAllBytes(new File(repository, ArtifactCache.getMavenPath(LOCATION)).toPath()));
+        String repositories = (String) mvnProperties.get("org.ops4j.pax.url.mvn.defaultRepositories");
+        Assert.assertTrue(repositories.startsWith(repository.toURI().toString() + "@id=" + ArtifactCache.REPOSITORY_ID + ", "));
+        Assert.assertTrue(repositories.endsWith("file:${karaf.home}/system@id=system.repository"));
+
+        // the repository is removed when the cache is stopped
+        cache.destroy();
+        Assert.assertEquals("file:${karaf.home}/system@id=system.repository", mvnProperties.get("org.ops4j.pax.url.mvn.defaultRepositories"));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Hashtable<String, Object> mvnProperties = new Hashtable<String, Object>();
+        mvnProperties.put("org.ops4j.pax.url.mvn.defaultRepositories", "file:/tmp/repository@id=" + ArtifactCache.REPOSITORY_ID
+                + ", file:${karaf.home}/system@id=system.repository");
+        RepositoryArtifactCache cache = newCache("node1");
+        cache.setConfigurationAdmin(configurationAdmin(new Hashtable<String, Object>(), mvnProperties));
+
+        // the repository added while the cache was enabled is removed
+        cache.init();
+        Assert.assertEquals("file:${karaf.home}/system@id=system.repository", mvnProperties.get("org.ops4j.pax.url.mvn.defaultRepositories"));
+    }
+
+    private static Hashtable<String, Object> nodeProperties(long maxSize) {
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(ArtifactCache.ENABLED, "true");
+        properties.put(ArtifactCache.MAX_SIZE, Long.toString(maxSize));
+        return properties;
+    }
+
+    private static ConfigurationAdmin configurationAdmin(Dictionary<String, Object> nodeProperties,
+                                                         Dictionary<String, Object> mvnProperties) throws Exception {
+        Configuration node = createMock(Configuration.class);
+        expect(node.getProperties()).andReturn(nodeProperties).anyTimes();
+        Configuration mvn = createMock(Configuration.class);
+        expect(mvn.getProperties()).andReturn(mvnProperties).anyTimes();
+        mvn.update(mvnProperties);
+        EasyMock.expectLastCall().anyTimes();
+        ConfigurationAdmin configurationAdmin = createMock(ConfigurationAdmin.class);
+        expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(node).anyTimes();
+        expect(configurationAdmin.getConfiguration("org.ops4j.pax.url.mvn", null)).andReturn(mvn).anyTimes();
+        replay(node, mvn, configurationAdmin);
+        return configurationAdmin;
+    }
+
+    private RepositoryArtifactCache newCache(String node) throws IOException {
+        RepositoryArtifactCache cache = new RepositoryArtifactCache();
+        cache.setClusterManager(clusterManager);
+        cache.setStorage(folder.newFolder(node));
+        return cache;
+    }
+
+    private class RepositoryArtifactCache extends ArtifactCache {
+
+        int downloads;
+
+        @Override
+        protected InputStream openSource(String location) throws IOException {
+            downloads++;
+            return new FileInputStream(new File(repository, getMavenPath(location)));
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Producer;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClusteredExecutionContextTest {
+
+    @Test
+    public void testPost() throws Exception {
+        List<Command> produced = new ArrayList<Command>();
+        Producer<Command> producer = new Producer<Command>() {
+            @Override
+            public void produce(Command command) {
+                produced.add(command);
+            }
+
+            @Override
+            public Switch getSwitch() {
+                return new BasicSwitch("test");
+            }
+        };
+        BasicCommandStore commandStore = new BasicCommandStore();
+        ClusteredExecutionContext executionContext = new ClusteredExecutionContext(producer, commandStore);
+
+        Command<Result> command = new Command<Result>("command");
+        executionContext.post(command);
+        Assert.assertEquals(1, produced.size());
+        Assert.assertSame(command, produced.get(0));
+        // the posted command doesn't wait for a result
+        Assert.assertTrue(commandStore.getPending().isEmpty());
+    }
+
+    @Test(expected = ProducerNotFoundException.class)
+    public void testPostWithoutProducer() throws Exception {
+        ClusteredExecutionContext executionContext = new ClusteredExecutionContext(null, new BasicCommandStore());
+        executionContext.post(new Command<Result>("command"));
+    }
+
+}
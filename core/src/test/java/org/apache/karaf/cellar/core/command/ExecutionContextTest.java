@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.command;
+
+import org.apache.karaf.cellar.core.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ExecutionContextTest {
+
+    @Test
+    public void testDefaultMethods() throws Exception {
+        List<Command> executed = new ArrayList<>();
+        ExecutionContext executionContext = new ExecutionContext() {
+            @Override
+            public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) {
+                executed.add(command);
+                return Collections.emptyMap();
+            }
+        };
+
+        Command<Result> submitted = new Command<>("submitted");
+        executionContext.submit(submitted);
+        Command<Result> posted = new Command<>("posted");
+        executionContext.post(posted);
+
+        Assert.assertEquals(2, executed.size());
+        Assert.assertSame(submitted, executed.get(0));
+        Assert.assertSame(posted, executed.get(1));
+    }
+
+}
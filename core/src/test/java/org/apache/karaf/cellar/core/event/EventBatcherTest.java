@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.core.event;
+
+import org.apache.karaf.cellar.core.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EventBatcherTest {
+
+    @Test
+    public void testOrder() throws Exception {
+        // node1 events received out of order, interleaved with node2 events
+        List<SequencedEvent> events = Arrays.asList(
+                event("a", "node1", 2),
+                event("b", "node2", 1),
+                event("c", "node1", 1),
+                event("d", "node2", 2),
+                event("e", "node1", 3));
+        List<SequencedEvent> ordered = EventBatcher.order(events, SequencedEvent::getSequence);
+        Assert.assertEquals(Arrays.asList("c", "b", "a", "d", "e"), ids(ordered));
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        final List<List<SequencedEvent>> batches = new ArrayList<List<SequencedEvent>>();
+        EventBatcher<SequencedEvent> batcher = new EventBatcher<SequencedEvent>("test", SequencedEvent::getSequence, batches::add);
+        batcher.enqueue(event("a", "node1", 2));
+        batcher.enqueue(event("b", "node1", 1));
+        batcher.flush();
+        batcher.flush();
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(Arrays.asList("b", "a"), ids(batches.get(0)));
+    }
+
+    private static List<String> ids(List<SequencedEvent> events) {
+        List<String> ids = new ArrayList<String>();
+        for (SequencedEvent event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    private static SequencedEvent event(String id, final String source, long sequence) {
+        SequencedEvent event = new SequencedEvent(id, sequence);
+        event.setSourceNode(new Node() {
+            @Override
+            public String getId() {
+                return source;
+            }
+
+            @Override
+            public String getHost() {
+                return null;
+            }
+
+            @Override
+            public int getPort() {
+                return 0;
+            }
+
+            @Override
+            public String getAlias() {
+                return null;
+            }
+        });
+        return event;
+    }
+
+    private static class SequencedEvent extends Event {
+
+        private final long sequence;
+
+        SequencedEvent(String id, long sequence) {
+            super(id);
+            this.sequence = sequence;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+    }
+
+}
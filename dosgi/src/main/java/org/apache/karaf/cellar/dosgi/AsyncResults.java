@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Support of the asynchronous remote service methods, returning a {@link CompletableFuture}, a {@link CompletionStage}
+ * or an OSGi Promise.
+ * The OSGi Promise API is used by reflection with the classes visible from the remote service interface, so the
+ * OSGi Promise bundle is not required when it's not used by the remote services.
+ */
+public class AsyncResults {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(AsyncResults.class);
+
+    public static final String PROMISE_CLASS = "org.osgi.util.promise.Promise";
+    public static final String DEFERRED_CLASS = "org.osgi.util.promise.Deferred";
+
+    private AsyncResults() {
+        // utility class
+    }
+
+    /**
+     * Check if a remote service method return type is asynchronous.
+     *
+     * @param type the method return type.
+     * @return true if the method is asynchronous, false else.
+     */
+    public static boolean isAsync(Class<?> type) {
+        return type != null && (type.equals(CompletableFuture.class) || type.equals(CompletionStage.class)
+                || type.getName().equals(PROMISE_CLASS));
+    }
+
+    /**
+     * Check if a remote service method result is asynchronous.
+     *
+     * @param result the method result.
+     * @return true if the result is asynchronous, false else.
+     */
+    public static boolean isAsyncResult(Object result) {
+        return result instanceof CompletionStage || (result != null && isPromise(result.getClass()));
+    }
+
+    /**
+     * Convert the future of a remote service call to the asynchronous return type of the remote service method.
+     *
+     * @param future the remote service call future.
+     * @param type the method return type.
+     * @return the asynchronous result.
+     * @throws Exception in case of conversion failure.
+     */
+    public static Object toResult(CompletableFuture<Object> future, Class<?> type) throws Exception {
+        if (!type.getName().equals(PROMISE_CLASS)) {
+            return future;
+        }
+        Class<?> deferredClass = type.getClassLoader().loadClass(DEFERRED_CLASS);
+        final Object deferred = deferredClass.getConstructor().newInstance();
+        final Method resolve = deferredClass.getMethod("resolve", Object.class);
+        final Method fail = deferredClass.getMethod("fail", Throwable.class);
+        future.whenComplete((value, throwable) -> {
+            try {
+                if (throwable != null) {
+                    fail.invoke(deferred, unwrap(throwable));
+                } else {
+                    resolve.invoke(deferred, value);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("CELLAR DOSGI: failed to resolve the promise of an asynchronous remote service call", e);
+            }
+        });
+        return deferredClass.getMethod("getPromise").invoke(deferred);
+    }
+
+    /**
+     * Convert an asynchronous remote service method result to a completion stage.
+     *
+     * @param result the asynchronous method result.
+     * @return the completion stage of the result.
+     * @throws Exception in case of conversion failure.
+     */
+    public static CompletionStage<Object> toCompletionStage(Object result) throws Exception {
+        if (result instanceof CompletionStage) {
+            return (CompletionStage<Object>) result;
+        }
+        final CompletableFuture<Object> future = new CompletableFuture<Object>();
+        final Object promise = result;
+        Class<?> promiseClass = promise.getClass().getClassLoader().loadClass(PROMISE_CLASS);
+        final Method getFailure = promiseClass.getMethod("getFailure");
+        final Method getValue = promiseClass.getMethod("getValue");
+        promiseClass.getMethod("onResolve", Runnable.class).invoke(promise, (Runnable) () -> {
+            try {
+                Throwable failure = (Throwable) getFailure.invoke(promise);
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(getValue.invoke(promise));
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the failure cause of a completion stage exception.
+     *
+     * @param throwable the completion stage exception.
+     * @return the failure cause.
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private static boolean isPromise(Class<?> type) {
+        for (Class<?> iface : type.getInterfaces()) {
+            if (iface.getName().equals(PROMISE_CLASS) || isPromise(iface)) {
+                return true;
+            }
+        }
+        return type.getSuperclass() != null && isPromise(type.getSuperclass());
+    }
+
+}
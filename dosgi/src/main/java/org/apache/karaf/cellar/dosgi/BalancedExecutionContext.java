@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.command.TimeoutTask;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
+import org.apache.karaf.cellar.core.exception.StoreNotFoundException;
+import org.apache.karaf.cellar.dosgi.balancer.LoadBalancingStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Execution context sending the remote service calls of an endpoint to the request inbox of a node, selected
+ * for each call by a load balancing strategy.
+ */
+public class BalancedExecutionContext implements ExecutionContext {
+
+    private final String endpointId;
+    private final LoadBalancingStrategy strategy;
+    private final EventTransportFactory eventTransportFactory;
+    private final CommandStore commandStore;
+    private final ScheduledExecutorService timeoutScheduler;
+
+    private volatile List<Node> nodes = Collections.emptyList();
+
+    // node ID -> request producer
+    private final Map<String, EventProducer> producers = new ConcurrentHashMap<String, EventProducer>();
+    // node ID -> circuit breaker
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    private int circuitFailures;
+    private long circuitOpenDuration = Constants.DEFAULT_CIRCUIT_OPEN;
+
+    public BalancedExecutionContext(String endpointId, LoadBalancingStrategy strategy, EventTransportFactory eventTransportFactory,
+                                    CommandStore commandStore, ScheduledExecutorService timeoutScheduler) {
+        this.endpointId = endpointId;
+        this.strategy = strategy;
+        this.eventTransportFactory = eventTransportFactory;
+        this.commandStore = commandStore;
+        this.timeoutScheduler = timeoutScheduler;
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws StoreNotFoundException, ProducerNotFoundException, InterruptedException {
+        Node node = select(true);
+        long start = System.currentTimeMillis();
+        Map<Node, R> results = null;
+        try {
+            strategy.onRequest(node);
+            send(command, node);
+            results = command.getResult();
+            return results;
+        } finally {
+            strategy.onResponse(node, System.currentTimeMillis() - start);
+            onResponse(node, results != null && !results.isEmpty());
+        }
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void submit(C command) throws StoreNotFoundException, ProducerNotFoundException {
+        if (!(command instanceof RemoteServiceCall) || ((RemoteServiceCall) command).getFuture() == null) {
+            // nobody waits for the result, the call doesn't report to the circuit breaker
+            send(command, select(false));
+            return;
+        }
+        // the call is completed with the future of the asynchronous remote service call
+        final Node node = select(true);
+        final long start = System.currentTimeMillis();
+        boolean sent = false;
+        try {
+            strategy.onRequest(node);
+            send(command, node);
+            sent = true;
+        } finally {
+            if (!sent) {
+                strategy.onResponse(node, System.currentTimeMillis() - start);
+                onResponse(node, false);
+            }
+        }
+        ((RemoteServiceCall) command).getFuture().whenComplete((result, throwable) -> {
+            strategy.onResponse(node, System.currentTimeMillis() - start);
+            onResponse(node, !(AsyncResults.unwrap(throwable) instanceof TimeoutException));
+        });
+    }
+
+    @Override
+    public <R extends Result, C extends Command<R>> void post(C command) throws StoreNotFoundException, ProducerNotFoundException {
+        if (command == null) {
+            throw new StoreNotFoundException("Command store not found");
+        }
+        // fire-and-forget, the call doesn't report to the circuit breaker
+        getProducer(select(false)).produce(command);
+    }
+
+    /**
+     * Select the node to call with the load balancing strategy, skipping the nodes with an open circuit breaker.
+     * A call acquiring the circuit breaker of the node (possibly the probe call of a half-open circuit breaker) has to
+     * report its response with {@link #onResponse(Node, boolean)}.
+     *
+     * @param acquire true if the call reports its response, false for the calls without response.
+     * @return the selected node.
+     * @throws ProducerNotFoundException if no node provides the endpoint, or all circuit breakers are open.
+     */
+    private Node select(boolean acquire) throws ProducerNotFoundException {
+        List<Node> candidates = nodes;
+        if (circuitFailures > 0) {
+            candidates = new ArrayList<Node>();
+            for (Node node : nodes) {
+                if (getCircuitBreaker(node).isCallPermitted()) {
+                    candidates.add(node);
+                }
+            }
+        }
+        Node node = strategy.select(candidates);
+        if (node == null) {
+            throw new ProducerNotFoundException("No node available for endpoint " + endpointId);
+        }
+        if (acquire && circuitFailures > 0 && !getCircuitBreaker(node).tryAcquire()) {
+            throw new ProducerNotFoundException("Circuit breaker open for endpoint " + endpointId + " on node " + node.getId());
+        }
+        return node;
+    }
+
+    /**
+     * Record the response of a node in the node circuit breaker.
+     *
+     * @param node the called node.
+     * @param success true if the node answered, false if the call failed or timed out.
+     */
+    private void onResponse(Node node, boolean success) {
+        if (circuitFailures <= 0) {
+            return;
+        }
+        if (success) {
+            getCircuitBreaker(node).onSuccess();
+        } else {
+            getCircuitBreaker(node).onFailure();
+        }
+    }
+
+    private CircuitBreaker getCircuitBreaker(Node node) {
+        return circuitBreakers.computeIfAbsent(node.getId(), id -> new CircuitBreaker(circuitFailures, circuitOpenDuration));
+    }
+
+    /**
+     * Send a command to the request inbox of a node.
+     *
+     * @param command the command to send.
+     * @param node the node to call.
+     * @throws StoreNotFoundException if the command is not defined.
+     */
+    private void send(Command command, Node node) throws StoreNotFoundException {
+        if (command == null) {
+            throw new StoreNotFoundException("Command store not found");
+        }
+        commandStore.getPending().put(command.getId(), command);
+        timeoutScheduler.schedule(new TimeoutTask(command, commandStore), command.getTimeout(), TimeUnit.MILLISECONDS);
+        getProducer(node).produce(command);
+    }
+
+    private EventProducer getProducer(Node node) {
+        return producers.computeIfAbsent(node.getId(), id -> eventTransportFactory.getEventProducer(
+                ExportServiceListener.getRequestInboxName(id), Boolean.FALSE));
+    }
+
+    /**
+     * Update the nodes providing the endpoint.
+     *
+     * @param nodes the endpoint nodes.
+     */
+    public synchronized void setNodes(Collection<Node> nodes) {
+        List<Node> updated = new ArrayList<Node>(nodes);
+        List<String> ids = new ArrayList<String>();
+        for (Node node : updated) {
+            ids.add(node.getId());
+        }
+        producers.keySet().retainAll(ids);
+        circuitBreakers.keySet().retainAll(ids);
+        this.nodes = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Remove a node which left the cluster, without waiting for the refresh of the endpoint nodes.
+     *
+     * @param node the removed node.
+     */
+    public synchronized void removeNode(Node node) {
+        List<Node> updated = new ArrayList<Node>();
+        for (Node current : nodes) {
+            if (!current.getId().equals(node.getId())) {
+                updated.add(current);
+            }
+        }
+        producers.remove(node.getId());
+        circuitBreakers.remove(node.getId());
+        this.nodes = Collections.unmodifiableList(updated);
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public String getEndpointId() {
+        return endpointId;
+    }
+
+    public LoadBalancingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Get the number of consecutive failures opening the circuit breaker of a node.
+     *
+     * @return the number of failures, 0 if the circuit breakers are disabled.
+     */
+    public int getCircuitFailures() {
+        return circuitFailures;
+    }
+
+    public void setCircuitFailures(int circuitFailures) {
+        this.circuitFailures = circuitFailures;
+    }
+
+    public long getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    public void setCircuitOpenDuration(long circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+}
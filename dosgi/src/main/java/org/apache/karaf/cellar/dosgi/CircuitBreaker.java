@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+/**
+ * Circuit breaker of the remote service calls.
+ * The circuit opens after a number of consecutive failed calls (timeout or no provider), and the calls fail fast while
+ * the circuit is open. When the open duration expires, the circuit is half-open: a single probe call is allowed, closing
+ * the circuit if it succeeds, or opening it again if it fails.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * Constructor.
+     *
+     * @param failureThreshold the number of consecutive failures opening the circuit.
+     * @param openDuration the duration (in milliseconds) of the open circuit before a probe call is allowed.
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Check if a call is allowed, and reserve the probe call if the circuit is half-open.
+     *
+     * @return true if the call is allowed, false if the call has to fail fast.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check if a call would be allowed, without reserving the probe call.
+     *
+     * @return true if a call would be allowed, false else.
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return !probing;
+            default:
+                return System.currentTimeMillis() - openedAt >= openDuration;
+        }
+    }
+
+    /**
+     * Record a successful call, closing the circuit.
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Record a failed call, opening the circuit if the probe call failed or if the failures threshold is reached.
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+}
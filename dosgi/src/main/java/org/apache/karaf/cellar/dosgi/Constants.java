@@ -27,5 +27,18 @@ public abstract class Constants {
     public static final String REMOTE_ENDPOINTS = "org.apache.karaf.cellar.dosgi.endpoints";
     public static final String EXPORTED_INTERFACES = "service.exported.interfaces";
     public static final String ENDPOINT_FRAMEWORK_UUID = "frameworkUUID";
+    public static final String ONE_WAY = "cellar.dosgi.oneway";
+    public static final String LOCAL_POLICY = "dosgi.local.policy";
+    public static final String LOCAL_PREFER = "prefer";
+    public static final String LOCAL_FALLBACK = "fallback";
+    public static final String LOCAL_EXCLUDE = "exclude";
+    public static final String DEFAULT_LOCAL_POLICY = LOCAL_EXCLUDE;
+    public static final String TIMEOUT = "cellar.dosgi.timeout";
+    public static final String CIRCUIT_FAILURES = "dosgi.circuit.failures";
+    public static final String CIRCUIT_OPEN = "dosgi.circuit.open";
+    public static final long DEFAULT_CIRCUIT_OPEN = 10000;
+    public static final String BALANCER = "dosgi.balancer";
+    public static final String RESULT_CONSUMERS = "dosgi.result.consumers";
+    public static final int DEFAULT_RESULT_CONSUMERS = 4;
 
 }
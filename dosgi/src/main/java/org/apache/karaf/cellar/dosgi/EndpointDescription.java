@@ -19,8 +19,11 @@ import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Properties;
@@ -31,9 +34,16 @@ import java.util.Set;
  */
 public class EndpointDescription implements MultiNode {
 
+    // the version of the previous nodes, so the endpoints are shared during a rolling upgrade
+    private static final long serialVersionUID = -5717867849377895588L;
+
     private final String id;
     private final Set<Node> nodes = new LinkedHashSet<Node>();
     private final Map<String, Object> properties = new HashMap<String, Object>();
+    // IDs of the nodes exporting the endpoint with the one-way flag
+    private Set<String> oneWayNodes = new HashSet<String>();
+    // IDs of the nodes sending the results to the result inbox of the caller node
+    private Set<String> resultInboxNodes = new HashSet<String>();
 
     /**
      * Constructor
@@ -98,10 +108,102 @@ public class EndpointDescription implements MultiNode {
          }
      }
 
+    /**
+     * Remove a node exporting the endpoint.
+     *
+     * @param node the node.
+     * @return true if the node exported the endpoint, false else.
+     */
+    public boolean removeNode(Node node) {
+        boolean removed = nodes.remove(node);
+        if (node != null) {
+            oneWayNodes.remove(node.getId());
+            resultInboxNodes.remove(node.getId());
+        }
+        updateOneWay();
+        return removed;
+    }
+
+    /**
+     * Flag a node exporting the endpoint as sending the results to the result inbox of the caller node.
+     * The nodes of the previous version don't set the flag.
+     *
+     * @param node the node exporting the endpoint.
+     */
+    public void setResultInbox(Node node) {
+        if (node != null) {
+            resultInboxNodes.add(node.getId());
+        }
+    }
+
+    /**
+     * Check if a node exporting the endpoint sends the results to the result inbox of the caller node.
+     *
+     * @param node the node exporting the endpoint.
+     * @return true if the node sends the results to the result inbox, false if the node sends the results to the
+     *         result queue of the caller node and endpoint (previous version).
+     */
+    public boolean isResultInbox(Node node) {
+        return node != null && resultInboxNodes.contains(node.getId());
+    }
+
+    /**
+     * Set the one-way flag of the endpoint exported by a node. The caller doesn't know which node handles a call, so
+     * the calls are one-way only if all nodes exporting the endpoint set the flag.
+     *
+     * @param node the node exporting the endpoint.
+     * @param oneWay the one-way flag of the service exported by the node.
+     */
+    public void setOneWay(Node node, boolean oneWay) {
+        if (node != null) {
+            if (oneWay) {
+                oneWayNodes.add(node.getId());
+            } else {
+                oneWayNodes.remove(node.getId());
+            }
+        }
+        updateOneWay();
+    }
+
+    /**
+     * Check if the nodes exporting the endpoint disagree on the one-way flag.
+     *
+     * @return true if some nodes only set the one-way flag, false else.
+     */
+    public boolean isOneWayConflict() {
+        return !oneWayNodes.isEmpty() && !properties.containsKey(Constants.ONE_WAY);
+    }
+
+    private void updateOneWay() {
+        boolean oneWay = !nodes.isEmpty();
+        for (Node node : nodes) {
+            if (node == null || !oneWayNodes.contains(node.getId())) {
+                oneWay = false;
+                break;
+            }
+        }
+        if (oneWay) {
+            properties.put(Constants.ONE_WAY, Boolean.TRUE);
+        } else {
+            properties.remove(Constants.ONE_WAY);
+        }
+    }
+
     public Map<String, Object> getProperties() {
         return properties;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the endpoints written by the nodes of the previous version don't have the flags
+        if (oneWayNodes == null) {
+            oneWayNodes = new HashSet<String>();
+        }
+        if (resultInboxNodes == null) {
+            resultInboxNodes = new HashSet<String>();
+        }
+    }
+
     public final String getServiceClass() {
         String result = null;
 
@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterMapListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local index of the cluster remote endpoints, by service class (objectClass).
+ * The index is loaded from the cluster remote endpoints map, and maintained by a listener on the map, so the service
+ * listeners are matched with the local endpoints of the requested service class, without scanning the cluster map.
+ * If the cluster manager doesn't notify the map changes, the index is reloaded by {@link #reload()}.
+ */
+public class EndpointIndex implements ClusterMapListener<String, EndpointDescription> {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(EndpointIndex.class);
+
+    private static final String OBJECTCLASS_PREFIX = "(" + org.osgi.framework.Constants.OBJECTCLASS.toLowerCase() + "=";
+
+    // endpoint ID -> endpoint
+    private final Map<String, EndpointDescription> endpoints = new HashMap<String, EndpointDescription>();
+    // service class -> endpoint IDs
+    private final Map<String, Set<String>> serviceClasses = new HashMap<String, Set<String>>();
+
+    // while loading the endpoints, the IDs of the entries notified by the listener, newer than the loaded ones
+    private final Set<String> notified = new HashSet<String>();
+    private boolean loading;
+    private boolean cleared;
+
+    private ClusterManager clusterManager;
+    private volatile String registrationId;
+
+    public void init() {
+        synchronized (this) {
+            loading = true;
+        }
+        // register the listener first, so no change is missed while loading the endpoints
+        registrationId = clusterManager.addMapListener(Constants.REMOTE_ENDPOINTS, this);
+        if (registrationId == null) {
+            LOGGER.debug("CELLAR DOSGI: the remote endpoints changes are not notified, the index is reloaded");
+        }
+        Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>(clusterManager.getMap(Constants.REMOTE_ENDPOINTS));
+        synchronized (this) {
+            // the loaded entries are older than the notified ones
+            if (!cleared) {
+                for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
+                    if (!notified.contains(entry.getKey())) {
+                        put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            loading = false;
+            cleared = false;
+            notified.clear();
+        }
+    }
+
+    public void destroy() {
+        if (registrationId != null) {
+            clusterManager.removeMapListener(Constants.REMOTE_ENDPOINTS, registrationId);
+            registrationId = null;
+        }
+        mapCleared();
+    }
+
+    /**
+     * Reload the index from the cluster remote endpoints map, if the cluster manager doesn't notify the map changes.
+     */
+    public void reload() {
+        if (registrationId != null) {
+            return;
+        }
+        Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>(clusterManager.getMap(Constants.REMOTE_ENDPOINTS));
+        synchronized (this) {
+            for (String id : new ArrayList<String>(endpoints.keySet())) {
+                if (!remoteEndpoints.containsKey(id)) {
+                    remove(id);
+                }
+            }
+            for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void entryUpdated(String id, EndpointDescription endpoint) {
+        if (loading) {
+            notified.add(id);
+        }
+        put(id, endpoint);
+    }
+
+    @Override
+    public synchronized void entryRemoved(String id) {
+        if (loading) {
+            notified.add(id);
+        }
+        remove(id);
+    }
+
+    @Override
+    public synchronized void mapCleared() {
+        if (loading) {
+            cleared = true;
+        }
+        endpoints.clear();
+        serviceClasses.clear();
+    }
+
+    private void put(String id, EndpointDescription endpoint) {
+        if (endpoint == null) {
+            remove(id);
+            return;
+        }
+        EndpointDescription previous = endpoints.put(id, endpoint);
+        if (previous == null) {
+            String serviceClass = endpoint.getServiceClass();
+            Set<String> ids = serviceClasses.get(serviceClass);
+            if (ids == null) {
+                ids = new HashSet<String>();
+                serviceClasses.put(serviceClass, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    private void remove(String id) {
+        EndpointDescription endpoint = endpoints.remove(id);
+        if (endpoint != null) {
+            Set<String> ids = serviceClasses.get(endpoint.getServiceClass());
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    serviceClasses.remove(endpoint.getServiceClass());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a remote endpoint.
+     *
+     * @param id the endpoint ID.
+     * @return the endpoint, or null if the endpoint doesn't exist.
+     */
+    public synchronized EndpointDescription get(String id) {
+        return endpoints.get(id);
+    }
+
+    /**
+     * Get the remote endpoints matching a service filter.
+     * Only the endpoints of the service class required by the filter are evaluated, all endpoints are evaluated if the
+     * filter doesn't require a service class.
+     *
+     * @param filter the service filter.
+     * @return the matching endpoints.
+     */
+    public List<EndpointDescription> getEndpoints(String filter) {
+        List<EndpointDescription> candidates = new ArrayList<EndpointDescription>();
+        String serviceClass = getServiceClass(filter);
+        synchronized (this) {
+            if (serviceClass == null) {
+                candidates.addAll(endpoints.values());
+            } else {
+                Set<String> ids = serviceClasses.get(serviceClass);
+                if (ids != null) {
+                    for (String id : ids) {
+                        candidates.add(endpoints.get(id));
+                    }
+                }
+            }
+        }
+        List<EndpointDescription> matches = new ArrayList<EndpointDescription>();
+        for (EndpointDescription endpoint : candidates) {
+            try {
+                if (endpoint.matches(filter)) {
+                    matches.add(endpoint);
+                }
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("CELLAR DOSGI: invalid service filter {}", filter, e);
+                return Collections.emptyList();
+            }
+        }
+        return matches;
+    }
+
+    public synchronized Collection<EndpointDescription> getEndpoints() {
+        return new ArrayList<EndpointDescription>(endpoints.values());
+    }
+
+    /**
+     * Get the service class required by a service filter: the filter is an objectClass equality, or a conjunction
+     * with an objectClass equality.
+     *
+     * @param filter the service filter.
+     * @return the required service class, or null if the filter doesn't require a service class.
+     */
+    static String getServiceClass(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        filter = filter.trim();
+        if (filter.toLowerCase().startsWith(OBJECTCLASS_PREFIX) && filter.endsWith(")")) {
+            String value = filter.substring(OBJECTCLASS_PREFIX.length(), filter.length() - 1).trim();
+            // wildcards and nested filters are not indexed
+            if (value.isEmpty() || value.indexOf('*') >= 0 || value.indexOf('(') >= 0 || value.indexOf(')') >= 0 || value.indexOf('\\') >= 0) {
+                return null;
+            }
+            return value;
+        }
+        if (filter.startsWith("(&") && filter.endsWith(")")) {
+            // look for the objectClass in the operands of the conjunction
+            String operands = filter.substring(2, filter.length() - 1);
+            int depth = 0;
+            int start = -1;
+            for (int i = 0; i < operands.length(); i++) {
+                char c = operands.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '(') {
+                    if (depth == 0) {
+                        start = i;
+                    }
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                    if (depth == 0 && start >= 0) {
+                        String serviceClass = getServiceClass(operands.substring(start, i + 1));
+                        if (serviceClass != null) {
+                            return serviceClass;
+                        }
+                    } else if (depth < 0) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    public void setClusterManager(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+}
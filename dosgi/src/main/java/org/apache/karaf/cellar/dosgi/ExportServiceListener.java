@@ -45,6 +45,10 @@ public class ExportServiceListener implements ServiceListener {
     private Map<String, EndpointDescription> remoteEndpoints;
 
     private final Map<String, EventConsumer> consumers = new HashMap<String, EventConsumer>();
+    // consumer of the calls sent to the local node by the load balanced importers, for all the exported endpoints
+    private EventConsumer requestConsumer;
+
+    private ExportedServiceTrackers exportedServiceTrackers;
 
     private Node node;
 
@@ -76,6 +80,10 @@ public class ExportServiceListener implements ServiceListener {
             consumer.stop();
         }
         consumers.clear();
+        if (requestConsumer != null) {
+            requestConsumer.stop();
+            requestConsumer = null;
+        }
     }
 
     /**
@@ -133,6 +141,21 @@ public class ExportServiceListener implements ServiceListener {
                         endpoint = new EndpointDescription(endpointId, node);
                     }
 
+                    endpoint.setResultInbox(node);
+                    // the calls of the void methods are one-way if the service is flagged on all exporting nodes
+                    endpoint.setOneWay(node, Boolean.parseBoolean(String.valueOf(serviceReference.getProperty(Constants.ONE_WAY))));
+                    if (endpoint.isOneWayConflict()) {
+                        LOGGER.warn("CELLAR DOSGI: endpoint {} is not exported as one-way by all nodes, the calls wait for the result", endpointId);
+                    }
+
+                    // the calls timeout of the endpoint and of the methods (cellar.dosgi.timeout.<method>)
+                    endpoint.getProperties().keySet().removeIf(key -> key.startsWith(Constants.TIMEOUT));
+                    for (String key : serviceReference.getPropertyKeys()) {
+                        if (key.startsWith(Constants.TIMEOUT)) {
+                            endpoint.getProperties().put(key, String.valueOf(serviceReference.getProperty(key)));
+                        }
+                    }
+
                     remoteEndpoints.put(endpointId, endpoint);
 
                     // register the endpoint consumer
@@ -143,6 +166,19 @@ public class ExportServiceListener implements ServiceListener {
                     } else if (!consumer.isConsuming()) {
                         consumer.start();
                     }
+
+                    // consume the calls sent to the local node, whatever the local load balancing configuration, as
+                    // the importers may balance the calls
+                    if (requestConsumer == null) {
+                        requestConsumer = eventTransportFactory.getEventConsumer(getRequestInboxName(node.getId()), false);
+                    } else if (!requestConsumer.isConsuming()) {
+                        requestConsumer.start();
+                    }
+
+                    // track the service used as target of the remote service calls
+                    if (exportedServiceTrackers != null) {
+                        exportedServiceTrackers.open(endpointId, iface, version);
+                    }
                 }
             }
         } finally {
@@ -173,7 +209,7 @@ public class ExportServiceListener implements ServiceListener {
                     String endpointId = iface + Constants.SEPARATOR + version.toString();
 
                     EndpointDescription endpointDescription = remoteEndpoints.remove(endpointId);
-                    endpointDescription.getNodes().remove(node);
+                    endpointDescription.removeNode(node);
                     // if the endpoint is used for export from other nodes too, then put it back.
                     if (endpointDescription.getNodes().size() > 0) {
                         remoteEndpoints.put(endpointId, endpointDescription);
@@ -181,6 +217,13 @@ public class ExportServiceListener implements ServiceListener {
 
                     EventConsumer eventConsumer = consumers.remove(endpointId);
                     eventConsumer.stop();
+                    if (consumers.isEmpty() && requestConsumer != null) {
+                        requestConsumer.stop();
+                    }
+
+                    if (exportedServiceTrackers != null) {
+                        exportedServiceTrackers.close(endpointId);
+                    }
                 }
             }
         } finally {
@@ -188,6 +231,17 @@ public class ExportServiceListener implements ServiceListener {
         }
     }
 
+    /**
+     * Get the name of the request inbox of a node, receiving the load balanced calls of all the endpoints exported by
+     * the node.
+     *
+     * @param nodeId the node ID.
+     * @return the request inbox name.
+     */
+    public static String getRequestInboxName(String nodeId) {
+        return Constants.REQUEST_PREFIX + Constants.SEPARATOR + nodeId;
+    }
+
     /**
      * Get the interfaces that match the exported service interfaces.
      *
@@ -243,6 +297,14 @@ public class ExportServiceListener implements ServiceListener {
         this.eventTransportFactory = eventTransportFactory;
     }
 
+    public ExportedServiceTrackers getExportedServiceTrackers() {
+        return exportedServiceTrackers;
+    }
+
+    public void setExportedServiceTrackers(ExportedServiceTrackers exportedServiceTrackers) {
+        this.exportedServiceTrackers = exportedServiceTrackers;
+    }
+
     public BundleContext getBundleContext() {
         return bundleContext;
     }
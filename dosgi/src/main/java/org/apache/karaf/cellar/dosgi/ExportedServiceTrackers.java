@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service trackers of the exported endpoints, used as target of the remote service calls.
+ * An endpoint is an exported interface in a bundle version, so the services of the same interface exported by bundles
+ * of different versions are tracked apart. A tracker is opened when an endpoint is exported, and closed when the last
+ * service exporting the endpoint is un-exported. The tracked service with the highest ranking is used.
+ */
+public class ExportedServiceTrackers {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ExportedServiceTrackers.class);
+
+    // endpoint ID -> tracker
+    private final Map<String, TrackedEndpoint> trackers = new HashMap<String, TrackedEndpoint>();
+
+    private BundleContext bundleContext;
+
+    /**
+     * Track the services of an exported endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     * @param serviceClass the exported interface name.
+     * @param version the version of the bundles exporting the endpoint.
+     */
+    public synchronized void open(String endpointId, String serviceClass, Version version) {
+        TrackedEndpoint tracked = trackers.get(endpointId);
+        if (tracked == null) {
+            LOGGER.debug("CELLAR DOSGI: tracking services of endpoint {}", endpointId);
+            // only track the exported services, not the imported remote services proxies
+            ServiceTracker tracker;
+            try {
+                tracker = new ServiceTracker(bundleContext, bundleContext.createFilter("(&(" + org.osgi.framework.Constants.OBJECTCLASS + "=" + serviceClass + ")("
+                        + Constants.EXPORTED_INTERFACES + "=*))"), new VersionCustomizer(version));
+            } catch (InvalidSyntaxException e) {
+                LOGGER.warn("CELLAR DOSGI: can't track services of endpoint {}", endpointId, e);
+                return;
+            }
+            tracker.open();
+            tracked = new TrackedEndpoint(tracker);
+            trackers.put(endpointId, tracked);
+        }
+        tracked.count++;
+    }
+
+    /**
+     * Stop to track the services of an exported endpoint, if the endpoint is not exported anymore.
+     *
+     * @param endpointId the endpoint ID.
+     */
+    public synchronized void close(String endpointId) {
+        TrackedEndpoint tracked = trackers.get(endpointId);
+        if (tracked != null && --tracked.count <= 0) {
+            LOGGER.debug("CELLAR DOSGI: stop tracking services of endpoint {}", endpointId);
+            trackers.remove(endpointId);
+            tracked.tracker.close();
+        }
+    }
+
+    /**
+     * Get the service of an exported endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     * @return the tracked service with the highest ranking, or null if no service is tracked for the endpoint.
+     */
+    public Object getService(String endpointId) {
+        if (endpointId == null) {
+            return null;
+        }
+        ServiceTracker tracker;
+        synchronized (this) {
+            TrackedEndpoint tracked = trackers.get(endpointId);
+            if (tracked == null) {
+                return null;
+            }
+            tracker = tracked.tracker;
+        }
+        return tracker.getService();
+    }
+
+    public synchronized void destroy() {
+        for (TrackedEndpoint tracked : trackers.values()) {
+            tracked.tracker.close();
+        }
+        trackers.clear();
+    }
+
+    public BundleContext getBundleContext() {
+        return bundleContext;
+    }
+
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Service tracker of an exported endpoint, with the number of exports of the endpoint.
+     */
+    private static class TrackedEndpoint {
+
+        private final ServiceTracker tracker;
+        private int count;
+
+        TrackedEndpoint(ServiceTracker tracker) {
+            this.tracker = tracker;
+        }
+
+    }
+
+    /**
+     * Track only the services registered by the bundles of the endpoint version.
+     */
+    private class VersionCustomizer implements ServiceTrackerCustomizer {
+
+        private final Version version;
+
+        VersionCustomizer(Version version) {
+            this.version = version;
+        }
+
+        @Override
+        public Object addingService(ServiceReference reference) {
+            if (reference.getBundle() == null || !version.equals(reference.getBundle().getVersion())) {
+                return null;
+            }
+            return bundleContext.getService(reference);
+        }
+
+        @Override
+        public void modifiedService(ServiceReference reference, Object service) {
+            // nothing to do
+        }
+
+        @Override
+        public void removedService(ServiceReference reference, Object service) {
+            bundleContext.ungetService(reference);
+        }
+
+    }
+
+}
@@ -14,24 +14,35 @@
 package org.apache.karaf.cellar.dosgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterNodeListener;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.command.ClusteredExecutionContext;
 import org.apache.karaf.cellar.core.command.CommandStore;
 import org.apache.karaf.cellar.core.command.ExecutionContext;
-import org.apache.karaf.cellar.core.event.EventConsumer;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.apache.karaf.cellar.dosgi.balancer.LoadBalancingStrategies;
+import org.apache.karaf.cellar.dosgi.balancer.LoadBalancingStrategy;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.hooks.service.ListenerHook;
+import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -39,7 +50,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * Listener for the service import.
  */
-public class ImportServiceListener implements ListenerHook, Runnable {
+public class ImportServiceListener implements ListenerHook, ClusterNodeListener, Runnable {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(ImportServiceListener.class);
 
@@ -47,41 +58,95 @@ public class ImportServiceListener implements ListenerHook, Runnable {
     private ClusterManager clusterManager;
     private CommandStore commandStore;
     private EventTransportFactory eventTransportFactory;
-    private Map<String, EndpointDescription> remoteEndpoints;
+    private ConfigurationAdmin configurationAdmin;
+    private ExportedServiceTrackers exportedServiceTrackers;
+    private EndpointIndex endpointIndex;
+    private ResultInbox resultInbox;
+
+    private final MethodHandleCache methodHandleCache = new MethodHandleCache();
 
     private Set<ListenerInfo> pendingListeners = new LinkedHashSet<ListenerInfo>();
 
     private final Map<EndpointDescription, ServiceRegistration> registrations = new HashMap<EndpointDescription, ServiceRegistration>();
 
     private final Map<String, EventProducer> producers = new HashMap<String, EventProducer>();
-    private final Map<String, EventConsumer> consumers = new HashMap<String, EventConsumer>();
+    private final Map<String, BalancedExecutionContext> balancedExecutionContexts = new ConcurrentHashMap<String, BalancedExecutionContext>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
 
     private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+    // times out the load balanced calls, apart from the refresh of the imported endpoints
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+    // completes the futures of the asynchronous calls, out of the result handler thread
+    private final ExecutorService completionExecutor = Executors.newCachedThreadPool();
+
+    private String nodeListenerId;
 
     public void init() {
-        remoteEndpoints = clusterManager.getMap(Constants.REMOTE_ENDPOINTS);
+        nodeListenerId = clusterManager.addNodeListener(this);
         service.scheduleAtFixedRate(this, 0, 5, TimeUnit.SECONDS);
     }
 
     public void destroy() {
+        clusterManager.removeNodeListener(nodeListenerId);
+        nodeListenerId = null;
         service.shutdown();
+        timeoutScheduler.shutdownNow();
+        completionExecutor.shutdown();
         for (Map.Entry<EndpointDescription, ServiceRegistration> entry : registrations.entrySet()) {
             ServiceRegistration registration = entry.getValue();
             registration.unregister();
         }
-        for (Map.Entry<String, EventConsumer> consumerEntry : consumers.entrySet()) {
-            EventConsumer consumer = consumerEntry.getValue();
-            consumer.stop();
-        }
-        consumers.clear();
         producers.clear();
+        balancedExecutionContexts.clear();
+        circuitBreakers.clear();
     }
 
     @Override
     public void run() {
+        endpointIndex.reload();
         for (ListenerInfo listener : pendingListeners) {
             checkListener(listener);
         }
+        Set<String> members = getMembers();
+        // consume the legacy result queues while nodes of the previous version provide the imported endpoints
+        if (resultInbox != null) {
+            for (EndpointDescription imported : new ArrayList<EndpointDescription>(registrations.keySet())) {
+                EndpointDescription endpoint = endpointIndex.get(imported.getId());
+                if (endpoint != null && hasLegacyNodes(endpoint, members)) {
+                    resultInbox.openLegacy(endpoint.getId());
+                } else {
+                    resultInbox.closeLegacy(imported.getId());
+                }
+            }
+        }
+        // refresh the nodes providing the load balanced endpoints
+        if (!balancedExecutionContexts.isEmpty()) {
+            for (BalancedExecutionContext executionContext : balancedExecutionContexts.values()) {
+                EndpointDescription endpoint = endpointIndex.get(executionContext.getEndpointId());
+                if (endpoint != null) {
+                    executionContext.setNodes(getRemoteNodes(endpoint, members));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void nodeAdded(Node node) {
+        // the endpoints of the node are added with the refresh
+    }
+
+    /**
+     * Callback method called when a node leaves the cluster: the node is removed from the load balanced endpoints
+     * immediately, the calls are not sent to the node until the endpoint nodes are refreshed.
+     *
+     * @param node the removed node.
+     */
+    @Override
+    public void nodeRemoved(Node node) {
+        LOGGER.debug("CELLAR DOSGI: removing node {} from the load balanced endpoints", node.getId());
+        for (BalancedExecutionContext executionContext : balancedExecutionContexts.values()) {
+            executionContext.removeNode(node);
+        }
     }
 
     @Override
@@ -117,13 +182,7 @@ public class ImportServiceListener implements ListenerHook, Runnable {
                 // make sure we only import remote services
                 String filter = "(&" + listenerInfo.getFilter() + "(!(" + Constants.ENDPOINT_FRAMEWORK_UUID + "=" + clusterManager.getNode().getId() + ")))";
                 // iterate through known services and import them if needed
-                Set<EndpointDescription> matches = new LinkedHashSet<EndpointDescription>();
-                for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
-                    EndpointDescription endpointDescription = entry.getValue();
-                    if (endpointDescription.matches(filter)) {
-                        matches.add(endpointDescription);
-                    }
-                }
+                Set<EndpointDescription> matches = new LinkedHashSet<EndpointDescription>(endpointIndex.getEndpoints(filter));
 
                 for (EndpointDescription endpoint : matches) {
                     unImportService(endpoint);
@@ -147,9 +206,8 @@ public class ImportServiceListener implements ListenerHook, Runnable {
             Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
             // iterate through known services and import them if needed
             Set<EndpointDescription> matches = new LinkedHashSet<EndpointDescription>();
-            for (Map.Entry<String, EndpointDescription> entry : remoteEndpoints.entrySet()) {
-                EndpointDescription endpointDescription = entry.getValue();
-                if (endpointDescription.matches(listenerInfo.getFilter()) && !endpointDescription.getNodes().contains(clusterManager.getNode().getId())) {
+            for (EndpointDescription endpointDescription : endpointIndex.getEndpoints(listenerInfo.getFilter())) {
+                if (!endpointDescription.getNodes().contains(clusterManager.getNode().getId())) {
                     matches.add(endpointDescription);
                 }
             }
@@ -171,26 +229,32 @@ public class ImportServiceListener implements ListenerHook, Runnable {
     private void importService(EndpointDescription endpoint, ListenerInfo listenerInfo) {
         LOGGER.debug("CELLAR DOSGI: importing remote service");
 
-        EventProducer requestProducer = producers.get(endpoint.getId());
-        if (requestProducer == null) {
-            requestProducer = eventTransportFactory.getEventProducer(Constants.INTERFACE_PREFIX + Constants.SEPARATOR + endpoint.getId(), Boolean.FALSE);
-            producers.put(endpoint.getId(), requestProducer);
+        // the nodes of the previous version send the results to the legacy result queue of the endpoint
+        if (resultInbox != null && hasLegacyNodes(endpoint, getMembers())) {
+            resultInbox.openLegacy(endpoint.getId());
         }
 
-        EventConsumer resultConsumer = consumers.get(endpoint.getId());
-        if (resultConsumer == null) {
-            resultConsumer = eventTransportFactory.getEventConsumer(Constants.RESULT_PREFIX + Constants.SEPARATOR + clusterManager.getNode().getId() + endpoint.getId(), Boolean.FALSE);
-            consumers.put(endpoint.getId(), resultConsumer);
-        } else if (!resultConsumer.isConsuming()) {
-            resultConsumer.start();
+        ExecutionContext executionContext = getBalancedExecutionContext(endpoint);
+        if (executionContext == null) {
+            // the calls are sent to the endpoint queue shared by the endpoint nodes
+            EventProducer requestProducer = producers.get(endpoint.getId());
+            if (requestProducer == null) {
+                requestProducer = eventTransportFactory.getEventProducer(Constants.INTERFACE_PREFIX + Constants.SEPARATOR + endpoint.getId(), Boolean.FALSE);
+                producers.put(endpoint.getId(), requestProducer);
+            }
+            executionContext = new ClusteredExecutionContext(requestProducer, commandStore);
         }
 
-        producers.put(endpoint.getId(), requestProducer);
-        consumers.put(endpoint.getId(), resultConsumer);
-
-        ExecutionContext executionContext = new ClusteredExecutionContext(requestProducer, commandStore);
-
         RemoteServiceFactory remoteServiceFactory = new RemoteServiceFactory(endpoint, clusterManager, executionContext);
+        remoteServiceFactory.setLocalPolicy(getLocalPolicy());
+        remoteServiceFactory.setExportedServiceTrackers(exportedServiceTrackers);
+        remoteServiceFactory.setMethodHandleCache(methodHandleCache);
+        remoteServiceFactory.setCompletionExecutor(completionExecutor);
+        int circuitFailures = getCircuitFailures();
+        if (circuitFailures > 0) {
+            CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(endpoint.getId(), id -> new CircuitBreaker(circuitFailures, getCircuitOpenDuration()));
+            remoteServiceFactory.setCircuitBreaker(circuitBreaker);
+        }
         ServiceRegistration registration = listenerInfo.getBundleContext().registerService(endpoint.getServiceClass(),
                 remoteServiceFactory,
                 new Hashtable<String, Object>(endpoint.getProperties()));
@@ -198,6 +262,139 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         pendingListeners.remove(listenerInfo);
     }
 
+    /**
+     * Get the execution context sending the calls of an endpoint to the node selected by the load balancing strategy.
+     *
+     * @param endpoint the imported endpoint.
+     * @return the balanced execution context, or null if the calls are sent to the shared endpoint queue.
+     */
+    private BalancedExecutionContext getBalancedExecutionContext(EndpointDescription endpoint) {
+        if (configurationAdmin == null) {
+            return null;
+        }
+        BalancedExecutionContext executionContext = balancedExecutionContexts.get(endpoint.getId());
+        if (executionContext == null) {
+            LoadBalancingStrategy strategy;
+            try {
+                strategy = LoadBalancingStrategies.create(LoadBalancingStrategies.getName(configurationAdmin), clusterManager.getNode());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("CELLAR DOSGI: {}, using the shared endpoint queue", e.getMessage());
+                return null;
+            }
+            if (strategy == null) {
+                return null;
+            }
+            executionContext = new BalancedExecutionContext(endpoint.getId(), strategy, eventTransportFactory, commandStore, timeoutScheduler);
+            executionContext.setCircuitFailures(getCircuitFailures());
+            executionContext.setCircuitOpenDuration(getCircuitOpenDuration());
+            balancedExecutionContexts.put(endpoint.getId(), executionContext);
+        }
+        executionContext.setNodes(getRemoteNodes(endpoint, getMembers()));
+        return executionContext;
+    }
+
+    /**
+     * Get the remote nodes providing an endpoint, the local provider being called in-process depending of the
+     * local policy. The nodes which left the cluster, still in the endpoint until it's cleaned, are skipped.
+     *
+     * @param endpoint the endpoint.
+     * @param members the IDs of the cluster nodes.
+     * @return the remote nodes providing the endpoint.
+     */
+    private List<Node> getRemoteNodes(EndpointDescription endpoint, Set<String> members) {
+        List<Node> nodes = new ArrayList<Node>();
+        for (Node node : endpoint.getNodes()) {
+            if (!node.getId().equals(clusterManager.getNode().getId()) && members.contains(node.getId())) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Check if nodes of the previous version provide an endpoint, sending the results to the result queue of the
+     * caller node and endpoint instead of the result inbox.
+     *
+     * @param endpoint the endpoint.
+     * @param members the IDs of the cluster nodes.
+     * @return true if a remote node of the cluster provides the endpoint without the result inbox, false else.
+     */
+    private boolean hasLegacyNodes(EndpointDescription endpoint, Set<String> members) {
+        for (Node node : getRemoteNodes(endpoint, members)) {
+            if (!endpoint.isResultInbox(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the IDs of the cluster nodes.
+     *
+     * @return the node IDs.
+     */
+    private Set<String> getMembers() {
+        Set<String> members = new HashSet<String>();
+        for (Node node : clusterManager.listNodes()) {
+            members.add(node.getId());
+        }
+        return members;
+    }
+
+    /**
+     * Get the number of consecutive failed calls opening a circuit breaker, defined in
+     * etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the number of failures, 0 if the circuit breakers are disabled.
+     */
+    private int getCircuitFailures() {
+        if (configurationAdmin == null) {
+            return 0;
+        }
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, Constants.CIRCUIT_FAILURES, "0");
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("CELLAR DOSGI: invalid circuit breaker failures {}, circuit breakers disabled", value);
+            return 0;
+        }
+    }
+
+    /**
+     * Get the duration of an open circuit breaker before a probe call, defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the open duration in milliseconds.
+     */
+    private long getCircuitOpenDuration() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, Constants.CIRCUIT_OPEN, null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR DOSGI: invalid circuit breaker open duration {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_CIRCUIT_OPEN;
+    }
+
+    /**
+     * Get the policy of the calls to the endpoints also exported by the local node, defined in
+     * etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the local policy.
+     */
+    private String getLocalPolicy() {
+        if (configurationAdmin == null) {
+            return Constants.DEFAULT_LOCAL_POLICY;
+        }
+        String policy = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, Constants.LOCAL_POLICY, Constants.DEFAULT_LOCAL_POLICY).trim();
+        if (!Constants.LOCAL_PREFER.equals(policy) && !Constants.LOCAL_FALLBACK.equals(policy) && !Constants.LOCAL_EXCLUDE.equals(policy)) {
+            LOGGER.warn("CELLAR DOSGI: invalid local policy {}, using {}", policy, Constants.DEFAULT_LOCAL_POLICY);
+            return Constants.DEFAULT_LOCAL_POLICY;
+        }
+        return policy;
+    }
+
     /**
      * Un-register an imported service.
      *
@@ -208,9 +405,10 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         registration.unregister();
 
         producers.remove(endpoint.getId());
-        EventConsumer consumer = consumers.remove(endpoint.getId());
-        if (consumer != null) {
-            consumer.stop();
+        balancedExecutionContexts.remove(endpoint.getId());
+        circuitBreakers.remove(endpoint.getId());
+        if (resultInbox != null) {
+            resultInbox.closeLegacy(endpoint.getId());
         }
     }
 
@@ -238,6 +436,38 @@ public class ImportServiceListener implements ListenerHook, Runnable {
         this.commandStore = commandStore;
     }
 
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    public EndpointIndex getEndpointIndex() {
+        return endpointIndex;
+    }
+
+    public void setEndpointIndex(EndpointIndex endpointIndex) {
+        this.endpointIndex = endpointIndex;
+    }
+
+    public ResultInbox getResultInbox() {
+        return resultInbox;
+    }
+
+    public void setResultInbox(ResultInbox resultInbox) {
+        this.resultInbox = resultInbox;
+    }
+
+    public ExportedServiceTrackers getExportedServiceTrackers() {
+        return exportedServiceTrackers;
+    }
+
+    public void setExportedServiceTrackers(ExportedServiceTrackers exportedServiceTrackers) {
+        this.exportedServiceTrackers = exportedServiceTrackers;
+    }
+
     public EventTransportFactory getEventTransportFactory() {
         return eventTransportFactory;
     }
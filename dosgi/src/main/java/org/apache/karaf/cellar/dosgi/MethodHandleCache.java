@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the method handles invoking the remote service calls, per service class, method name and argument types.
+ * The matching method is looked up once (inheritance and assignable argument types are supported), and invoked with
+ * a method handle taking the target service and the arguments array.
+ * The cache is attached to the service class, so it doesn't prevent the service bundle classes to be unloaded.
+ */
+public class MethodHandleCache {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final ClassValue<Map<Signature, MethodHandle>> handles = new ClassValue<Map<Signature, MethodHandle>>() {
+        @Override
+        protected Map<Signature, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<Signature, MethodHandle>();
+        }
+    };
+
+    /**
+     * Get the method handle invoking a method on a service.
+     * The method handle type is {@code (Object service, Object[] arguments)Object}.
+     *
+     * @param serviceClass the service class.
+     * @param methodName the method name.
+     * @param argumentTypes the arguments types (null for a null argument).
+     * @return the method handle.
+     * @throws NoSuchMethodException if no method matches.
+     * @throws IllegalAccessException if the method is not accessible.
+     */
+    public MethodHandle getMethodHandle(Class<?> serviceClass, String methodName, Class[] argumentTypes) throws NoSuchMethodException, IllegalAccessException {
+        Map<Signature, MethodHandle> serviceHandles = handles.get(serviceClass);
+        Signature signature = new Signature(methodName, argumentTypes);
+        MethodHandle handle = serviceHandles.get(signature);
+        if (handle == null) {
+            handle = toInvoker(getMethod(serviceClass, methodName, argumentTypes));
+            serviceHandles.put(signature, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Get the method handle invoking a given method, on a service instance of the method declaring class.
+     * The method handle type is {@code (Object service, Object[] arguments)Object}.
+     *
+     * @param method the method.
+     * @return the method handle.
+     * @throws IllegalAccessException if the method is not accessible.
+     */
+    public MethodHandle getMethodHandle(Method method) throws IllegalAccessException {
+        Map<Signature, MethodHandle> serviceHandles = handles.get(method.getDeclaringClass());
+        Signature signature = new Signature(method.getName(), method.getParameterTypes());
+        MethodHandle handle = serviceHandles.get(signature);
+        if (handle == null) {
+            handle = toInvoker(method);
+            serviceHandles.put(signature, handle);
+        }
+        return handle;
+    }
+
+    private static MethodHandle toInvoker(Method method) throws IllegalAccessException {
+        return MethodHandles.publicLookup().unreflect(method)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(INVOKER_TYPE);
+    }
+
+    /**
+     * Invoke a method handle returned by the cache.
+     * The exceptions and errors thrown by the method are propagated as is, other throwables are wrapped in an
+     * {@link UndeclaredThrowableException}.
+     *
+     * @param handle the method handle.
+     * @param service the target service.
+     * @param arguments the call arguments.
+     * @return the call result (null for a void method).
+     * @throws Exception the exception thrown by the method.
+     */
+    public static Object invoke(MethodHandle handle, Object service, Object[] arguments) throws Exception {
+        try {
+            return handle.invokeExact(service, arguments);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * <p>Gets a matching method in the <code>serviceClass<code/>.<br/>
+     * Inheritance is supported.</p>
+     *
+     * @param serviceClass the service class.
+     * @param methodName the method name.
+     * @param argumentTypes the arguments types.
+     * @return a method instance from the <code>serviceClass<code/>
+     * @throws NoSuchMethodException if no method matches.
+     */
+    static Method getMethod(Class<?> serviceClass, String methodName, Class[] argumentTypes) throws NoSuchMethodException {
+
+        Method result = null;
+        if (argumentTypes.length > 0) {
+            for (Method remoteMethod : serviceClass.getMethods()) {
+                //need to find a method with a matching name and with the same number of parameters
+                if (remoteMethod.getName().equals(methodName) && remoteMethod.getParameterTypes().length == argumentTypes.length) {
+                    boolean allParamsFound = true;
+                    for (int i = 0; i < remoteMethod.getParameterTypes().length; i++) {
+                        allParamsFound = allParamsFound && ClassUtils.isAssignable(argumentTypes[i], remoteMethod.getParameterTypes()[i]);
+                    }
+
+                    // if already found a matching method, no need to continue looking for one
+                    if (allParamsFound) {
+                        result = remoteMethod;
+                        break;
+                    }
+                }
+            }
+        } else {
+            result = serviceClass.getMethod(methodName);
+        }
+
+        //if method was not found go out with a bang
+        if (result == null) {
+            throw new NoSuchMethodException(String.format("No match for method [%s] %s", methodName, Arrays.toString(argumentTypes)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Method name and arguments types of a call.
+     */
+    private static class Signature {
+
+        private final String methodName;
+        private final Class[] argumentTypes;
+
+        Signature(String methodName, Class[] argumentTypes) {
+            this.methodName = methodName;
+            this.argumentTypes = argumentTypes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Signature that = (Signature) o;
+            return methodName.equals(that.methodName) && Arrays.equals(argumentTypes, that.argumentTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * methodName.hashCode() + Arrays.hashCode(argumentTypes);
+        }
+
+    }
+
+}
@@ -14,18 +14,32 @@
 package org.apache.karaf.cellar.dosgi;
 
 import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Cluster remote service call event.
  */
 public class RemoteServiceCall extends Command<RemoteServiceResult> {
 
+    // the version of the previous nodes, so the calls are exchanged during a rolling upgrade
+    private static final long serialVersionUID = 5855133731700670352L;
+
     private String endpointId;
     private String method;
     private String serviceClass;
     private List<Object> arguments;
+    private boolean oneWay;
+    private boolean resultInbox;
+
+    // completed with the call result for the asynchronous calls, local to the caller node
+    private transient CompletableFuture<Object> future;
+    // runs the future completion, so the caller callbacks don't run on the result handler thread
+    private transient Executor completionExecutor;
 
     public RemoteServiceCall(String id) {
         super(id);
@@ -63,4 +77,86 @@ public class RemoteServiceCall extends Command<RemoteServiceResult> {
         this.endpointId = endpointId;
     }
 
+    /**
+     * Check if the call is one-way: the remote service method is invoked without sending back a result.
+     *
+     * @return true if the call is one-way, false else.
+     */
+    public boolean isOneWay() {
+        return oneWay;
+    }
+
+    public void setOneWay(boolean oneWay) {
+        this.oneWay = oneWay;
+    }
+
+    /**
+     * Check if the result is sent to the result inbox of the caller node. The calls of the nodes of the previous
+     * version don't have the flag, their result is sent to the result queue of the caller node and endpoint.
+     *
+     * @return true if the result is sent to the result inbox, false else.
+     */
+    public boolean isResultInbox() {
+        return resultInbox;
+    }
+
+    public void setResultInbox(boolean resultInbox) {
+        this.resultInbox = resultInbox;
+    }
+
+    public CompletableFuture<Object> getFuture() {
+        return future;
+    }
+
+    public void setFuture(CompletableFuture<Object> future) {
+        this.future = future;
+    }
+
+    public Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
+    public void setCompletionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Add the remote service call results, and complete the future of an asynchronous call.
+     *
+     * @param results the remote service call results.
+     */
+    @Override
+    public void addResults(RemoteServiceResult... results) {
+        super.addResults(results);
+        if (future == null || results == null) {
+            return;
+        }
+        for (RemoteServiceResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            if (completionExecutor == null) {
+                complete(result);
+                return;
+            }
+            try {
+                completionExecutor.execute(() -> complete(result));
+            } catch (RejectedExecutionException e) {
+                // the executor is stopped
+                complete(result);
+            }
+            return;
+        }
+    }
+
+    private void complete(RemoteServiceResult result) {
+        // an exception being thrown by the remote service call completes the future exceptionally
+        if (result.getResult() instanceof RemoteServiceInvocationException) {
+            RemoteServiceInvocationException ute = (RemoteServiceInvocationException) result.getResult();
+            future.completeExceptionally((ute.getCause() != null) ? ute.getCause() : ute);
+        } else {
+            future.complete(result.getResult());
+        }
+    }
+
 }
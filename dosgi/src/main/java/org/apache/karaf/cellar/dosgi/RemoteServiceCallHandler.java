@@ -13,7 +13,6 @@
  */
 package org.apache.karaf.cellar.dosgi;
 
-import org.apache.commons.lang3.ClassUtils;
 import org.apache.karaf.cellar.core.CellarSupport;
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.control.BasicSwitch;
@@ -30,9 +29,7 @@ import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.lang.invoke.MethodHandle;
 
 /**
  * Handler for cluster remote service call event.
@@ -45,10 +42,16 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
 
     private final Switch dosgiSwitch = new BasicSwitch(SWITCH_ID);
 
+    private final MethodHandleCache methodHandleCache = new MethodHandleCache();
+
     private BundleContext bundleContext;
 
     private EventTransportFactory eventTransportFactory;
 
+    private ResultProducerCache resultProducerCache;
+
+    private ExportedServiceTrackers exportedServiceTrackers;
+
     /**
      * Handle a cluster remote service call event.
      *
@@ -66,91 +69,112 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
         Object targetService = null;
 
         if (event != null) {
-            ServiceReference[] serviceReferences = null;
-            try {
-                serviceReferences = bundleContext.getServiceReferences(event.getServiceClass(), null);
-                if (serviceReferences != null && serviceReferences.length > 0) {
-                    targetService = bundleContext.getService(serviceReferences[0]);
-                    bundleContext.ungetService(serviceReferences[0]);
+            if (exportedServiceTrackers != null) {
+                targetService = exportedServiceTrackers.getService(event.getEndpointId());
+            }
+            if (targetService == null) {
+                // service not tracked, lookup in the service registry
+                ServiceReference[] serviceReferences = null;
+                try {
+                    serviceReferences = bundleContext.getServiceReferences(event.getServiceClass(), null);
+                    if (serviceReferences != null && serviceReferences.length > 0) {
+                        targetService = bundleContext.getService(serviceReferences[0]);
+                        bundleContext.ungetService(serviceReferences[0]);
+                    }
+                } catch (InvalidSyntaxException e) {
+                    LOGGER.error("CELLAR DOSGI: failed to lookup service", e);
                 }
-            } catch (InvalidSyntaxException e) {
-                LOGGER.error("CELLAR DOSGI: failed to lookup service", e);
             }
 
             if (targetService != null) {
+                Object[] arguments = new Object[0];
                 Class[] classes = new Class[0];
                 if (event.getArguments() != null && event.getArguments().size() > 0) {
-                    classes = new Class[event.getArguments().size()];
-                    int i = 0;
-                    for (Object obj : event.getArguments()) {
-                        classes[i++] = obj.getClass();
+                    arguments = event.getArguments().toArray();
+                    classes = new Class[arguments.length];
+                    for (int i = 0; i < arguments.length; i++) {
+                        classes[i] = (arguments[i] != null) ? arguments[i].getClass() : null;
                     }
                 }
 
+                if (event.isOneWay()) {
+                    invokeOneWay(event, targetService, arguments, classes);
+                    return;
+                }
+
                 RemoteServiceResult result = new RemoteServiceResult(event.getId());
-                EventProducer producer = eventTransportFactory.getEventProducer(Constants.RESULT_PREFIX + Constants.SEPARATOR + event.getSourceNode().getId() + event.getEndpointId(), false);
+                EventProducer producer = getResultProducer(event);
                 try {
-                    Method method = getMethod(classes, targetService, event);
-                    Object obj = method.invoke(targetService, event.getArguments().toArray());
-                    result.setResult(obj);
-                    producer.produce(result);
+                    MethodHandle method = methodHandleCache.getMethodHandle(targetService.getClass(), event.getMethod(), classes);
+                    Object obj = MethodHandleCache.invoke(method, targetService, arguments);
+                    if (AsyncResults.isAsyncResult(obj)) {
+                        // asynchronous remote service, the result is sent when completed
+                        AsyncResults.toCompletionStage(obj).whenComplete((value, throwable) -> {
+                            if (throwable != null) {
+                                LOGGER.error("CELLAR DOSGI: asynchronous remote method for service failed", throwable);
+                                result.setResult(new RemoteServiceInvocationException(AsyncResults.unwrap(throwable)));
+                            } else {
+                                result.setResult(value);
+                            }
+                            producer.produce(result);
+                        });
+                    } else {
+                        result.setResult(obj);
+                        producer.produce(result);
+                    }
 
                 } catch (NoSuchMethodException e) {
                     LOGGER.error("CELLAR DOSGI: unable to find remote method for service", e);
                     result.setResult(new RemoteServiceInvocationException(e));
                     producer.produce(result);
-                } catch (InvocationTargetException e) {
-                    LOGGER.error("CELLAR DOSGI: unable to invoke remote method for service", e);
-                    result.setResult(new RemoteServiceInvocationException(e.getCause()));
-                    producer.produce(result);
                 } catch (IllegalAccessException e) {
                     LOGGER.error("CELLAR DOSGI: unable to access remote method for service", e);
                     result.setResult(new RemoteServiceInvocationException(e));
                     producer.produce(result);
+                } catch (Throwable e) {
+                    // the errors are also sent back, so the caller doesn't wait for the timeout
+                    LOGGER.error("CELLAR DOSGI: unable to invoke remote method for service", e);
+                    result.setResult(new RemoteServiceInvocationException(e));
+                    producer.produce(result);
                 }
             }
         }
     }
 
     /**
-     * <p>Gets a matching method in the <code>Object targetService<code/>.<br/>
-     * Inheritance is supported.</p>
+     * Invoke a one-way remote service call, without sending back a result.
      *
-     * @param eventParamTypes
-     * @param targetService
-     * @param event
-     * @return a method instance from the <code>Object targetService<code/>
-     * @throws NoSuchMethodException
+     * @param event the remote service call.
+     * @param targetService the target service.
+     * @param arguments the call arguments.
+     * @param classes the call arguments classes.
      */
-    private Method getMethod(Class[] eventParamTypes, Object targetService, RemoteServiceCall event) throws NoSuchMethodException {
-
-        Method result = null;
-        if (eventParamTypes.length > 0) {
-            for (Method remoteMethod : targetService.getClass().getMethods()) {
-                //need to find a method with a matching name and with the same number of parameters
-                if (remoteMethod.getName().equals(event.getMethod()) && remoteMethod.getParameterTypes().length == eventParamTypes.length) {
-                    boolean allParamsFound = true;
-                    for (int i = 0; i < remoteMethod.getParameterTypes().length; i++) {
-                        allParamsFound = allParamsFound && ClassUtils.isAssignable(eventParamTypes[i], remoteMethod.getParameterTypes()[i]);
-                    }
-
-                    // if already found a matching method, no need to continue looking for one
-                    if (allParamsFound) {
-                        result = remoteMethod;
-                        break;
-                    }
-                }
-            }
-        } else {
-            result = targetService.getClass().getMethod(event.getMethod());
+    private void invokeOneWay(RemoteServiceCall event, Object targetService, Object[] arguments, Class[] classes) {
+        try {
+            MethodHandle method = methodHandleCache.getMethodHandle(targetService.getClass(), event.getMethod(), classes);
+            MethodHandleCache.invoke(method, targetService, arguments);
+        } catch (NoSuchMethodException e) {
+            LOGGER.error("CELLAR DOSGI: unable to find remote method for service", e);
+        } catch (Throwable e) {
+            LOGGER.error("CELLAR DOSGI: unable to invoke one-way remote method for service", e);
         }
+    }
 
-        //if method was not found go out with a bang
-        if (result == null) {
-            throw new NoSuchMethodException(String.format("No match for method [%s] %s", event.getMethod(), Arrays.toString(eventParamTypes)));
+    /**
+     * Get the producer sending the result of a remote service call to the result inbox of the caller node, or to the
+     * result queue of the caller node and endpoint for a caller of the previous version.
+     *
+     * @param event the remote service call.
+     * @return the result producer.
+     */
+    private EventProducer getResultProducer(RemoteServiceCall event) {
+        if (!event.isResultInbox()) {
+            return eventTransportFactory.getEventProducer(ResultInbox.getLegacyName(event.getSourceNode().getId(), event.getEndpointId()), false);
         }
-
-        return result;
+        if (resultProducerCache != null) {
+            return resultProducerCache.getProducer(event.getSourceNode().getId());
+        }
+        return eventTransportFactory.getEventProducer(ResultInbox.getName(event.getSourceNode().getId()), false);
     }
 
     /**
@@ -203,4 +227,20 @@ public class RemoteServiceCallHandler extends CellarSupport implements EventHand
         this.eventTransportFactory = eventTransportFactory;
     }
 
+    public ResultProducerCache getResultProducerCache() {
+        return resultProducerCache;
+    }
+
+    public void setResultProducerCache(ResultProducerCache resultProducerCache) {
+        this.resultProducerCache = resultProducerCache;
+    }
+
+    public ExportedServiceTrackers getExportedServiceTrackers() {
+        return exportedServiceTrackers;
+    }
+
+    public void setExportedServiceTrackers(ExportedServiceTrackers exportedServiceTrackers) {
+        this.exportedServiceTrackers = exportedServiceTrackers;
+    }
+
 }
@@ -18,19 +18,31 @@ import org.apache.karaf.cellar.core.command.ExecutionContext;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Factory for remote service.
  */
 public class RemoteServiceFactory implements ServiceFactory {
 
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(RemoteServiceFactory.class);
+
     private EndpointDescription description;
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
+    private String localPolicy = Constants.DEFAULT_LOCAL_POLICY;
+    private ExportedServiceTrackers exportedServiceTrackers;
+    private MethodHandleCache methodHandleCache;
+    private CircuitBreaker circuitBreaker;
+    private Executor completionExecutor;
 
     public RemoteServiceFactory(EndpointDescription description, ClusterManager clusterManager, ExecutionContext executionContext) {
         this.description = description;
@@ -49,12 +61,86 @@ public class RemoteServiceFactory implements ServiceFactory {
                 // Ignore
             }
         RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler(description.getId(), interfaceName,clusterManager,executionContext);
+        handler.setOneWay(Boolean.parseBoolean(String.valueOf(description.getProperties().get(Constants.ONE_WAY))));
+        handler.setLocalPolicy(localPolicy);
+        handler.setExportedServiceTrackers(exportedServiceTrackers);
+        handler.setMethodHandleCache(methodHandleCache);
+        handler.setCircuitBreaker(circuitBreaker);
+        handler.setCompletionExecutor(completionExecutor);
+        setTimeouts(handler);
         return Proxy.newProxyInstance(classLoader, interfaces.toArray(new Class[interfaces.size()]), handler);
     }
 
+    /**
+     * Set the endpoint and methods calls timeout defined by the exported service properties.
+     *
+     * @param handler the remote service invocation handler.
+     */
+    private void setTimeouts(RemoteServiceInvocationHandler handler) {
+        Map<String, Long> methodTimeouts = new HashMap<String, Long>();
+        for (Map.Entry<String, Object> entry : description.getProperties().entrySet()) {
+            if (!entry.getKey().startsWith(Constants.TIMEOUT)) {
+                continue;
+            }
+            long timeout;
+            try {
+                timeout = Long.parseLong(String.valueOf(entry.getValue()).trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR DOSGI: invalid timeout {} = {}", entry.getKey(), entry.getValue());
+                continue;
+            }
+            if (entry.getKey().equals(Constants.TIMEOUT)) {
+                handler.setTimeout(timeout);
+            } else if (entry.getKey().startsWith(Constants.TIMEOUT + ".")) {
+                methodTimeouts.put(entry.getKey().substring(Constants.TIMEOUT.length() + 1), timeout);
+            }
+        }
+        handler.setMethodTimeouts(methodTimeouts);
+    }
+
     @Override
     public void ungetService(Bundle bundle, ServiceRegistration registration, Object service) {
         // nothing to do
     }
 
+    public String getLocalPolicy() {
+        return localPolicy;
+    }
+
+    public void setLocalPolicy(String localPolicy) {
+        this.localPolicy = localPolicy;
+    }
+
+    public ExportedServiceTrackers getExportedServiceTrackers() {
+        return exportedServiceTrackers;
+    }
+
+    public void setExportedServiceTrackers(ExportedServiceTrackers exportedServiceTrackers) {
+        this.exportedServiceTrackers = exportedServiceTrackers;
+    }
+
+    public MethodHandleCache getMethodHandleCache() {
+        return methodHandleCache;
+    }
+
+    public void setMethodHandleCache(MethodHandleCache methodHandleCache) {
+        this.methodHandleCache = methodHandleCache;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
+    public void setCompletionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+    }
+
 }
@@ -16,23 +16,42 @@ package org.apache.karaf.cellar.dosgi;
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
 import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Handler for cluster remote service invocation event.
  */
 public class RemoteServiceInvocationHandler implements InvocationHandler {
 
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(RemoteServiceInvocationHandler.class);
+
     private String endpointId;
     private String serviceClass;
     private ClusterManager clusterManager;
     private ExecutionContext executionContext;
+    private boolean oneWay;
+    private String localPolicy = Constants.DEFAULT_LOCAL_POLICY;
+    private ExportedServiceTrackers exportedServiceTrackers;
+    private MethodHandleCache methodHandleCache;
+    private CircuitBreaker circuitBreaker;
+    private Executor completionExecutor;
+    private long timeout;
+    private Map<String, Long> methodTimeouts = Collections.emptyMap();
 
     public RemoteServiceInvocationHandler(String endpointId,String serviceClass, ClusterManager clusterManager, ExecutionContext executionContext) {
         this.endpointId = endpointId;
@@ -43,10 +62,20 @@ public class RemoteServiceInvocationHandler implements InvocationHandler {
 
     @Override
     public Object invoke(Object o, Method method, Object[] arguments) throws Throwable {
+        // the endpoint is also exported by the local node
+        Object localService = getLocalService();
+        MethodHandle localHandle = getLocalHandle(localService, method);
+        if (localHandle != null && Constants.LOCAL_PREFER.equals(localPolicy)) {
+            return invokeLocal(localService, localHandle, arguments);
+        }
+        // the local service is only called when the call is not sent to a remote node
+        boolean fallback = localHandle != null && Constants.LOCAL_FALLBACK.equals(localPolicy);
+
         RemoteServiceCall remoteServiceCall = new RemoteServiceCall(clusterManager.generateId());
         remoteServiceCall.setEndpointId(endpointId);
         remoteServiceCall.setMethod(method.getName());
         remoteServiceCall.setServiceClass(serviceClass);
+        remoteServiceCall.setResultInbox(true);
         List argumentList = new LinkedList();
 
         if(arguments != null && arguments.length > 0) {
@@ -56,7 +85,90 @@ public class RemoteServiceInvocationHandler implements InvocationHandler {
         }
 
         remoteServiceCall.setArguments(argumentList);
-        Map<Node,RemoteServiceResult> results =  executionContext.execute(remoteServiceCall);
+
+        long timeout = getTimeout(method.getName());
+        if (timeout > 0) {
+            remoteServiceCall.setTimeout(timeout);
+        }
+
+        // fail fast while the circuit breaker of the endpoint is open. A one-way call has no response to report, so it
+        // doesn't acquire the circuit breaker, and is not the probe call of a half-open circuit breaker
+        boolean oneWayCall = oneWay && method.getReturnType().equals(Void.TYPE);
+        if (circuitBreaker != null && !(oneWayCall ? circuitBreaker.isCallPermitted() : circuitBreaker.tryAcquire())) {
+            if (fallback) {
+                return invokeLocal(localService, localHandle, arguments);
+            }
+            RemoteServiceInvocationException open = new RemoteServiceInvocationException("Circuit breaker open for endpoint " + endpointId);
+            if (AsyncResults.isAsync(method.getReturnType())) {
+                CompletableFuture<Object> future = new CompletableFuture<Object>();
+                future.completeExceptionally(open);
+                return AsyncResults.toResult(future, method.getReturnType());
+            }
+            throw open;
+        }
+
+        if (oneWayCall) {
+            // one-way call, the remote service doesn't send back a result
+            remoteServiceCall.setOneWay(true);
+            try {
+                executionContext.post(remoteServiceCall);
+            } catch (ProducerNotFoundException e) {
+                if (!fallback) {
+                    throw e;
+                }
+                return invokeLocal(localService, localHandle, arguments);
+            }
+            return null;
+        }
+
+        if (AsyncResults.isAsync(method.getReturnType())) {
+            // asynchronous call, the future is completed when the remote service result is received
+            CompletableFuture<Object> future = new CompletableFuture<Object>();
+            remoteServiceCall.setFuture(future);
+            remoteServiceCall.setCompletionExecutor(completionExecutor);
+            try {
+                executionContext.submit(remoteServiceCall);
+            } catch (ProducerNotFoundException e) {
+                onFailure();
+                if (!fallback) {
+                    throw e;
+                }
+                return invokeLocal(localService, localHandle, arguments);
+            } catch (Throwable e) {
+                onFailure();
+                throw e;
+            }
+            future.orTimeout(remoteServiceCall.getTimeout(), TimeUnit.MILLISECONDS);
+            future.whenComplete((value, throwable) -> {
+                // an exception thrown by the remote service is an answer of a healthy provider
+                if (AsyncResults.unwrap(throwable) instanceof TimeoutException) {
+                    onFailure();
+                } else {
+                    onSuccess();
+                }
+            });
+            return AsyncResults.toResult(future, method.getReturnType());
+        }
+
+        Map<Node,RemoteServiceResult> results;
+        try {
+            results = executionContext.execute(remoteServiceCall);
+        } catch (ProducerNotFoundException e) {
+            onFailure();
+            if (!fallback) {
+                throw e;
+            }
+            return invokeLocal(localService, localHandle, arguments);
+        } catch (Throwable e) {
+            onFailure();
+            throw e;
+        }
+        // a call without answer is not called locally, the remote node may have executed it
+        if (results == null || results.isEmpty()) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
 
         if(results != null) {
             for(Map.Entry<Node,RemoteServiceResult> entry:results.entrySet()) {
@@ -78,4 +190,155 @@ public class RemoteServiceInvocationHandler implements InvocationHandler {
         return null;
     }
 
+    /**
+     * Get the timeout of a remote service method call.
+     *
+     * @param methodName the method name.
+     * @return the timeout in milliseconds, or 0 to use the default timeout.
+     */
+    private long getTimeout(String methodName) {
+        Long methodTimeout = methodTimeouts.get(methodName);
+        return (methodTimeout != null) ? methodTimeout : timeout;
+    }
+
+    private void onSuccess() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    private void onFailure() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    /**
+     * Get the service exported by the local node for the endpoint, tracked with the endpoint version.
+     *
+     * @return the local service, or null if the local node doesn't export the endpoint or the local services are excluded.
+     */
+    private Object getLocalService() {
+        if (exportedServiceTrackers == null || Constants.LOCAL_EXCLUDE.equals(localPolicy)) {
+            return null;
+        }
+        return exportedServiceTrackers.getService(endpointId);
+    }
+
+    /**
+     * Get the method handle calling the service exported by the local node.
+     * The local service has to implement the interface of the imported service: a service exported by a bundle
+     * wired to another package version (another class space) is not called locally.
+     *
+     * @param localService the local service.
+     * @param method the called method.
+     * @return the method handle, or null if the local service can't be called.
+     */
+    private MethodHandle getLocalHandle(Object localService, Method method) {
+        if (localService == null) {
+            return null;
+        }
+        if (!method.getDeclaringClass().isInstance(localService)) {
+            LOGGER.debug("CELLAR DOSGI: local service of endpoint {} is not in the class space of {}, calling the remote nodes", endpointId, method.getDeclaringClass().getName());
+            return null;
+        }
+        try {
+            return getMethodHandleCache().getMethodHandle(method);
+        } catch (IllegalAccessException e) {
+            LOGGER.debug("CELLAR DOSGI: method {} of the local service of endpoint {} is not accessible, calling the remote nodes", method.getName(), endpointId);
+            return null;
+        }
+    }
+
+    /**
+     * Call the service exported by the local node in-process, without serialization.
+     *
+     * @param localService the local service.
+     * @param handle the method handle.
+     * @param arguments the call arguments.
+     * @return the call result.
+     * @throws Throwable the exception thrown by the local service.
+     */
+    private Object invokeLocal(Object localService, MethodHandle handle, Object[] arguments) throws Throwable {
+        Object[] args = (arguments != null) ? arguments : new Object[0];
+        return handle.invokeExact(localService, args);
+    }
+
+    /**
+     * Check if the calls of the void methods are one-way.
+     *
+     * @return true if the calls of the void methods are one-way, false else.
+     */
+    public boolean isOneWay() {
+        return oneWay;
+    }
+
+    public void setOneWay(boolean oneWay) {
+        this.oneWay = oneWay;
+    }
+
+    public String getLocalPolicy() {
+        return localPolicy;
+    }
+
+    public void setLocalPolicy(String localPolicy) {
+        this.localPolicy = localPolicy;
+    }
+
+    public ExportedServiceTrackers getExportedServiceTrackers() {
+        return exportedServiceTrackers;
+    }
+
+    public void setExportedServiceTrackers(ExportedServiceTrackers exportedServiceTrackers) {
+        this.exportedServiceTrackers = exportedServiceTrackers;
+    }
+
+    public synchronized MethodHandleCache getMethodHandleCache() {
+        if (methodHandleCache == null) {
+            methodHandleCache = new MethodHandleCache();
+        }
+        return methodHandleCache;
+    }
+
+    public synchronized void setMethodHandleCache(MethodHandleCache methodHandleCache) {
+        this.methodHandleCache = methodHandleCache;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
+    public void setCompletionExecutor(Executor completionExecutor) {
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Get the timeout of the endpoint calls.
+     *
+     * @return the timeout in milliseconds, or 0 to use the default timeout.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public Map<String, Long> getMethodTimeouts() {
+        return methodTimeouts;
+    }
+
+    public void setMethodTimeouts(Map<String, Long> methodTimeouts) {
+        this.methodTimeouts = (methodTimeouts != null) ? methodTimeouts : Collections.<String, Long>emptyMap();
+    }
+
 }
@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.command.CommandStore;
+import org.apache.karaf.cellar.core.event.EventConsumer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbox of the local node, receiving the results of all remote service calls sent by the local node.
+ * The results are dispatched to the remote service result handler, completing the pending call with the same
+ * correlation ID. The number of consumers of the inbox follows the number of pending calls, up to the maximum defined
+ * in etc/org.apache.karaf.cellar.node.cfg.
+ * During a rolling upgrade, the nodes of the previous version send the results to a queue per caller node and
+ * endpoint: these queues are consumed too, while nodes of the previous version provide the imported endpoints.
+ */
+public class ResultInbox implements Runnable {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ResultInbox.class);
+
+    // number of pending calls handled by a consumer before adding a consumer
+    public static final int CALLS_PER_CONSUMER = 100;
+
+    // the first active consumers are consuming, the other ones are stopped and reused when the load grows
+    private final List<EventConsumer> consumers = new ArrayList<EventConsumer>();
+    private int active;
+    private int maxConsumers;
+
+    // endpoint ID -> consumer of the legacy result queue
+    private final Map<String, EventConsumer> legacyConsumers = new HashMap<String, EventConsumer>();
+
+    private ScheduledExecutorService scheduler;
+
+    private ClusterManager clusterManager;
+    private EventTransportFactory eventTransportFactory;
+    private ConfigurationAdmin configurationAdmin;
+    private CommandStore commandStore;
+
+    public synchronized void init() {
+        maxConsumers = getMaxConsumers();
+        LOGGER.debug("CELLAR DOSGI: start result inbox {} with up to {} consumer(s)", getName(clusterManager.getNode().getId()), maxConsumers);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        resize(1);
+        scheduler.scheduleWithFixedDelay(this, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        for (EventConsumer consumer : consumers) {
+            consumer.stop();
+        }
+        consumers.clear();
+        active = 0;
+        for (EventConsumer consumer : legacyConsumers.values()) {
+            consumer.stop();
+        }
+        legacyConsumers.clear();
+    }
+
+    @Override
+    public void run() {
+        try {
+            int pending = (commandStore != null) ? commandStore.getPending().size() : 0;
+            resize(1 + pending / CALLS_PER_CONSUMER);
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR DOSGI: failed to resize the result inbox consumers", e);
+        }
+    }
+
+    /**
+     * Update the number of consuming consumers: the consumers are added at once when the load grows, and removed one
+     * at a time when the load decreases.
+     *
+     * @param target the expected number of consumers.
+     */
+    private synchronized void resize(int target) {
+        if (scheduler == null) {
+            // the inbox is stopped
+            return;
+        }
+        target = Math.max(1, Math.min(maxConsumers, target));
+        if (active == target) {
+            return;
+        }
+        String name = getName(clusterManager.getNode().getId());
+        if (active < target) {
+            while (active < target) {
+                if (active < consumers.size()) {
+                    consumers.get(active).start();
+                } else {
+                    consumers.add(eventTransportFactory.getEventConsumer(name, Boolean.FALSE));
+                }
+                active++;
+            }
+        } else {
+            active--;
+            consumers.get(active).stop();
+        }
+        LOGGER.debug("CELLAR DOSGI: {} consumer(s) on result inbox {}", active, name);
+    }
+
+    /**
+     * Consume the legacy result queue of an imported endpoint, provided by nodes of the previous version.
+     *
+     * @param endpointId the endpoint ID.
+     */
+    public synchronized void openLegacy(String endpointId) {
+        if (scheduler == null || legacyConsumers.containsKey(endpointId)) {
+            return;
+        }
+        legacyConsumers.put(endpointId, eventTransportFactory.getEventConsumer(getLegacyName(clusterManager.getNode().getId(), endpointId), Boolean.FALSE));
+    }
+
+    /**
+     * Stop to consume the legacy result queue of an endpoint.
+     *
+     * @param endpointId the endpoint ID.
+     */
+    public synchronized void closeLegacy(String endpointId) {
+        EventConsumer consumer = legacyConsumers.remove(endpointId);
+        if (consumer != null) {
+            consumer.stop();
+        }
+    }
+
+    /**
+     * Get the name of the result inbox of a node.
+     *
+     * @param nodeId the node ID.
+     * @return the result inbox name.
+     */
+    public static String getName(String nodeId) {
+        return Constants.RESULT_PREFIX + Constants.SEPARATOR + nodeId;
+    }
+
+    /**
+     * Get the name of the result queue of a node and endpoint, used by the nodes of the previous version.
+     *
+     * @param nodeId the node ID.
+     * @param endpointId the endpoint ID.
+     * @return the legacy result queue name.
+     */
+    public static String getLegacyName(String nodeId, String endpointId) {
+        return Constants.RESULT_PREFIX + Constants.SEPARATOR + nodeId + endpointId;
+    }
+
+    /**
+     * Get the maximum number of consumers of the result inbox defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the maximum number of consumers.
+     */
+    private int getMaxConsumers() {
+        if (configurationAdmin == null) {
+            return Constants.DEFAULT_RESULT_CONSUMERS;
+        }
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, Constants.RESULT_CONSUMERS, null);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR DOSGI: invalid result inbox consumers {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_RESULT_CONSUMERS;
+    }
+
+    /**
+     * Get the number of consuming consumers of the result inbox.
+     *
+     * @return the number of consumers.
+     */
+    public synchronized int size() {
+        return active;
+    }
+
+    /**
+     * Get the number of consumed legacy result queues.
+     *
+     * @return the number of legacy result queues.
+     */
+    public synchronized int legacySize() {
+        return legacyConsumers.size();
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    public void setClusterManager(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+    public EventTransportFactory getEventTransportFactory() {
+        return eventTransportFactory;
+    }
+
+    public void setEventTransportFactory(EventTransportFactory eventTransportFactory) {
+        this.eventTransportFactory = eventTransportFactory;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    public CommandStore getCommandStore() {
+        return commandStore;
+    }
+
+    public void setCommandStore(CommandStore commandStore) {
+        this.commandStore = commandStore;
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of the producers sending the remote service results to the result inbox of the caller nodes.
+ * The least recently used producers are evicted when the cache is full, and the producers of the nodes leaving the
+ * cluster are removed.
+ */
+public class ResultProducerCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Map<String, EventProducer> producers;
+
+    private EventTransportFactory eventTransportFactory;
+
+    public ResultProducerCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ResultProducerCache(final int maxSize) {
+        this.producers = new LinkedHashMap<String, EventProducer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EventProducer> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the producer sending the results to a caller node, creating it if needed.
+     *
+     * @param nodeId the caller node ID.
+     * @return the result producer.
+     */
+    public synchronized EventProducer getProducer(String nodeId) {
+        EventProducer producer = producers.get(nodeId);
+        if (producer == null) {
+            producer = eventTransportFactory.getEventProducer(ResultInbox.getName(nodeId), false);
+            producers.put(nodeId, producer);
+        }
+        return producer;
+    }
+
+    /**
+     * Remove the producers of the caller nodes not active anymore.
+     *
+     * @param activeNodes the active nodes in the cluster.
+     */
+    public synchronized void retainNodes(Set<Node> activeNodes) {
+        if (producers.isEmpty()) {
+            return;
+        }
+        Set<String> activeNodeIds = new HashSet<String>();
+        for (Node node : activeNodes) {
+            activeNodeIds.add(node.getId());
+        }
+        for (Iterator<String> iterator = producers.keySet().iterator(); iterator.hasNext(); ) {
+            if (!activeNodeIds.contains(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return producers.size();
+    }
+
+    public synchronized void clear() {
+        producers.clear();
+    }
+
+    public EventTransportFactory getEventTransportFactory() {
+        return eventTransportFactory;
+    }
+
+    public void setEventTransportFactory(EventTransportFactory eventTransportFactory) {
+        this.eventTransportFactory = eventTransportFactory;
+    }
+
+}
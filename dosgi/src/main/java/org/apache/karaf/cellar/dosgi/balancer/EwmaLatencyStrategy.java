@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Select the endpoint node with the lowest cost: the exponentially weighted moving average of the calls latency,
+ * multiplied by the number of calls in flight plus one.
+ * The nodes without latency yet are selected first, so all nodes are measured. The latency of a node decays while the
+ * node is not called, so a node with a high latency (a timed out call for instance) is called again after a while, and
+ * its latency measured again.
+ */
+public class EwmaLatencyStrategy implements LoadBalancingStrategy {
+
+    public static final double DEFAULT_ALPHA = 0.3;
+    // time for the latency of a node not called to decay by a factor e, in milliseconds
+    public static final long DEFAULT_DECAY = 10000;
+
+    private final double alpha;
+    private final long decay;
+    private final RoundRobinStrategy unmeasured = new RoundRobinStrategy();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    // node ID -> latency moving average
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<String, Latency>();
+    // node ID -> calls in flight
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<String, AtomicInteger>();
+
+    public EwmaLatencyStrategy() {
+        this(DEFAULT_ALPHA);
+    }
+
+    public EwmaLatencyStrategy(double alpha) {
+        this(alpha, DEFAULT_DECAY);
+    }
+
+    public EwmaLatencyStrategy(double alpha, long decay) {
+        this.alpha = alpha;
+        this.decay = Math.max(1, decay);
+    }
+
+    @Override
+    public Node select(List<Node> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        long now = now();
+        // the scan starts at a rotating offset, so the nodes with the same cost are selected in turn
+        int offset = Math.floorMod(counter.getAndIncrement(), nodes.size());
+        Node selected = null;
+        double min = Double.MAX_VALUE;
+        List<Node> unmeasuredNodes = new ArrayList<Node>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get((offset + i) % nodes.size());
+            Latency latency = latencies.get(node.getId());
+            if (latency == null) {
+                unmeasuredNodes.add(node);
+                continue;
+            }
+            double cost = latency.get(now, decay) * (getOutstanding(node) + 1);
+            if (cost < min) {
+                min = cost;
+                selected = node;
+            }
+        }
+        if (!unmeasuredNodes.isEmpty()) {
+            return unmeasured.select(unmeasuredNodes);
+        }
+        return selected;
+    }
+
+    @Override
+    public void onRequest(Node node) {
+        outstanding.computeIfAbsent(node.getId(), id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @Override
+    public void onResponse(Node node, long latency) {
+        AtomicInteger count = outstanding.get(node.getId());
+        if (count != null) {
+            count.updateAndGet(value -> Math.max(0, value - 1));
+        }
+        latencies.computeIfAbsent(node.getId(), id -> new Latency()).update(latency, alpha, now());
+    }
+
+    /**
+     * Get the latency moving average of a node, without the decay.
+     *
+     * @param node the node.
+     * @return the latency moving average in milliseconds, or null if the node has not been called yet.
+     */
+    public Double getLatency(Node node) {
+        Latency latency = latencies.get(node.getId());
+        return (latency != null) ? latency.average : null;
+    }
+
+    /**
+     * Get the number of calls in flight to a node.
+     *
+     * @param node the node.
+     * @return the number of calls in flight.
+     */
+    public int getOutstanding(Node node) {
+        AtomicInteger count = outstanding.get(node.getId());
+        return (count != null) ? count.get() : 0;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Latency moving average of a node, with the time of the last response.
+     */
+    private static class Latency {
+
+        private volatile Double average;
+        private volatile long timestamp;
+
+        synchronized void update(long latency, double alpha, long now) {
+            average = (average == null) ? latency : alpha * latency + (1 - alpha) * average;
+            timestamp = now;
+        }
+
+        double get(long now, long decay) {
+            Double current = average;
+            if (current == null) {
+                return 0;
+            }
+            long elapsed = Math.max(0, now - timestamp);
+            return current * Math.exp(-(double) elapsed / decay);
+        }
+
+    }
+
+}
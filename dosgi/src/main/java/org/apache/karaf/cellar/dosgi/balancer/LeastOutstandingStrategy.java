@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Select the endpoint node with the least calls in flight.
+ * The scan starts at a rotating offset, so the nodes with the same number of calls in flight are selected in turn.
+ */
+public class LeastOutstandingStrategy implements LoadBalancingStrategy {
+
+    // node ID -> calls in flight
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Node select(List<Node> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        int offset = Math.floorMod(counter.getAndIncrement(), nodes.size());
+        Node selected = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get((offset + i) % nodes.size());
+            int count = getOutstanding(node);
+            if (count < min) {
+                min = count;
+                selected = node;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void onRequest(Node node) {
+        outstanding.computeIfAbsent(node.getId(), id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @Override
+    public void onResponse(Node node, long latency) {
+        AtomicInteger count = outstanding.get(node.getId());
+        if (count != null) {
+            count.updateAndGet(value -> Math.max(0, value - 1));
+        }
+    }
+
+    /**
+     * Get the number of calls in flight to a node.
+     *
+     * @param node the node.
+     * @return the number of calls in flight.
+     */
+    public int getOutstanding(Node node) {
+        AtomicInteger count = outstanding.get(node.getId());
+        return (count != null) ? count.get() : 0;
+    }
+
+}
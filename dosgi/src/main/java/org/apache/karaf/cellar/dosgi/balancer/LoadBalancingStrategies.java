@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.apache.karaf.cellar.dosgi.Constants;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * Create the load balancing strategies by name.
+ */
+public class LoadBalancingStrategies {
+
+    public static final String SHARED = "shared";
+    public static final String ROUND_ROBIN = "round-robin";
+    public static final String LEAST_OUTSTANDING = "least-outstanding";
+    public static final String EWMA = "ewma";
+    public static final String SAME_HOST = "same-host";
+
+    private LoadBalancingStrategies() {
+        // utility class
+    }
+
+    /**
+     * Get the load balancing strategy name defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @param configurationAdmin the configuration admin service.
+     * @return the load balancing strategy name.
+     */
+    public static String getName(ConfigurationAdmin configurationAdmin) {
+        return CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE, Constants.BALANCER, SHARED).trim();
+    }
+
+    /**
+     * Create a load balancing strategy.
+     *
+     * @param name the strategy name.
+     * @param localNode the local node.
+     * @return the load balancing strategy, or null for the shared strategy (the endpoint nodes consume the calls
+     * from a shared queue).
+     * @throws IllegalArgumentException if the strategy is unknown.
+     */
+    public static LoadBalancingStrategy create(String name, Node localNode) {
+        if (name == null || name.trim().isEmpty() || SHARED.equals(name.trim())) {
+            return null;
+        }
+        switch (name.trim()) {
+            case ROUND_ROBIN:
+                return new RoundRobinStrategy();
+            case LEAST_OUTSTANDING:
+                return new LeastOutstandingStrategy();
+            case EWMA:
+                return new EwmaLatencyStrategy();
+            case SAME_HOST:
+                return new SameHostStrategy(localNode);
+            default:
+                throw new IllegalArgumentException("Unknown load balancing strategy " + name);
+        }
+    }
+
+}
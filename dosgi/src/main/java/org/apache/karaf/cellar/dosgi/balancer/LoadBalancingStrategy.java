@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.List;
+
+/**
+ * Strategy selecting the node providing an endpoint to call.
+ */
+public interface LoadBalancingStrategy {
+
+    /**
+     * Select the node to call.
+     *
+     * @param nodes the nodes providing the endpoint.
+     * @return the selected node, or null if no node is available.
+     */
+    public Node select(List<Node> nodes);
+
+    /**
+     * Callback method called when a call is sent to a node.
+     *
+     * @param node the called node.
+     */
+    public void onRequest(Node node);
+
+    /**
+     * Callback method called when a call sent to a node is completed (with a result or a timeout).
+     *
+     * @param node the called node.
+     * @param latency the call latency in milliseconds.
+     */
+    public void onResponse(Node node, long latency);
+
+}
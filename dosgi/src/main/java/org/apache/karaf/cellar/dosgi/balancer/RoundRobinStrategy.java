@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Select the endpoint nodes in turn.
+ */
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Node select(List<Node> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        return nodes.get(Math.floorMod(counter.getAndIncrement(), nodes.size()));
+    }
+
+    @Override
+    public void onRequest(Node node) {
+        // nothing to do
+    }
+
+    @Override
+    public void onResponse(Node node, long latency) {
+        // nothing to do
+    }
+
+}
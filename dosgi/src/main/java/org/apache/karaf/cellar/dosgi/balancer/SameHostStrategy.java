@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Select the endpoint nodes running on the same host as the local node, using a delegate strategy.
+ * The other nodes are selected only when no endpoint node runs on the same host.
+ */
+public class SameHostStrategy implements LoadBalancingStrategy {
+
+    private final Node localNode;
+    private final LoadBalancingStrategy delegate;
+
+    public SameHostStrategy(Node localNode) {
+        this(localNode, new RoundRobinStrategy());
+    }
+
+    public SameHostStrategy(Node localNode, LoadBalancingStrategy delegate) {
+        this.localNode = localNode;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Node select(List<Node> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        List<Node> sameHostNodes = new ArrayList<Node>();
+        if (localNode != null && localNode.getHost() != null) {
+            for (Node node : nodes) {
+                if (localNode.getHost().equals(node.getHost())) {
+                    sameHostNodes.add(node);
+                }
+            }
+        }
+        return delegate.select(sameHostNodes.isEmpty() ? nodes : sameHostNodes);
+    }
+
+    @Override
+    public void onRequest(Node node) {
+        delegate.onRequest(node);
+    }
+
+    @Override
+    public void onResponse(Node node, long latency) {
+        delegate.onResponse(node, latency);
+    }
+
+}
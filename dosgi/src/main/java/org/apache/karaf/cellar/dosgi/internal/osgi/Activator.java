@@ -52,6 +52,9 @@ public class Activator extends BaseActivator {
     private ImportServiceListener importServiceListener;
     private ExportServiceListener exportServiceListener;
     private RemovedNodeServiceTracker removedNodeServiceTracker;
+    private ExportedServiceTrackers exportedServiceTrackers;
+    private ResultInbox resultInbox;
+    private EndpointIndex endpointIndex;
     private ServiceRegistration mbeanRegistration;
 
     @Override
@@ -70,9 +73,17 @@ public class Activator extends BaseActivator {
         if (configurationAdmin == null)
             return;
 
+        ResultProducerCache resultProducerCache = new ResultProducerCache();
+        resultProducerCache.setEventTransportFactory(eventTransportFactory);
+
+        exportedServiceTrackers = new ExportedServiceTrackers();
+        exportedServiceTrackers.setBundleContext(bundleContext);
+
         LOGGER.debug("CELLAR DOSGI: init remote service call handler");
         RemoteServiceCallHandler remoteServiceCallHandler = new RemoteServiceCallHandler();
         remoteServiceCallHandler.setEventTransportFactory(eventTransportFactory);
+        remoteServiceCallHandler.setResultProducerCache(resultProducerCache);
+        remoteServiceCallHandler.setExportedServiceTrackers(exportedServiceTrackers);
         remoteServiceCallHandler.setClusterManager(clusterManager);
         remoteServiceCallHandler.setBundleContext(bundleContext);
         remoteServiceCallHandler.setConfigurationAdmin(configurationAdmin);
@@ -85,11 +96,28 @@ public class Activator extends BaseActivator {
         remoteServiceResultHandler.setCommandStore(commandStore);
         register(EventHandler.class, remoteServiceResultHandler);
 
+        LOGGER.debug("CELLAR DOSGI: init result inbox");
+        resultInbox = new ResultInbox();
+        resultInbox.setClusterManager(clusterManager);
+        resultInbox.setEventTransportFactory(eventTransportFactory);
+        resultInbox.setConfigurationAdmin(configurationAdmin);
+        resultInbox.setCommandStore(commandStore);
+        resultInbox.init();
+
+        LOGGER.debug("CELLAR DOSGI: init remote endpoints index");
+        endpointIndex = new EndpointIndex();
+        endpointIndex.setClusterManager(clusterManager);
+        endpointIndex.init();
+
         LOGGER.debug("CELLAR DOSGI: init import service listener");
         importServiceListener = new ImportServiceListener();
         importServiceListener.setClusterManager(clusterManager);
         importServiceListener.setEventTransportFactory(eventTransportFactory);
         importServiceListener.setCommandStore(commandStore);
+        importServiceListener.setConfigurationAdmin(configurationAdmin);
+        importServiceListener.setExportedServiceTrackers(exportedServiceTrackers);
+        importServiceListener.setEndpointIndex(endpointIndex);
+        importServiceListener.setResultInbox(resultInbox);
         importServiceListener.setBundleContext(bundleContext);
         importServiceListener.init();
         register(ListenerHook.class, importServiceListener);
@@ -99,11 +127,13 @@ public class Activator extends BaseActivator {
         exportServiceListener.setClusterManager(clusterManager);
         exportServiceListener.setEventTransportFactory(eventTransportFactory);
         exportServiceListener.setBundleContext(bundleContext);
+        exportServiceListener.setExportedServiceTrackers(exportedServiceTrackers);
         exportServiceListener.init();
 
         LOGGER.debug("CELLAR DOSGI: start removed nodes service tracker");
         removedNodeServiceTracker = new RemovedNodeServiceTracker();
         removedNodeServiceTracker.setClusterManager(clusterManager);
+        removedNodeServiceTracker.setResultProducerCache(resultProducerCache);
         removedNodeServiceTracker.init();
 
         LOGGER.debug("CELLAR DOSGI: register MBean");
@@ -132,10 +162,22 @@ public class Activator extends BaseActivator {
             exportServiceListener.destroy();
             exportServiceListener = null;
         }
+        if (exportedServiceTrackers != null) {
+            exportedServiceTrackers.destroy();
+            exportedServiceTrackers = null;
+        }
         if (importServiceListener != null) {
             importServiceListener.destroy();
             importServiceListener = null;
         }
+        if (resultInbox != null) {
+            resultInbox.destroy();
+            resultInbox = null;
+        }
+        if (endpointIndex != null) {
+            endpointIndex.destroy();
+            endpointIndex = null;
+        }
     }
 
 }
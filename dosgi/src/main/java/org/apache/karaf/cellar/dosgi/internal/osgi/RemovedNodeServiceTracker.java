@@ -14,9 +14,11 @@
 package org.apache.karaf.cellar.dosgi.internal.osgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterNodeListener;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.dosgi.Constants;
 import org.apache.karaf.cellar.dosgi.EndpointDescription;
+import org.apache.karaf.cellar.dosgi.ResultProducerCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,13 +26,14 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Listener called when a new service is exported.
  */
-public class RemovedNodeServiceTracker implements Runnable {
+public class RemovedNodeServiceTracker implements ClusterNodeListener, Runnable {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(RemovedNodeServiceTracker.class);
 
@@ -38,17 +41,39 @@ public class RemovedNodeServiceTracker implements Runnable {
 
     private Map<String, EndpointDescription> remoteEndpoints;
 
+    private ResultProducerCache resultProducerCache;
+
     private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
+    private String nodeListenerId;
+
     public void init() {
         remoteEndpoints = clusterManager.getMap(Constants.REMOTE_ENDPOINTS);
+        nodeListenerId = clusterManager.addNodeListener(this);
         scheduler.scheduleWithFixedDelay(this, 10, 10, TimeUnit.SECONDS);
     }
 
     public void destroy() {
+        clusterManager.removeNodeListener(nodeListenerId);
+        nodeListenerId = null;
         scheduler.shutdown();
     }
 
+    @Override
+    public void nodeAdded(Node node) {
+        // nothing to do
+    }
+
+    @Override
+    public void nodeRemoved(Node node) {
+        // clean the endpoints of the removed node now, without waiting for the next run
+        try {
+            scheduler.execute(this);
+        } catch (RejectedExecutionException e) {
+            // the tracker is stopped
+        }
+    }
+
     public ClusterManager getClusterManager() {
         return clusterManager;
     }
@@ -57,12 +82,24 @@ public class RemovedNodeServiceTracker implements Runnable {
         this.clusterManager = clusterManager;
     }
 
+    public ResultProducerCache getResultProducerCache() {
+        return resultProducerCache;
+    }
+
+    public void setResultProducerCache(ResultProducerCache resultProducerCache) {
+        this.resultProducerCache = resultProducerCache;
+    }
+
 
     @Override
     public void run() {
         LOGGER.trace("CELLAR DOSGI: running the service tracker task");
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         try {
+            if (resultProducerCache != null && resultProducerCache.size() > 0) {
+                // remove the result producers of the nodes which left the cluster
+                resultProducerCache.retainNodes(clusterManager.listNodes());
+            }
             if (!remoteEndpoints.isEmpty()) {
                 LOGGER.trace("CELLAR DOSGI: found {} remote endpoints", remoteEndpoints.size());
                 Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
@@ -82,7 +119,7 @@ public class RemovedNodeServiceTracker implements Runnable {
                     for (Node n : nodes) {
                         if (!activeNodes.contains(n)) {
                             LOGGER.debug("CELLAR DOSGI: removing node with id {} since it is not active", n.getId());
-                            endpointDescription.getNodes().remove(n);
+                            endpointDescription.removeNode(n);
                             endpointChanged = true;
                         }
                     }
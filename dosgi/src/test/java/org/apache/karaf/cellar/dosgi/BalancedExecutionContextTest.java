@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.BasicCommandStore;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
+import org.apache.karaf.cellar.dosgi.balancer.RoundRobinStrategy;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class BalancedExecutionContextTest {
+
+    private static final String ENDPOINT_ID = "org.foo.Service" + Constants.SEPARATOR + "1.0.0";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testRemoveNode() throws Exception {
+        Node node1 = node("node1");
+        Node node2 = node("node2");
+        RemoteServiceCall call = new RemoteServiceCall("call");
+
+        EventProducer producer = EasyMock.createMock(EventProducer.class);
+        producer.produce(call);
+        EasyMock.expectLastCall().times(2);
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventProducer(ExportServiceListener.getRequestInboxName("node2"), Boolean.FALSE))
+                .andReturn(producer).once();
+        EasyMock.replay(producer, eventTransportFactory);
+
+        BalancedExecutionContext executionContext = new BalancedExecutionContext(ENDPOINT_ID, new RoundRobinStrategy(),
+                eventTransportFactory, null, scheduler);
+        executionContext.setNodes(Arrays.asList(node1, node2));
+        // the node is removed by ID, the cluster notifies a new node instance
+        executionContext.removeNode(node("node1"));
+        Assert.assertEquals(Arrays.asList(node2), executionContext.getNodes());
+
+        // the calls are only sent to the remaining node
+        executionContext.post(call);
+        executionContext.post(call);
+        EasyMock.verify(producer, eventTransportFactory);
+    }
+
+    @Test
+    public void testPostCircuitBreaker() throws Exception {
+        Node node = node("node1");
+        EventProducer producer = EasyMock.createMock(EventProducer.class);
+        producer.produce(EasyMock.anyObject());
+        EasyMock.expectLastCall().andThrow(new IllegalStateException("failure")).once();
+        producer.produce(EasyMock.anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventProducer(EasyMock.anyString(), EasyMock.eq(Boolean.FALSE))).andReturn(producer).anyTimes();
+        EasyMock.replay(producer, eventTransportFactory);
+
+        BalancedExecutionContext executionContext = new BalancedExecutionContext(ENDPOINT_ID, new RoundRobinStrategy(),
+                eventTransportFactory, new BasicCommandStore(), scheduler);
+        executionContext.setCircuitFailures(1);
+        executionContext.setCircuitOpenDuration(0);
+        executionContext.setNodes(Arrays.asList(node));
+
+        // the failed call opens the circuit breaker of the node
+        try {
+            executionContext.submit(asyncCall("failed"));
+            Assert.fail("the call should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the fire-and-forget calls don't take the probe call of the half-open circuit breaker
+        executionContext.post(new RemoteServiceCall("post1"));
+        executionContext.post(new RemoteServiceCall("post2"));
+        RemoteServiceCall probe = asyncCall("probe");
+        executionContext.submit(probe);
+        try {
+            executionContext.post(new RemoteServiceCall("post3"));
+            Assert.fail("the circuit breaker should be half-open with a probe call in flight");
+        } catch (ProducerNotFoundException e) {
+            // expected
+        }
+
+        // the probe call response closes the circuit breaker
+        probe.getFuture().complete(null);
+        executionContext.post(new RemoteServiceCall("post4"));
+        EasyMock.verify(producer);
+    }
+
+    private static RemoteServiceCall asyncCall(String id) {
+        RemoteServiceCall call = new RemoteServiceCall(id);
+        call.setFuture(new CompletableFuture<Object>());
+        return call;
+    }
+
+    private static Node node(final String id) {
+        return new Node() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getHost() {
+                return null;
+            }
+
+            @Override
+            public int getPort() {
+                return 0;
+            }
+
+            @Override
+            public String getAlias() {
+                return null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpen() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.isCallPermitted());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpen() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+        circuitBreaker.onFailure();
+        // the open duration is expired, a single probe call is allowed
+        Assert.assertTrue(circuitBreaker.isCallPermitted());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+    }
+
+}
@@ -13,6 +13,8 @@
  */
 package org.apache.karaf.cellar.dosgi;
 
+import org.apache.karaf.cellar.core.Node;
+import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -33,4 +35,54 @@ public class EndpointDescriptionTest {
         Assert.assertTrue(endpointDescription2.matches(testEndpointFilter));
     }
 
+    @Test
+    public void testOneWay() throws Exception {
+        Node node1 = node("node1");
+        Node node2 = node("node2");
+        EndpointDescription endpointDescription = new EndpointDescription(objectClass + Constants.SEPARATOR + "1.0.0", node1);
+        endpointDescription.setOneWay(node1, true);
+        Assert.assertEquals(Boolean.TRUE, endpointDescription.getProperties().get(Constants.ONE_WAY));
+        Assert.assertFalse(endpointDescription.isOneWayConflict());
+
+        // the nodes disagree, whatever the export order
+        endpointDescription.getNodes().add(node2);
+        endpointDescription.setOneWay(node2, false);
+        Assert.assertNull(endpointDescription.getProperties().get(Constants.ONE_WAY));
+        Assert.assertTrue(endpointDescription.isOneWayConflict());
+        endpointDescription.setOneWay(node1, true);
+        Assert.assertNull(endpointDescription.getProperties().get(Constants.ONE_WAY));
+
+        // all nodes agree
+        endpointDescription.setOneWay(node2, true);
+        Assert.assertEquals(Boolean.TRUE, endpointDescription.getProperties().get(Constants.ONE_WAY));
+
+        // the remaining node decides
+        endpointDescription.setOneWay(node2, false);
+        Assert.assertTrue(endpointDescription.removeNode(node2));
+        Assert.assertEquals(Boolean.TRUE, endpointDescription.getProperties().get(Constants.ONE_WAY));
+        Assert.assertFalse(endpointDescription.isOneWayConflict());
+    }
+
+    @Test
+    public void testResultInbox() throws Exception {
+        Node node1 = node("node1");
+        Node node2 = node("node2");
+        EndpointDescription endpointDescription = new EndpointDescription(objectClass + Constants.SEPARATOR + "1.0.0", node1);
+        endpointDescription.setResultInbox(node1);
+        // node2 is a node of the previous version
+        endpointDescription.getNodes().add(node2);
+        Assert.assertTrue(endpointDescription.isResultInbox(node1));
+        Assert.assertFalse(endpointDescription.isResultInbox(node2));
+
+        endpointDescription.removeNode(node1);
+        Assert.assertFalse(endpointDescription.isResultInbox(node1));
+    }
+
+    private static Node node(String id) {
+        Node node = EasyMock.createNiceMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn(id).anyTimes();
+        EasyMock.replay(node);
+        return node;
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class EndpointIndexTest {
+
+    @Test
+    public void testServiceClass() throws Exception {
+        Assert.assertEquals("my.Service", EndpointIndex.getServiceClass("(objectClass=my.Service)"));
+        Assert.assertEquals("my.Service", EndpointIndex.getServiceClass("(&(objectClass=my.Service)(foo=bar))"));
+        Assert.assertEquals("my.Service", EndpointIndex.getServiceClass("(&(&(foo=bar)(objectclass=my.Service))(!(frameworkUUID=node)))"));
+        Assert.assertNull(EndpointIndex.getServiceClass("(|(objectClass=my.Service)(foo=bar))"));
+        Assert.assertNull(EndpointIndex.getServiceClass("(objectClass=my.*)"));
+        Assert.assertNull(EndpointIndex.getServiceClass("(!(objectClass=my.Service))"));
+        Assert.assertNull(EndpointIndex.getServiceClass(null));
+    }
+
+    @Test
+    public void testEndpoints() throws Exception {
+        EndpointIndex index = new EndpointIndex();
+        String id1 = "my.Service" + Constants.SEPARATOR + "1.0.0";
+        String id2 = "my.Other" + Constants.SEPARATOR + "1.0.0";
+        index.entryUpdated(id1, new EndpointDescription(id1, null));
+        index.entryUpdated(id2, new EndpointDescription(id2, null));
+
+        List<EndpointDescription> matches = index.getEndpoints("(&(objectClass=my.Service))");
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals(id1, matches.get(0).getId());
+        Assert.assertEquals(2, index.getEndpoints("(objectClass=my.*)").size());
+
+        index.entryRemoved(id1);
+        Assert.assertTrue(index.getEndpoints("(objectClass=my.Service)").isEmpty());
+        Assert.assertNotNull(index.get(id2));
+
+        index.mapCleared();
+        Assert.assertNull(index.get(id2));
+    }
+
+    @Test
+    public void testInit() throws Exception {
+        final EndpointIndex index = new EndpointIndex();
+        final String id1 = "my.Service" + Constants.SEPARATOR + "1.0.0";
+        final String id2 = "my.Other" + Constants.SEPARATOR + "1.0.0";
+        final EndpointDescription updated = new EndpointDescription(id1, null);
+        Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>() {
+            private boolean notified;
+
+            @Override
+            public Set<Map.Entry<String, EndpointDescription>> entrySet() {
+                // the entries change while the endpoints are loaded
+                if (!notified) {
+                    notified = true;
+                    index.entryUpdated(id1, updated);
+                    index.entryRemoved(id2);
+                }
+                return super.entrySet();
+            }
+        };
+        remoteEndpoints.put(id1, new EndpointDescription(id1, null));
+        remoteEndpoints.put(id2, new EndpointDescription(id2, null));
+        ClusterManager clusterManager = EasyMock.createNiceMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.addMapListener(Constants.REMOTE_ENDPOINTS, index)).andReturn("registration").once();
+        EasyMock.expect(clusterManager.getMap(Constants.REMOTE_ENDPOINTS)).andReturn(remoteEndpoints).anyTimes();
+        EasyMock.replay(clusterManager);
+        index.setClusterManager(clusterManager);
+
+        index.init();
+        // the loaded entries don't override the notified ones
+        Assert.assertSame(updated, index.get(id1));
+        Assert.assertNull(index.get(id2));
+        Assert.assertTrue(index.getEndpoints("(objectClass=my.Other)").isEmpty());
+
+        // the changes notified after the load are applied
+        index.entryUpdated(id2, new EndpointDescription(id2, null));
+        Assert.assertNotNull(index.get(id2));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        EndpointIndex index = new EndpointIndex();
+        String id1 = "my.Service" + Constants.SEPARATOR + "1.0.0";
+        String id2 = "my.Other" + Constants.SEPARATOR + "1.0.0";
+        Map<String, EndpointDescription> remoteEndpoints = new HashMap<String, EndpointDescription>();
+        remoteEndpoints.put(id1, new EndpointDescription(id1, null));
+        // the map changes are not notified
+        ClusterManager clusterManager = EasyMock.createNiceMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getMap(Constants.REMOTE_ENDPOINTS)).andReturn(remoteEndpoints).anyTimes();
+        EasyMock.replay(clusterManager);
+        index.setClusterManager(clusterManager);
+
+        index.init();
+        Assert.assertNotNull(index.get(id1));
+        remoteEndpoints.remove(id1);
+        remoteEndpoints.put(id2, new EndpointDescription(id2, null));
+        index.reload();
+        Assert.assertNull(index.get(id1));
+        Assert.assertEquals(1, index.getEndpoints("(objectClass=my.Other)").size());
+    }
+
+}
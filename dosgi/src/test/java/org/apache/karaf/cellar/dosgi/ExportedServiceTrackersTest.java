@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+
+public class ExportedServiceTrackersTest {
+
+    private static final String SERVICE_CLASS = "org.foo.Service";
+    private static final Version V1 = new Version(1, 0, 0);
+    private static final Version V2 = new Version(2, 0, 0);
+
+    private final Object service1 = new Object();
+    private final Object service2 = new Object();
+
+    private ExportedServiceTrackers trackers;
+
+    @Before
+    public void setUp() throws Exception {
+        ServiceReference reference1 = reference(V1);
+        ServiceReference reference2 = reference(V2);
+        BundleContext bundleContext = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.expect(bundleContext.createFilter(EasyMock.anyString())).andReturn(EasyMock.createNiceMock(Filter.class)).anyTimes();
+        EasyMock.expect(bundleContext.getServiceReferences(EasyMock.isNull(String.class), EasyMock.anyString()))
+                .andReturn(new ServiceReference[]{ reference1, reference2 }).anyTimes();
+        EasyMock.expect(bundleContext.getService(reference1)).andReturn(service1).anyTimes();
+        EasyMock.expect(bundleContext.getService(reference2)).andReturn(service2).anyTimes();
+        EasyMock.replay(bundleContext);
+        trackers = new ExportedServiceTrackers();
+        trackers.setBundleContext(bundleContext);
+    }
+
+    private static ServiceReference reference(Version version) {
+        Bundle bundle = EasyMock.createNiceMock(Bundle.class);
+        EasyMock.expect(bundle.getVersion()).andReturn(version).anyTimes();
+        ServiceReference reference = EasyMock.createNiceMock(ServiceReference.class);
+        EasyMock.expect(reference.getBundle()).andReturn(bundle).anyTimes();
+        EasyMock.replay(bundle, reference);
+        return reference;
+    }
+
+    private static String endpointId(Version version) {
+        return SERVICE_CLASS + Constants.SEPARATOR + version;
+    }
+
+    @Test
+    public void testEndpointVersions() throws Exception {
+        trackers.open(endpointId(V1), SERVICE_CLASS, V1);
+        trackers.open(endpointId(V2), SERVICE_CLASS, V2);
+        // the same interface exported in two versions, each endpoint gets the service of its version
+        Assert.assertSame(service1, trackers.getService(endpointId(V1)));
+        Assert.assertSame(service2, trackers.getService(endpointId(V2)));
+
+        trackers.close(endpointId(V1));
+        Assert.assertNull(trackers.getService(endpointId(V1)));
+        Assert.assertSame(service2, trackers.getService(endpointId(V2)));
+        Assert.assertNull(trackers.getService(null));
+        trackers.destroy();
+    }
+
+    @Test
+    public void testExportsCount() throws Exception {
+        trackers.open(endpointId(V1), SERVICE_CLASS, V1);
+        trackers.open(endpointId(V1), SERVICE_CLASS, V1);
+        trackers.close(endpointId(V1));
+        // still exported once
+        Assert.assertSame(service1, trackers.getService(endpointId(V1)));
+        trackers.close(endpointId(V1));
+        Assert.assertNull(trackers.getService(endpointId(V1)));
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the remote service calls dispatch: method lookup and reflective invocation for each call, against the
+ * cached method handles.
+ * Not run by the build, run it with the test classpath: {@code java org.apache.karaf.cellar.dosgi.MethodHandleCacheBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodHandleCacheBenchmark {
+
+    public static class EchoService {
+
+        public String echo(String message, Integer count) {
+            return message;
+        }
+
+    }
+
+    private final MethodHandleCache cache = new MethodHandleCache();
+    private final Class[] classes = new Class[]{ String.class, Integer.class };
+
+    private EchoService service;
+    private Object[] arguments;
+
+    @Setup
+    public void setUp() {
+        service = new EchoService();
+        arguments = new Object[]{ "message", 1 };
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        Method method = MethodHandleCache.getMethod(service.getClass(), "echo", classes);
+        return method.invoke(service, arguments);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Exception {
+        MethodHandle handle = cache.getMethodHandle(service.getClass(), "echo", classes);
+        return MethodHandleCache.invoke(handle, service, arguments);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MethodHandleCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
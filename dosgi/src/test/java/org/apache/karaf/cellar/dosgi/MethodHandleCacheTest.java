@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MethodHandleCacheTest {
+
+    private MethodHandleCache cache = new MethodHandleCache();
+
+    @Test
+    public void testInvoke() throws Throwable {
+        List<String> service = new ArrayList<String>();
+
+        MethodHandle add = cache.getMethodHandle(service.getClass(), "add", new Class[]{ String.class });
+        Object result = add.invokeExact((Object) service, new Object[]{ "test" });
+        Assert.assertEquals(Boolean.TRUE, result);
+        Assert.assertSame(add, cache.getMethodHandle(service.getClass(), "add", new Class[]{ String.class }));
+
+        // primitive parameter and no parameter
+        MethodHandle get = cache.getMethodHandle(service.getClass(), "get", new Class[]{ Integer.class });
+        Assert.assertEquals("test", get.invokeExact((Object) service, new Object[]{ 0 }));
+        MethodHandle size = cache.getMethodHandle(service.getClass(), "size", new Class[0]);
+        Assert.assertEquals(1, size.invokeExact((Object) service, new Object[0]));
+
+        // void method
+        MethodHandle clear = cache.getMethodHandle(service.getClass(), "clear", new Class[0]);
+        Assert.assertNull(clear.invokeExact((Object) service, new Object[0]));
+        Assert.assertTrue(service.isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvokeException() throws Exception {
+        List<String> service = new ArrayList<String>();
+        MethodHandle get = cache.getMethodHandle(service.getClass(), "get", new Class[]{ Integer.class });
+        // the exception thrown by the method is propagated as is
+        MethodHandleCache.invoke(get, service, new Object[]{ 1 });
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNoSuchMethod() throws Exception {
+        cache.getMethodHandle(ArrayList.class, "add", new Class[]{ String.class, String.class });
+    }
+
+}
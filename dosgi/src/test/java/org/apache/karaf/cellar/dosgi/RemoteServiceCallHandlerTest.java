@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RemoteServiceCallHandlerTest {
+
+    private final FailingList service = new FailingList();
+
+    private Node node;
+    private BundleContext bundleContext;
+    private RemoteServiceCallHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        node = EasyMock.createNiceMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn("node1").anyTimes();
+        ServiceReference reference = EasyMock.createNiceMock(ServiceReference.class);
+        bundleContext = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.expect(bundleContext.getServiceReferences(List.class.getName(), null)).andReturn(new ServiceReference[]{ reference }).anyTimes();
+        EasyMock.expect(bundleContext.getService(reference)).andReturn(service).anyTimes();
+        EasyMock.replay(node, reference, bundleContext);
+
+        handler = new RemoteServiceCallHandler();
+        handler.setBundleContext(bundleContext);
+    }
+
+    @Test
+    public void testInvokeOneWay() throws Exception {
+        // no result is sent back
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.replay(eventTransportFactory);
+        handler.setEventTransportFactory(eventTransportFactory);
+
+        handler.handle(call("add", true, "test"));
+        Assert.assertEquals(Arrays.asList("test"), service);
+
+        // the exception thrown by the service is only logged
+        handler.handle(call("get", true, 1));
+        EasyMock.verify(eventTransportFactory);
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        Capture<RemoteServiceResult> result = EasyMock.newCapture();
+        EventProducer producer = EasyMock.createMock(EventProducer.class);
+        producer.produce(EasyMock.capture(result));
+        EasyMock.expectLastCall().once();
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventProducer(ResultInbox.getName("node1"), false)).andReturn(producer).once();
+        EasyMock.replay(producer, eventTransportFactory);
+        handler.setEventTransportFactory(eventTransportFactory);
+
+        handler.handle(call("add", false, "test"));
+        EasyMock.verify(producer, eventTransportFactory);
+        Assert.assertEquals(Boolean.TRUE, result.getValue().getResult());
+        Assert.assertEquals(Arrays.asList("test"), service);
+    }
+
+    @Test
+    public void testInvokeLegacy() throws Exception {
+        EventProducer producer = EasyMock.createMock(EventProducer.class);
+        producer.produce(EasyMock.anyObject(RemoteServiceResult.class));
+        EasyMock.expectLastCall().once();
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventProducer(ResultInbox.getLegacyName("node1", List.class.getName() + Constants.SEPARATOR + "1.0.0"), false)).andReturn(producer).once();
+        EasyMock.replay(producer, eventTransportFactory);
+        handler.setEventTransportFactory(eventTransportFactory);
+
+        // a caller of the previous version doesn't set the flag, the result is sent to its result queue of the endpoint
+        RemoteServiceCall call = call("add", false, "test");
+        call.setResultInbox(false);
+        handler.handle(call);
+        EasyMock.verify(producer, eventTransportFactory);
+    }
+
+    @Test
+    public void testInvokeError() throws Exception {
+        Capture<RemoteServiceResult> result = EasyMock.newCapture();
+        EventProducer producer = EasyMock.createMock(EventProducer.class);
+        producer.produce(EasyMock.capture(result));
+        EasyMock.expectLastCall().once();
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventProducer(ResultInbox.getName("node1"), false)).andReturn(producer).once();
+        EasyMock.replay(producer, eventTransportFactory);
+        handler.setEventTransportFactory(eventTransportFactory);
+
+        // the error thrown by the service is sent back
+        handler.handle(call("clear", false));
+        EasyMock.verify(producer, eventTransportFactory);
+        Assert.assertTrue(result.getValue().getResult() instanceof RemoteServiceInvocationException);
+        Assert.assertTrue(((RemoteServiceInvocationException) result.getValue().getResult()).getCause() instanceof AssertionError);
+    }
+
+    private RemoteServiceCall call(String method, boolean oneWay, Object... arguments) {
+        RemoteServiceCall call = new RemoteServiceCall("call");
+        call.setEndpointId(List.class.getName() + Constants.SEPARATOR + "1.0.0");
+        call.setServiceClass(List.class.getName());
+        call.setMethod(method);
+        call.setArguments(Arrays.asList(arguments));
+        call.setOneWay(oneWay);
+        call.setResultInbox(true);
+        call.setSourceNode(node);
+        return call;
+    }
+
+    public static class FailingList extends ArrayList<String> {
+
+        @Override
+        public void clear() {
+            throw new AssertionError("failure");
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.exception.RemoteServiceInvocationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class RemoteServiceCallTest {
+
+    @Test
+    public void testCompletionExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion"));
+        try {
+            RemoteServiceCall call = new RemoteServiceCall("call");
+            call.setFuture(new CompletableFuture<>());
+            call.setCompletionExecutor(executor);
+            CompletableFuture<String> thread = call.getFuture().thenApply(value -> Thread.currentThread().getName());
+
+            RemoteServiceResult result = new RemoteServiceResult("call");
+            result.setResult("value");
+            call.addResults(result);
+
+            Assert.assertEquals("completion", thread.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals("value", call.getFuture().get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompletionException() throws Exception {
+        RemoteServiceCall call = new RemoteServiceCall("call");
+        call.setFuture(new CompletableFuture<>());
+        call.setCompletionExecutor(Runnable::run);
+
+        RemoteServiceResult result = new RemoteServiceResult("call");
+        IllegalStateException exception = new IllegalStateException("failure");
+        result.setResult(new RemoteServiceInvocationException(exception));
+        call.addResults(result);
+
+        Assert.assertTrue(call.getFuture().isCompletedExceptionally());
+        try {
+            call.getFuture().get();
+            Assert.fail("the future should be completed exceptionally");
+        } catch (ExecutionException e) {
+            Assert.assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void testCompletionWithoutExecutor() throws Exception {
+        RemoteServiceCall call = new RemoteServiceCall("call");
+        call.setFuture(new CompletableFuture<>());
+
+        RemoteServiceResult result = new RemoteServiceResult("call");
+        result.setResult("value");
+        call.addResults(result);
+
+        Assert.assertTrue(call.getFuture().isDone());
+        Assert.assertEquals("value", call.getFuture().get());
+    }
+
+    @Test
+    public void testCompletionStoppedExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        RemoteServiceCall call = new RemoteServiceCall("call");
+        call.setFuture(new CompletableFuture<>());
+        call.setCompletionExecutor(executor);
+
+        RemoteServiceResult result = new RemoteServiceResult("call");
+        result.setResult("value");
+        call.addResults(result);
+
+        Assert.assertEquals("value", call.getFuture().get());
+    }
+
+}
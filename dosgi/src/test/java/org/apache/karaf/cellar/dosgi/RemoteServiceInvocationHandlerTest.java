@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.command.ExecutionContext;
+import org.apache.karaf.cellar.core.command.Result;
+import org.apache.karaf.cellar.core.exception.ProducerNotFoundException;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RemoteServiceInvocationHandlerTest {
+
+    private static final String ENDPOINT_ID = List.class.getName() + Constants.SEPARATOR + "1.0.0";
+
+    private final List<Object> localService = new ArrayList<Object>();
+    private final TestExecutionContext executionContext = new TestExecutionContext();
+
+    private Method add;
+    private ClusterManager clusterManager;
+
+    @Before
+    public void setUp() throws Exception {
+        add = List.class.getMethod("add", Object.class);
+        clusterManager = EasyMock.createNiceMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.generateId()).andReturn("call").anyTimes();
+        EasyMock.replay(clusterManager);
+    }
+
+    @Test
+    public void testDefaultPolicy() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, null);
+        executionContext.result = Boolean.TRUE;
+        Assert.assertEquals(Boolean.TRUE, invoke(handler, "remote"));
+        Assert.assertEquals(1, executionContext.calls);
+        Assert.assertTrue(localService.isEmpty());
+    }
+
+    @Test
+    public void testPrefer() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, Constants.LOCAL_PREFER);
+        Assert.assertEquals(Boolean.TRUE, invoke(handler, "local"));
+        Assert.assertEquals(0, executionContext.calls);
+        Assert.assertEquals(1, localService.size());
+    }
+
+    @Test
+    public void testPreferOtherClassSpace() throws Exception {
+        // the local service doesn't implement the imported interface, the remote nodes are called
+        RemoteServiceInvocationHandler handler = handler(new Object(), Constants.LOCAL_PREFER);
+        executionContext.result = Boolean.TRUE;
+        Assert.assertEquals(Boolean.TRUE, invoke(handler, "remote"));
+        Assert.assertEquals(1, executionContext.calls);
+    }
+
+    @Test
+    public void testFallbackNoProducer() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, Constants.LOCAL_FALLBACK);
+        executionContext.noProducer = true;
+        Assert.assertEquals(Boolean.TRUE, invoke(handler, "local"));
+        Assert.assertEquals(1, executionContext.calls);
+        Assert.assertEquals(1, localService.size());
+    }
+
+    @Test
+    public void testFallbackNoAnswer() throws Exception {
+        // the remote node may have executed the call, it's not called again locally
+        RemoteServiceInvocationHandler handler = handler(localService, Constants.LOCAL_FALLBACK);
+        executionContext.answer = false;
+        Assert.assertNull(invoke(handler, "remote"));
+        Assert.assertEquals(1, executionContext.calls);
+        Assert.assertTrue(localService.isEmpty());
+    }
+
+    @Test
+    public void testFallbackCircuitOpen() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, Constants.LOCAL_FALLBACK);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60000);
+        circuitBreaker.onFailure();
+        handler.setCircuitBreaker(circuitBreaker);
+        Assert.assertEquals(Boolean.TRUE, invoke(handler, "local"));
+        Assert.assertEquals(0, executionContext.calls);
+        Assert.assertEquals(1, localService.size());
+    }
+
+    @Test
+    public void testOneWayCircuitBreaker() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, null);
+        handler.setOneWay(true);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+        circuitBreaker.onFailure();
+        handler.setCircuitBreaker(circuitBreaker);
+
+        try {
+            Assert.assertNull(handler.invoke(null, List.class.getMethod("clear"), null));
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+        Assert.assertEquals(1, executionContext.calls);
+        // the one-way call doesn't report a response, the probe call is still available
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test(expected = ProducerNotFoundException.class)
+    public void testExcludeNoProducer() throws Exception {
+        RemoteServiceInvocationHandler handler = handler(localService, Constants.LOCAL_EXCLUDE);
+        executionContext.noProducer = true;
+        invoke(handler, "remote");
+    }
+
+    private Object invoke(RemoteServiceInvocationHandler handler, Object argument) throws Exception {
+        try {
+            return handler.invoke(null, add, new Object[]{ argument });
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    private RemoteServiceInvocationHandler handler(final Object service, String localPolicy) {
+        RemoteServiceInvocationHandler handler = new RemoteServiceInvocationHandler(ENDPOINT_ID, List.class.getName(), clusterManager, executionContext);
+        if (localPolicy != null) {
+            handler.setLocalPolicy(localPolicy);
+        }
+        handler.setExportedServiceTrackers(new ExportedServiceTrackers() {
+            @Override
+            public Object getService(String endpointId) {
+                return ENDPOINT_ID.equals(endpointId) ? service : null;
+            }
+        });
+        return handler;
+    }
+
+    private static Node node(String id) {
+        Node node = EasyMock.createNiceMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn(id).anyTimes();
+        EasyMock.replay(node);
+        return node;
+    }
+
+    private static class TestExecutionContext implements ExecutionContext {
+
+        private final Node node = node("node1");
+
+        private boolean noProducer;
+        private boolean answer = true;
+        private Object result;
+        private int calls;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends Result, C extends Command<R>> Map<Node, R> execute(C command) throws Exception {
+            calls++;
+            if (noProducer) {
+                throw new ProducerNotFoundException("No node available");
+            }
+            Map<Node, R> results = new HashMap<Node, R>();
+            if (answer) {
+                RemoteServiceResult remoteServiceResult = new RemoteServiceResult(command.getId());
+                remoteServiceResult.setResult(result);
+                results.put(node, (R) remoteServiceResult);
+            }
+            return results;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.command.BasicCommandStore;
+import org.apache.karaf.cellar.core.command.Command;
+import org.apache.karaf.cellar.core.control.BasicSwitch;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.event.Event;
+import org.apache.karaf.cellar.core.event.EventConsumer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultInboxTest {
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<TestConsumer> consumers = new ArrayList<TestConsumer>();
+    private final BasicCommandStore commandStore = new BasicCommandStore();
+
+    private ResultInbox inbox;
+
+    @Before
+    public void setUp() throws Exception {
+        Node node = EasyMock.createNiceMock(Node.class);
+        EasyMock.expect(node.getId()).andReturn("node1").anyTimes();
+        ClusterManager clusterManager = EasyMock.createNiceMock(ClusterManager.class);
+        EasyMock.expect(clusterManager.getNode()).andReturn(node).anyTimes();
+        EventTransportFactory eventTransportFactory = EasyMock.createMock(EventTransportFactory.class);
+        EasyMock.expect(eventTransportFactory.getEventConsumer(EasyMock.anyString(), EasyMock.eq(Boolean.FALSE))).andAnswer(() -> {
+            names.add((String) EasyMock.getCurrentArguments()[0]);
+            TestConsumer consumer = new TestConsumer();
+            consumers.add(consumer);
+            return consumer;
+        }).anyTimes();
+        EasyMock.replay(node, clusterManager, eventTransportFactory);
+
+        inbox = new ResultInbox();
+        inbox.setClusterManager(clusterManager);
+        inbox.setEventTransportFactory(eventTransportFactory);
+        inbox.setCommandStore(commandStore);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        inbox.destroy();
+    }
+
+    @Test
+    public void testResize() throws Exception {
+        inbox.init();
+        Assert.assertEquals(1, inbox.size());
+        Assert.assertEquals(ResultInbox.getName("node1"), names.get(0));
+
+        // the consumers are added with the pending calls, up to the maximum
+        pending(2 * ResultInbox.CALLS_PER_CONSUMER);
+        inbox.run();
+        Assert.assertEquals(3, inbox.size());
+        pending(100 * ResultInbox.CALLS_PER_CONSUMER);
+        inbox.run();
+        Assert.assertEquals(Constants.DEFAULT_RESULT_CONSUMERS, inbox.size());
+        Assert.assertEquals(Constants.DEFAULT_RESULT_CONSUMERS, consumers.size());
+
+        // the consumers are stopped one at a time, and reused
+        commandStore.getPending().clear();
+        while (inbox.size() > 1) {
+            inbox.run();
+        }
+        Assert.assertTrue(consumers.get(0).isConsuming());
+        for (int i = 1; i < consumers.size(); i++) {
+            Assert.assertFalse(consumers.get(i).isConsuming());
+        }
+        pending(ResultInbox.CALLS_PER_CONSUMER);
+        inbox.run();
+        Assert.assertEquals(2, inbox.size());
+        Assert.assertTrue(consumers.get(1).isConsuming());
+        Assert.assertEquals(Constants.DEFAULT_RESULT_CONSUMERS, consumers.size());
+
+        inbox.destroy();
+        for (TestConsumer consumer : consumers) {
+            Assert.assertFalse(consumer.isConsuming());
+        }
+    }
+
+    @Test
+    public void testLegacy() throws Exception {
+        inbox.init();
+        inbox.openLegacy("org.foo.Service/1.0.0");
+        inbox.openLegacy("org.foo.Service/1.0.0");
+        Assert.assertEquals(1, inbox.legacySize());
+        Assert.assertTrue(names.contains(ResultInbox.getLegacyName("node1", "org.foo.Service/1.0.0")));
+        TestConsumer legacy = consumers.get(consumers.size() - 1);
+        Assert.assertTrue(legacy.isConsuming());
+
+        inbox.closeLegacy("org.foo.Service/1.0.0");
+        Assert.assertEquals(0, inbox.legacySize());
+        Assert.assertFalse(legacy.isConsuming());
+    }
+
+    private void pending(int count) {
+        commandStore.getPending().clear();
+        for (int i = 0; i < count; i++) {
+            commandStore.getPending().put("call" + i, new Command("call" + i));
+        }
+    }
+
+    private static class TestConsumer implements EventConsumer<Event> {
+
+        private final Switch eventSwitch = new BasicSwitch("test");
+        private boolean consuming = true;
+
+        @Override
+        public void consume(Event event) {
+            // nothing to do
+        }
+
+        @Override
+        public void start() {
+            consuming = true;
+        }
+
+        @Override
+        public void stop() {
+            consuming = false;
+        }
+
+        @Override
+        public Boolean isConsuming() {
+            return consuming;
+        }
+
+        @Override
+        public Switch getSwitch() {
+            return eventSwitch;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi;
+
+import org.apache.karaf.cellar.core.Node;
+import org.apache.karaf.cellar.core.control.Switch;
+import org.apache.karaf.cellar.core.event.Event;
+import org.apache.karaf.cellar.core.event.EventConsumer;
+import org.apache.karaf.cellar.core.event.EventProducer;
+import org.apache.karaf.cellar.core.event.EventTransportFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ResultProducerCacheTest {
+
+    private final List<String> created = new ArrayList<String>();
+
+    private ResultProducerCache createCache(int maxSize) {
+        ResultProducerCache cache = new ResultProducerCache(maxSize);
+        cache.setEventTransportFactory(new EventTransportFactory() {
+            @Override
+            public EventProducer getEventProducer(String name, Boolean pubsub) {
+                created.add(name);
+                return new EventProducer() {
+                    @Override
+                    public void produce(Event event) {
+                        // nothing to do
+                    }
+                    @Override
+                    public Switch getSwitch() {
+                        return null;
+                    }
+                };
+            }
+
+            @Override
+            public EventConsumer getEventConsumer(String name, Boolean pubsub) {
+                return null;
+            }
+        });
+        return cache;
+    }
+
+    @Test
+    public void testProducerReuse() throws Exception {
+        ResultProducerCache cache = createCache(10);
+        EventProducer producer = cache.getProducer("node1");
+        Assert.assertSame(producer, cache.getProducer("node1"));
+        Assert.assertNotSame(producer, cache.getProducer("node2"));
+        Assert.assertEquals(2, created.size());
+        Assert.assertEquals(Constants.RESULT_PREFIX + Constants.SEPARATOR + "node1", created.get(0));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ResultProducerCache cache = createCache(2);
+        cache.getProducer("node1");
+        cache.getProducer("node2");
+        // node1 is the most recently used
+        cache.getProducer("node1");
+        cache.getProducer("node3");
+        Assert.assertEquals(2, cache.size());
+        cache.getProducer("node1");
+        Assert.assertEquals(3, created.size());
+        cache.getProducer("node2");
+        Assert.assertEquals(4, created.size());
+    }
+
+    @Test
+    public void testRetainNodes() throws Exception {
+        ResultProducerCache cache = createCache(10);
+        cache.getProducer("node1");
+        cache.getProducer("node2");
+        cache.retainNodes(Collections.singleton(node("node2")));
+        Assert.assertEquals(1, cache.size());
+        cache.getProducer("node2");
+        Assert.assertEquals(2, created.size());
+    }
+
+    private static Node node(final String id) {
+        return new Node() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getHost() {
+                return null;
+            }
+
+            @Override
+            public int getPort() {
+                return 0;
+            }
+
+            @Override
+            public String getAlias() {
+                return null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.dosgi.balancer;
+
+import org.apache.karaf.cellar.core.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class LoadBalancingStrategiesTest {
+
+    private final Node node1 = node("node1", "host1");
+    private final Node node2 = node("node2", "host2");
+    private final Node node3 = node("node3", "host1");
+    private final List<Node> nodes = Arrays.asList(node1, node2, node3);
+
+    @Test
+    public void testCreate() throws Exception {
+        Assert.assertNull(LoadBalancingStrategies.create(LoadBalancingStrategies.SHARED, node1));
+        Assert.assertTrue(LoadBalancingStrategies.create(LoadBalancingStrategies.ROUND_ROBIN, node1) instanceof RoundRobinStrategy);
+        Assert.assertTrue(LoadBalancingStrategies.create(LoadBalancingStrategies.EWMA, node1) instanceof EwmaLatencyStrategy);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateUnknown() throws Exception {
+        LoadBalancingStrategies.create("unknown", node1);
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        RoundRobinStrategy strategy = new RoundRobinStrategy();
+        Assert.assertSame(node1, strategy.select(nodes));
+        Assert.assertSame(node2, strategy.select(nodes));
+        Assert.assertSame(node3, strategy.select(nodes));
+        Assert.assertSame(node1, strategy.select(nodes));
+        Assert.assertNull(strategy.select(Arrays.<Node>asList()));
+    }
+
+    @Test
+    public void testLeastOutstanding() throws Exception {
+        LeastOutstandingStrategy strategy = new LeastOutstandingStrategy();
+        strategy.onRequest(node1);
+        strategy.onRequest(node1);
+        strategy.onRequest(node2);
+        Assert.assertSame(node3, strategy.select(nodes));
+        strategy.onRequest(node3);
+        strategy.onResponse(node2, 10);
+        Assert.assertSame(node2, strategy.select(nodes));
+        Assert.assertEquals(2, strategy.getOutstanding(node1));
+        Assert.assertEquals(0, strategy.getOutstanding(node2));
+    }
+
+    @Test
+    public void testEwmaLatency() throws Exception {
+        EwmaLatencyStrategy strategy = new EwmaLatencyStrategy(0.5);
+        strategy.onResponse(node1, 100);
+        strategy.onResponse(node2, 10);
+        // node3 is not measured yet
+        Assert.assertSame(node3, strategy.select(nodes));
+        strategy.onResponse(node3, 50);
+        Assert.assertSame(node2, strategy.select(nodes));
+        strategy.onResponse(node2, 190);
+        Assert.assertEquals(100.0, strategy.getLatency(node2), 0.001);
+        Assert.assertSame(node3, strategy.select(nodes));
+    }
+
+    @Test
+    public void testEwmaLatencyDecay() throws Exception {
+        final long[] now = new long[]{ 0 };
+        EwmaLatencyStrategy strategy = new EwmaLatencyStrategy(0.5, 1000) {
+            @Override
+            protected long now() {
+                return now[0];
+            }
+        };
+        // the call to node1 timed out
+        strategy.onResponse(node1, 30000);
+        strategy.onResponse(node2, 10);
+        strategy.onResponse(node3, 10);
+        Assert.assertNotSame(node1, strategy.select(nodes));
+
+        // the calls in flight are weighted
+        strategy.onRequest(node2);
+        strategy.onRequest(node2);
+        Assert.assertSame(node3, strategy.select(nodes));
+        Assert.assertEquals(2, strategy.getOutstanding(node2));
+        strategy.onResponse(node2, 10);
+        strategy.onResponse(node2, 10);
+
+        // node1 is not called, its latency decays until it is called again
+        now[0] = 10000;
+        strategy.onResponse(node2, 10);
+        strategy.onResponse(node3, 10);
+        Assert.assertSame(node1, strategy.select(nodes));
+        Assert.assertEquals(30000.0, strategy.getLatency(node1), 0.001);
+    }
+
+    @Test
+    public void testSameHost() throws Exception {
+        SameHostStrategy strategy = new SameHostStrategy(node("local", "host1"));
+        Assert.assertSame(node1, strategy.select(nodes));
+        Assert.assertSame(node3, strategy.select(nodes));
+        Assert.assertSame(node1, strategy.select(nodes));
+        Assert.assertSame(node2, strategy.select(Arrays.asList(node2)));
+    }
+
+    private static Node node(final String id, final String host) {
+        return new Node() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getHost() {
+                return host;
+            }
+
+            @Override
+            public int getPort() {
+                return 0;
+            }
+
+            @Override
+            public String getAlias() {
+                return null;
+            }
+        };
+    }
+
+}
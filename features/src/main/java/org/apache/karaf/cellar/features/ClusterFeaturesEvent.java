@@ -17,12 +17,15 @@ import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.event.Event;
 import org.apache.karaf.features.FeatureEvent.EventType;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Cluster features event.
  */
 public class ClusterFeaturesEvent extends Event {
 
     private static final String separator = "/";
+    private static final AtomicLong SEQUENCE = new AtomicLong();
 
     private String name;
     private String version;
@@ -32,6 +35,7 @@ public class ClusterFeaturesEvent extends Event {
     private Boolean upgrade;
     private EventType type;
     private Node local;
+    private long sequence = SEQUENCE.incrementAndGet();
 
     public ClusterFeaturesEvent(String name, String version, EventType type) {
         super(name + separator + version);
@@ -90,4 +94,18 @@ public class ClusterFeaturesEvent extends Event {
     public void setLocal(Node local) {
         this.local = local;
     }
+
+    /**
+     * Get the position of the event in the stream of features events produced by the source node.
+     *
+     * @return the event sequence number on the source node.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
 }
@@ -25,4 +25,8 @@ public class Constants {
     // configuration category
     public static final String CATEGORY = "feature";
 
+    // number of threads loading the features repositories
+    public static final String REPOSITORY_THREADS = "repository.threads";
+    public static final int DEFAULT_REPOSITORY_THREADS = 4;
+
 }
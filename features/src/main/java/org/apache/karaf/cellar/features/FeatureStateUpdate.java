@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+/**
+ * Atomic update of a feature state in the cluster, applied where the feature state is stored.
+ */
+public class FeatureStateUpdate implements ClusterEntryProcessor<String, FeatureState> {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean create;
+    private String name;
+    private String version;
+    private boolean installed;
+
+    /**
+     * Create or update the whole feature state.
+     *
+     * @param name the feature name.
+     * @param version the feature version.
+     * @param installed true if the feature is installed, false else.
+     * @return the feature state update.
+     */
+    public static FeatureStateUpdate state(String name, String version, boolean installed) {
+        FeatureStateUpdate update = new FeatureStateUpdate();
+        update.create = true;
+        update.name = name;
+        update.version = version;
+        update.installed = installed;
+        return update;
+    }
+
+    /**
+     * Update the installed flag of an existing feature state.
+     *
+     * @param installed true if the feature is installed, false else.
+     * @return the feature state update.
+     */
+    public static FeatureStateUpdate installed(boolean installed) {
+        FeatureStateUpdate update = new FeatureStateUpdate();
+        update.installed = installed;
+        return update;
+    }
+
+    @Override
+    public FeatureState process(String key, FeatureState state) {
+        if (state == null) {
+            if (!create) {
+                return null;
+            }
+            state = new FeatureState();
+        }
+        if (name != null) {
+            state.setName(name);
+        }
+        if (version != null) {
+            state.setVersion(version);
+        }
+        state.setInstalled(installed);
+        return state;
+    }
+
+}
@@ -17,6 +17,7 @@ import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.control.SwitchStatus;
+import org.apache.karaf.cellar.core.event.EventBatcher;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventType;
 import org.apache.karaf.features.FeatureEvent;
@@ -26,7 +27,11 @@ import org.osgi.service.cm.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Handler for cluster features event.
@@ -39,13 +44,22 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
 
     private final Switch eventSwitch = new BasicSwitch(SWITCH_ID);
 
+    private EventBatcher<ClusterFeaturesEvent> batcher;
+
     @Override
     public void init(BundleContext bundleContext) {
         super.init(bundleContext);
+        batcher = new EventBatcher<ClusterFeaturesEvent>(Constants.CATEGORY, ClusterFeaturesEvent::getSequence, this::apply);
+        batcher.setConfigurationAdmin(configurationAdmin);
+        batcher.init();
     }
 
     @Override
     public void destroy() {
+        if (batcher != null) {
+            batcher.destroy();
+            batcher = null;
+        }
         super.destroy();
     }
 
@@ -86,42 +100,32 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
             Boolean isInstalled = isFeatureInstalledLocally(name, version);
             try {
                 if (FeatureEvent.EventType.FeatureInstalled.equals(type)) {
-                    boolean noRefresh = event.getNoRefresh();
-                    boolean noStart = event.getNoStart();
-                    boolean noManage = event.getNoManage();
-                    boolean upgrade = event.getUpgrade();
-                    EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
-                    if (noRefresh) {
-                        options.add(FeaturesService.Option.NoAutoRefreshBundles);
-                    }
-                    if (noStart) {
-                        options.add(FeaturesService.Option.NoAutoStartBundles);
-                    }
-                    if (noManage) {
-                        options.add(FeaturesService.Option.NoAutoManageBundles);
-                    }
-                    if (upgrade) {
-                        options.add(FeaturesService.Option.Upgrade);
-                    }
-                    if (version != null) {
+                    EnumSet<FeaturesService.Option> options = getOptions(event);
+                    prefetchFeature(name, version);
+                    if (batcher != null && batcher.isEnabled()) {
+                        LOGGER.debug("CELLAR FEATURE: queuing installation of feature {}/{}", name, version);
+                        batcher.enqueue(event);
+                    } else if (version != null) {
                         LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", name, version);
                         featuresService.installFeature(name, version, options);
                     } else {
                         LOGGER.debug("CELLAR FEATURE: installing feature {}", name);
                         featuresService.installFeature(name, options);
                     }
-                } else if (FeatureEvent.EventType.FeatureUninstalled.equals(type) && isInstalled) {
-                    boolean noRefresh = event.getNoRefresh();
-                    EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
-                    if (noRefresh) {
-                        options.add(FeaturesService.Option.NoAutoRefreshBundles);
-                    }
-                    if (version != null) {
-                        LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", name, version);
-                        featuresService.uninstallFeature(name, version, options);
-                    } else {
-                        LOGGER.debug("CELLAR FEATURE: uninstalling feature {}", name);
-                        featuresService.uninstallFeature(name, options);
+                } else if (FeatureEvent.EventType.FeatureUninstalled.equals(type)) {
+                    EnumSet<FeaturesService.Option> options = getOptions(event);
+                    if (batcher != null && batcher.isEnabled()) {
+                        // the feature can be pending installation in the batch, it's checked when the batch is applied
+                        LOGGER.debug("CELLAR FEATURE: queuing uninstallation of feature {}/{}", name, version);
+                        batcher.enqueue(event);
+                    } else if (isInstalled) {
+                        if (version != null) {
+                            LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", name, version);
+                            featuresService.uninstallFeature(name, version, options);
+                        } else {
+                            LOGGER.debug("CELLAR FEATURE: uninstalling feature {}", name);
+                            featuresService.uninstallFeature(name, options);
+                        }
                     }
                 }
             } catch (Exception e) {
@@ -130,6 +134,123 @@ public class FeaturesEventHandler extends FeaturesSupport implements EventHandle
         } else LOGGER.trace("CELLAR FEATURE: feature {} is marked BLOCKED INBOUND for cluster group {}", name, event.getSourceGroup().getName());
     }
 
+    /**
+     * Get the features service options of a cluster features event.
+     *
+     * @param event the cluster features event.
+     * @return the features service options.
+     */
+    private static EnumSet<FeaturesService.Option> getOptions(ClusterFeaturesEvent event) {
+        EnumSet<FeaturesService.Option> options = EnumSet.noneOf(FeaturesService.Option.class);
+        if (Boolean.TRUE.equals(event.getNoRefresh())) {
+            options.add(FeaturesService.Option.NoAutoRefreshBundles);
+        }
+        if (FeatureEvent.EventType.FeatureInstalled.equals(event.getType())) {
+            if (Boolean.TRUE.equals(event.getNoStart())) {
+                options.add(FeaturesService.Option.NoAutoStartBundles);
+            }
+            if (Boolean.TRUE.equals(event.getNoManage())) {
+                options.add(FeaturesService.Option.NoAutoManageBundles);
+            }
+            if (Boolean.TRUE.equals(event.getUpgrade())) {
+                options.add(FeaturesService.Option.Upgrade);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Apply a batch of cluster features events, in the batch order.
+     * The consecutive events with the same action and the same options (NoAutoRefreshBundles, Upgrade, ...) are
+     * submitted as a single deployment to the features service.
+     *
+     * @param events the ordered cluster features events.
+     */
+    protected void apply(List<ClusterFeaturesEvent> events) {
+        List<FeatureRequest> deployment = new ArrayList<FeatureRequest>();
+        for (ClusterFeaturesEvent event : events) {
+            FeatureRequest request = new FeatureRequest(event.getName(), event.getVersion(),
+                    FeatureEvent.EventType.FeatureInstalled.equals(event.getType()), getOptions(event));
+            if (!deployment.isEmpty() && !deployment.get(0).isCompatible(request)) {
+                deploy(deployment);
+                deployment = new ArrayList<FeatureRequest>();
+            }
+            deployment.add(request);
+        }
+        deploy(deployment);
+    }
+
+    /**
+     * Submit compatible feature requests as a single deployment.
+     *
+     * @param deployment the compatible feature requests.
+     */
+    private void deploy(List<FeatureRequest> deployment) {
+        if (deployment.isEmpty()) {
+            return;
+        }
+        FeatureRequest first = deployment.get(0);
+        Set<String> features = new LinkedHashSet<String>();
+        for (FeatureRequest request : deployment) {
+            if (first.isInstall() || isFeatureInstalledLocally(request.getName(), request.getVersion())) {
+                features.add(request.getId());
+            }
+        }
+        if (features.isEmpty()) {
+            return;
+        }
+        if (first.isInstall()) {
+            LOGGER.debug("CELLAR FEATURE: installing features {}", features);
+            installFeatures(features, first.getOptions());
+        } else {
+            LOGGER.debug("CELLAR FEATURE: uninstalling features {}", features);
+            uninstallFeatures(features, first.getOptions());
+        }
+    }
+
+    /**
+     * Feature install or uninstall request waiting in the batch.
+     */
+    private static class FeatureRequest {
+
+        private final String name;
+        private final String version;
+        private final boolean install;
+        private final EnumSet<FeaturesService.Option> options;
+
+        FeatureRequest(String name, String version, boolean install, EnumSet<FeaturesService.Option> options) {
+            this.name = name;
+            this.version = version;
+            this.install = install;
+            this.options = options;
+        }
+
+        String getId() {
+            return getFeatureId(name, version);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getVersion() {
+            return version;
+        }
+
+        boolean isInstall() {
+            return install;
+        }
+
+        EnumSet<FeaturesService.Option> getOptions() {
+            return options;
+        }
+
+        boolean isCompatible(FeatureRequest other) {
+            return install == other.install && options.equals(other.options);
+        }
+
+    }
+
     /**
      * Get the event type that this handler is able to handle.
      *
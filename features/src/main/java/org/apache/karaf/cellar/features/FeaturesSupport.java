@@ -16,7 +16,11 @@ package org.apache.karaf.cellar.features;
 import org.apache.karaf.cellar.core.CellarSupport;
 import org.apache.karaf.cellar.core.Configurations;
 import org.apache.karaf.cellar.core.Group;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.event.EventType;
+import org.apache.karaf.features.BundleInfo;
+import org.apache.karaf.features.Conditional;
+import org.apache.karaf.features.Dependency;
 import org.apache.karaf.features.Feature;
 import org.apache.karaf.features.FeaturesService;
 import org.apache.karaf.features.Repository;
@@ -25,7 +29,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Generic features support.
@@ -35,6 +43,9 @@ public class FeaturesSupport extends CellarSupport {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(FeaturesSupport.class);
 
     protected FeaturesService featuresService;
+    protected ArtifactCache artifactCache;
+    protected LocalFeaturesCache localFeaturesCache;
+    protected RepositoryLoader repositoryLoader;
 
     public void init(BundleContext bundleContext) {
         // nothing to do
@@ -52,6 +63,9 @@ public class FeaturesSupport extends CellarSupport {
      * @return true if the feature is already installed locally, false else.
      */
     public Boolean isFeatureInstalledLocally(String name, String version) {
+        if (localFeaturesCache != null) {
+            return localFeaturesCache.isFeatureInstalled(name, version);
+        }
         if (featuresService != null) {
             try {
                 Feature[] localFeatures = featuresService.listInstalledFeatures();
@@ -76,6 +90,9 @@ public class FeaturesSupport extends CellarSupport {
      * @return true if the features repository is already registered locally, false else.
      */
     public Boolean isRepositoryRegisteredLocally(String uri) {
+        if (localFeaturesCache != null) {
+            return localFeaturesCache.isRepositoryRegistered(uri);
+        }
         try {
             Repository[] localRepositories = featuresService.listRepositories();
             for (Repository localRepository : localRepositories) {
@@ -89,6 +106,136 @@ public class FeaturesSupport extends CellarSupport {
         return false;
     }
 
+    /**
+     * Install a set of features locally in a single deployment (one resolution and one refresh).
+     * If the deployment fails, the features are installed one by one to report the failure per feature.
+     *
+     * @param features the set of feature ids (name/version).
+     * @param options the features service options of the deployment.
+     */
+    protected void installFeatures(Set<String> features, EnumSet<FeaturesService.Option> options) {
+        if (features.isEmpty()) {
+            return;
+        }
+        try {
+            featuresService.installFeatures(features, options);
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR FEATURE: failed to install features {} in a single deployment, installing one by one", features, e);
+            for (String feature : features) {
+                try {
+                    featuresService.installFeature(feature, options);
+                } catch (Exception fe) {
+                    LOGGER.error("CELLAR FEATURE: failed to install feature {}", feature, fe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uninstall a set of features locally in a single deployment (one resolution and one refresh).
+     * If the deployment fails, the features are uninstalled one by one to report the failure per feature.
+     *
+     * @param features the set of feature ids (name/version).
+     * @param options the features service options of the deployment.
+     */
+    protected void uninstallFeatures(Set<String> features, EnumSet<FeaturesService.Option> options) {
+        if (features.isEmpty()) {
+            return;
+        }
+        try {
+            featuresService.uninstallFeatures(features, options);
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR FEATURE: failed to uninstall features {} in a single deployment, uninstalling one by one", features, e);
+            for (String feature : features) {
+                try {
+                    featuresService.uninstallFeature(feature, options);
+                } catch (Exception fe) {
+                    LOGGER.error("CELLAR FEATURE: failed to uninstall feature {}", feature, fe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the features service id of a feature.
+     *
+     * @param name the feature name.
+     * @param version the feature version (can be null).
+     * @return the feature id (name/version, or name if the version is not defined).
+     */
+    protected static String getFeatureId(String name, String version) {
+        if (version == null || version.isEmpty()) {
+            return name;
+        }
+        return name + "/" + version;
+    }
+
+    /**
+     * Populate the Cellar Maven repository with the bundles of a feature (and its dependencies) using the cluster
+     * artifact cache, so the features resolver doesn't download them again from the remote repositories.
+     *
+     * @param name the feature name.
+     * @param version the feature version.
+     */
+    public void prefetchFeature(String name, String version) {
+        if (artifactCache == null || !artifactCache.isEnabled() || featuresService == null) {
+            return;
+        }
+        try {
+            prefetchFeatures(featuresService.getFeatures(name, version), new HashSet<String>());
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR FEATURE: can't prefetch feature {}/{}", name, version, e);
+        }
+    }
+
+    private void prefetchFeatures(Feature[] features, Set<String> visited) throws Exception {
+        if (features == null) {
+            return;
+        }
+        for (Feature feature : features) {
+            if (!visited.add(feature.getId())) {
+                continue;
+            }
+            prefetchBundles(feature.getBundles());
+            for (Conditional conditional : feature.getConditional()) {
+                prefetchBundles(conditional.getBundles());
+            }
+            for (Dependency dependency : feature.getDependencies()) {
+                prefetchFeatures(featuresService.getFeatures(dependency.getName(), dependency.getVersion()), visited);
+            }
+        }
+    }
+
+    private void prefetchBundles(List<BundleInfo> bundles) {
+        for (BundleInfo bundle : bundles) {
+            artifactCache.prefetch(bundle.getLocation());
+        }
+    }
+
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+    public LocalFeaturesCache getLocalFeaturesCache() {
+        return localFeaturesCache;
+    }
+
+    public void setLocalFeaturesCache(LocalFeaturesCache localFeaturesCache) {
+        this.localFeaturesCache = localFeaturesCache;
+    }
+
+    public RepositoryLoader getRepositoryLoader() {
+        return repositoryLoader;
+    }
+
+    public void setRepositoryLoader(RepositoryLoader repositoryLoader) {
+        this.repositoryLoader = repositoryLoader;
+    }
+
     public FeaturesService getFeaturesService() {
         return featuresService;
     }
@@ -30,7 +30,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Dictionary;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -127,12 +132,26 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
 
                 if (clusterRepositories != null && !clusterRepositories.isEmpty()) {
                     // get the features repositories from the cluster to update locally
+                    List<String> missingRepositories = new ArrayList<String>();
                     for (String url : clusterRepositories.keySet()) {
+                        if (!isRepositoryRegisteredLocally(url)) {
+                            missingRepositories.add(url);
+                        }
+                    }
+                    // fetch the missing repositories (and their nested repositories) in parallel before registering them,
+                    // the nested repositories being registered with the repositories containing them
+                    Collection<String> addRepositories = missingRepositories;
+                    if (repositoryLoader != null && !missingRepositories.isEmpty()) {
+                        repositoryLoader.load(missingRepositories);
+                        addRepositories = repositoryLoader.getRoots(missingRepositories);
+                    }
+                    for (String url : addRepositories) {
                         try {
-                            if (!isRepositoryRegisteredLocally(url)) {
-                                LOGGER.debug("CELLAR FEATURE: adding repository {}", url);
-                                featuresService.addRepository(new URI(url));
+                            LOGGER.debug("CELLAR FEATURE: adding repository {}", url);
+                            if (artifactCache != null && repositoryLoader == null) {
+                                artifactCache.prefetch(url);
                             }
+                            featuresService.addRepository(new URI(url));
                         } catch (MalformedURLException e) {
                             LOGGER.error("CELLAR FEATURE: failed to add repository URL {} (malformed)", url, e);
                         } catch (Exception e) {
@@ -165,6 +184,9 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
 
                 if (clusterFeatures != null && !clusterFeatures.isEmpty()) {
                     boolean doUninstallFeaturesNotPresentInCluster = CellarUtils.doCleanupResourcesNotPresentInCluster(configurationAdmin) && synchronizers.containsKey(Constants.FEATURES_MAP + Configurations.SEPARATOR + groupName);
+                    // collect the features to install/uninstall, to apply them in a single deployment
+                    Set<String> featuresToInstall = new LinkedHashSet<String>();
+                    Set<String> featuresToUninstall = new LinkedHashSet<String>();
                     // get the features from the cluster group and update locally
                     for (FeatureState state : clusterFeatures.values()) {
                         String name = state.getName();
@@ -183,24 +205,19 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
 
                             // if feature has to be installed locally
                             if (clusterInstalled && !locallyInstalled) {
-                                try {
-                                    LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", state.getName(), state.getVersion());
-                                    featuresService.installFeature(state.getName(), state.getVersion());
-                                } catch (Exception e) {
-                                    LOGGER.error("CELLAR FEATURE: failed to install feature {}/{} ", new Object[]{state.getName(), state.getVersion()}, e);
-                                }
+                                LOGGER.debug("CELLAR FEATURE: installing feature {}/{}", state.getName(), state.getVersion());
+                                prefetchFeature(state.getName(), state.getVersion());
+                                featuresToInstall.add(getFeatureId(state.getName(), state.getVersion()));
                             }
                             // if feature has to be uninstalled locally (and node is not the first one in the cluster group)
                             if (doUninstallFeaturesNotPresentInCluster && !clusterInstalled && locallyInstalled) {
-                                try {
-                                    LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", state.getName(), state.getVersion());
-                                    featuresService.uninstallFeature(state.getName(), state.getVersion());
-                                } catch (Exception e) {
-                                    LOGGER.error("CELLAR FEATURE: failed to uninstall feature {}/{}", new Object[]{state.getName(), state.getVersion()}, e);
-                                }
+                                LOGGER.debug("CELLAR FEATURE: uninstalling feature {}/{}", state.getName(), state.getVersion());
+                                featuresToUninstall.add(getFeatureId(state.getName(), state.getVersion()));
                             }
                         } else LOGGER.trace("CELLAR FEATURE: feature {} is marked BLOCKED INBOUND for cluster group {}", name, groupName);
                     }
+                    installFeatures(featuresToInstall, EnumSet.noneOf(FeaturesService.Option.class));
+                    uninstallFeatures(featuresToUninstall, EnumSet.noneOf(FeaturesService.Option.class));
                 }
             } finally {
                 Thread.currentThread().setContextClassLoader(originalClassLoader);
@@ -300,8 +317,8 @@ public class FeaturesSynchronizer extends FeaturesSupport implements Synchronize
                             } else {
                                 if (clusterFeature.getInstalled() != installed) {
                                     // updating cluster state
-                                    clusterFeature.setInstalled(installed);
-                                    clusterFeatures.put(key, clusterFeature);
+                                    clusterManager.executeOnEntry(Constants.FEATURES_MAP + Configurations.SEPARATOR + groupName, key,
+                                            FeatureStateUpdate.installed(installed));
                                     // sending cluster event
                                     ClusterFeaturesEvent event;
                                     if (installed) {
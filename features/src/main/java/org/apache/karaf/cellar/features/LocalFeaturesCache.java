@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.FeatureEvent;
+import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.RepositoryEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the features installed and the features repositories registered on the local node.
+ * The cache is populated from the features service at init, and then maintained by the local features listener
+ * callbacks, avoiding to list and scan all local features for each cluster feature.
+ */
+public class LocalFeaturesCache {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(LocalFeaturesCache.class);
+
+    // feature name -> installed versions
+    private final Map<String, Set<String>> installedFeatures = new ConcurrentHashMap<String, Set<String>>();
+    private final Set<String> repositories = ConcurrentHashMap.newKeySet();
+
+    private FeaturesService featuresService;
+
+    public void init() {
+        if (featuresService == null) {
+            return;
+        }
+        try {
+            for (Feature feature : featuresService.listInstalledFeatures()) {
+                addFeature(feature.getName(), feature.getVersion());
+            }
+            for (Repository repository : featuresService.listRepositories()) {
+                repositories.add(repository.getURI().toString());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR FEATURE: can't populate the local features cache", e);
+        }
+    }
+
+    public void destroy() {
+        installedFeatures.clear();
+        repositories.clear();
+    }
+
+    /**
+     * Check if a feature is installed locally.
+     *
+     * @param name the feature name.
+     * @param version the feature version, or null to match any version.
+     * @return true if the feature is installed locally, false else.
+     */
+    public boolean isFeatureInstalled(String name, String version) {
+        if (name == null) {
+            return false;
+        }
+        Set<String> versions = installedFeatures.get(name);
+        if (versions == null) {
+            return false;
+        }
+        return (version == null) ? !versions.isEmpty() : versions.contains(version);
+    }
+
+    /**
+     * Check if a features repository is registered locally.
+     *
+     * @param uri the features repository URI.
+     * @return true if the features repository is registered locally, false else.
+     */
+    public boolean isRepositoryRegistered(String uri) {
+        return uri != null && repositories.contains(uri);
+    }
+
+    /**
+     * Update the cache with a local feature event.
+     *
+     * @param event the local feature event.
+     */
+    public void featureEvent(FeatureEvent event) {
+        if (event == null || event.getFeature() == null) {
+            return;
+        }
+        Feature feature = event.getFeature();
+        if (FeatureEvent.EventType.FeatureInstalled.equals(event.getType())) {
+            addFeature(feature.getName(), feature.getVersion());
+        } else if (FeatureEvent.EventType.FeatureUninstalled.equals(event.getType())) {
+            removeFeature(feature.getName(), feature.getVersion());
+        }
+    }
+
+    /**
+     * Update the cache with a local features repository event.
+     *
+     * @param event the local features repository event.
+     */
+    public void repositoryEvent(RepositoryEvent event) {
+        if (event == null || event.getRepository() == null || event.getRepository().getURI() == null) {
+            return;
+        }
+        String uri = event.getRepository().getURI().toString();
+        if (RepositoryEvent.EventType.RepositoryAdded.equals(event.getType())) {
+            repositories.add(uri);
+        } else if (RepositoryEvent.EventType.RepositoryRemoved.equals(event.getType())) {
+            repositories.remove(uri);
+        }
+    }
+
+    private void addFeature(String name, String version) {
+        if (name == null || version == null) {
+            return;
+        }
+        installedFeatures.compute(name, (k, versions) -> {
+            if (versions == null) {
+                versions = ConcurrentHashMap.newKeySet();
+            }
+            versions.add(version);
+            return versions;
+        });
+    }
+
+    private void removeFeature(String name, String version) {
+        if (name == null || version == null) {
+            return;
+        }
+        installedFeatures.computeIfPresent(name, (k, versions) -> {
+            versions.remove(version);
+            return versions.isEmpty() ? null : versions;
+        });
+    }
+
+    public FeaturesService getFeaturesService() {
+        return featuresService;
+    }
+
+    public void setFeaturesService(FeaturesService featuresService) {
+        this.featuresService = featuresService;
+    }
+
+}
@@ -57,6 +57,11 @@ public class LocalFeaturesListener extends FeaturesSupport implements org.apache
     @Override
     public void featureEvent(FeatureEvent event) {
 
+        // keep the local features cache up to date, whatever the listener and producer status
+        if (localFeaturesCache != null) {
+            localFeaturesCache.featureEvent(event);
+        }
+
         if (!isEnabled()) {
             LOGGER.trace("CELLAR FEATURE: local listener is disabled");
             return;
@@ -82,16 +87,9 @@ public class LocalFeaturesListener extends FeaturesSupport implements org.apache
                         FeatureEvent.EventType type = event.getType();
 
                         // update the features in the cluster group
-                        Map<String, FeatureState> clusterFeatures = clusterManager.getMap(Constants.FEATURES_MAP + Configurations.SEPARATOR + group.getName());
-                        FeatureState clusterFeatureState = new FeatureState();
-                        clusterFeatureState.setName(event.getFeature().getName());
-                        clusterFeatureState.setVersion(event.getFeature().getVersion());
-                        if (FeatureEvent.EventType.FeatureInstalled.equals(event.getType())) {
-                            clusterFeatureState.setInstalled(Boolean.TRUE);
-                        } else {
-                            clusterFeatureState.setInstalled(Boolean.FALSE);
-                        }
-                        clusterFeatures.put(event.getFeature().getName() + "/" + event.getFeature().getVersion(), clusterFeatureState);
+                        boolean installed = FeatureEvent.EventType.FeatureInstalled.equals(event.getType());
+                        clusterManager.executeOnEntry(Constants.FEATURES_MAP + Configurations.SEPARATOR + group.getName(), name + "/" + version,
+                                FeatureStateUpdate.state(name, version, installed));
 
                         // broadcast the event
                         ClusterFeaturesEvent featureEvent = new ClusterFeaturesEvent(name, version, type);
@@ -113,6 +111,11 @@ public class LocalFeaturesListener extends FeaturesSupport implements org.apache
     @Override
     public void repositoryEvent(RepositoryEvent event) {
 
+        // keep the local features cache up to date, whatever the listener and producer status
+        if (localFeaturesCache != null) {
+            localFeaturesCache.repositoryEvent(event);
+        }
+
         if (!isEnabled()) {
             LOGGER.trace("CELLAR FEATURE: local listener is disabled");
             return;
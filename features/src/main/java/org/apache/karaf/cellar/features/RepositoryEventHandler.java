@@ -25,6 +25,8 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Handler for cluster features repository event.
@@ -86,10 +88,20 @@ public class RepositoryEventHandler extends FeaturesSupport implements EventHand
                 if (event.getRefresh() != null && event.getRefresh()) {
                     if (uri == null) {
                         Repository[] repositories = featuresService.listRepositories();
-                        for (Repository repository : repositories) {
-                            LOGGER.debug("CELLAR FEATURE: refresh repository {}", repository.getURI().toString());
-                            featuresService.refreshRepository(repository.getURI());
+                        if (repositoryLoader != null) {
+                            List<String> uris = new ArrayList<String>();
+                            for (Repository repository : repositories) {
+                                uris.add(repository.getURI().toString());
+                            }
+                            repositoryLoader.refresh(uris);
+                        } else {
+                            for (Repository repository : repositories) {
+                                LOGGER.debug("CELLAR FEATURE: refresh repository {}", repository.getURI().toString());
+                                featuresService.refreshRepository(repository.getURI());
+                            }
                         }
+                    } else if (repositoryLoader != null) {
+                        repositoryLoader.refresh(Collections.singletonList(uri));
                     } else {
                         LOGGER.debug("CELLAR FEATURE: refresh repository {}", uri);
                         featuresService.refreshRepository(new URI(uri));
@@ -97,6 +109,9 @@ public class RepositoryEventHandler extends FeaturesSupport implements EventHand
                 } else {
                     if (!isRepositoryRegisteredLocally(uri)) {
                         LOGGER.debug("CELLAR FEATURE: adding repository URI {}", uri);
+                        if (repositoryLoader != null) {
+                            repositoryLoader.load(Collections.singletonList(uri));
+                        }
                         featuresService.addRepository(new URI(uri), event.getInstall());
                     } else {
                         LOGGER.debug("CELLAR FEATURE: repository URI {} is already registered locally", uri);
@@ -0,0 +1,456 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
+import org.apache.karaf.cellar.core.utils.CellarUtils;
+import org.apache.karaf.features.FeaturesService;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load features repositories (and their nested repositories) in parallel, with a bounded number of threads.
+ * Each repository is fetched only once per load, which also populates the Cellar Maven repository before the
+ * repositories are registered in the features service.
+ * Only the repositories read locally are read by the loader: the files, and the released Maven artifacts when the
+ * artifact cache is enabled. The other repositories are only fetched by the features service, so they are not
+ * downloaded twice.
+ * The loader only reads the nested repositories of each repository: the repositories are parsed once, by the
+ * features service when they are registered. The install step uses the loaded nesting to register only the root
+ * repositories, the features service registering the nested ones.
+ * The content hash and nested repositories of each repository are cached by URI and last modification date: an
+ * unchanged repository is not fetched again (released Maven artifacts never change), and doesn't have to be
+ * refreshed in the features service.
+ */
+public class RepositoryLoader {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(RepositoryLoader.class);
+
+    // repository URI -> last modification date, content hash and nested repositories
+    private final Map<String, RepositoryDescriptor> descriptors = new ConcurrentHashMap<String, RepositoryDescriptor>();
+
+    private ExecutorService executor;
+
+    private FeaturesService featuresService;
+    private ArtifactCache artifactCache;
+    private ConfigurationAdmin configurationAdmin;
+
+    public void init() {
+        executor = Executors.newFixedThreadPool(getThreads());
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        descriptors.clear();
+    }
+
+    /**
+     * Load features repositories and their nested repositories.
+     *
+     * @param uris the features repositories URI.
+     * @return the URI of the loaded repositories with a new or changed content (or not read by the loader).
+     */
+    public Set<String> load(Collection<String> uris) {
+        Map<String, RepositoryDescriptor> loaded = new HashMap<String, RepositoryDescriptor>();
+        Set<String> changed = load(uris, loaded);
+        descriptors.putAll(loaded);
+        return changed;
+    }
+
+    /**
+     * Load features repositories and their nested repositories, without keeping them in the loaded repositories yet.
+     *
+     * @param uris the features repositories URI.
+     * @param loaded the loaded repositories, populated by the load.
+     * @return the URI of the loaded repositories with a new or changed content (or not read by the loader).
+     */
+    private Set<String> load(Collection<String> uris, Map<String, RepositoryDescriptor> loaded) {
+        Set<String> changed = new HashSet<String>();
+        Set<String> visited = new HashSet<String>();
+        Set<String> wave = new LinkedHashSet<String>(uris);
+        // each wave loads in parallel the repositories nested in the previous wave not yet visited
+        while (!wave.isEmpty()) {
+            visited.addAll(wave);
+            Map<String, Future<RepositoryDescriptor>> futures = new LinkedHashMap<String, Future<RepositoryDescriptor>>();
+            for (final String uri : wave) {
+                futures.put(uri, submit(uri));
+            }
+            Set<String> next = new LinkedHashSet<String>();
+            for (Map.Entry<String, Future<RepositoryDescriptor>> entry : futures.entrySet()) {
+                String uri = entry.getKey();
+                RepositoryDescriptor previous = descriptors.get(uri);
+                RepositoryDescriptor descriptor;
+                try {
+                    descriptor = entry.getValue().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return changed;
+                } catch (ExecutionException e) {
+                    LOGGER.warn("CELLAR FEATURE: can't load features repository {}", uri, e.getCause());
+                    changed.add(uri);
+                    continue;
+                }
+                if (descriptor == null) {
+                    // not read by the loader, always refreshed by the features service
+                    changed.add(uri);
+                    continue;
+                }
+                if (previous == null || !previous.getHash().equals(descriptor.getHash())) {
+                    changed.add(uri);
+                }
+                loaded.put(uri, descriptor);
+                for (String nested : descriptor.getRepositories()) {
+                    if (!visited.contains(nested)) {
+                        next.add(nested);
+                    }
+                }
+            }
+            wave = next;
+        }
+        return changed;
+    }
+
+    /**
+     * Get the repositories to register in the features service for a set of loaded repositories: the repositories
+     * nested in another repository of the set are registered with it by the features service.
+     *
+     * @param uris the loaded features repositories URI.
+     * @return the root repositories URI, in the given order.
+     */
+    public List<String> getRoots(Collection<String> uris) {
+        Set<String> nested = new HashSet<String>();
+        for (String uri : uris) {
+            RepositoryDescriptor descriptor = descriptors.get(uri);
+            if (descriptor != null) {
+                for (String repository : descriptor.getRepositories()) {
+                    if (!repository.equals(uri)) {
+                        collect(repository, nested);
+                    }
+                }
+            }
+        }
+        List<String> roots = new ArrayList<String>();
+        Set<String> covered = new HashSet<String>();
+        for (String uri : uris) {
+            if (!nested.contains(uri)) {
+                roots.add(uri);
+                collect(uri, covered);
+            }
+        }
+        // repositories nesting each other
+        for (String uri : uris) {
+            if (!covered.contains(uri)) {
+                roots.add(uri);
+                collect(uri, covered);
+            }
+        }
+        return roots;
+    }
+
+    private void collect(String uri, Set<String> collected) {
+        if (!collected.add(uri)) {
+            return;
+        }
+        RepositoryDescriptor descriptor = descriptors.get(uri);
+        if (descriptor != null) {
+            for (String nested : descriptor.getRepositories()) {
+                collect(nested, collected);
+            }
+        }
+    }
+
+    /**
+     * Refresh features repositories in the features service, skipping the repositories whose content (including the
+     * nested repositories) didn't change since the last load.
+     * The loaded repositories are kept only once refreshed, so a failed refresh is done again by the next refresh.
+     *
+     * @param uris the features repositories URI.
+     * @throws Exception in case of refresh failure.
+     */
+    public void refresh(Collection<String> uris) throws Exception {
+        Map<String, RepositoryDescriptor> loaded = new HashMap<String, RepositoryDescriptor>();
+        Set<String> changed = load(uris, loaded);
+        Set<URI> refresh = new LinkedHashSet<URI>();
+        for (String uri : uris) {
+            if (isChanged(uri, changed, loaded, new HashSet<String>())) {
+                refresh.add(new URI(uri));
+            } else {
+                LOGGER.debug("CELLAR FEATURE: repository {} didn't change, no need to refresh", uri);
+            }
+        }
+        if (!refresh.isEmpty()) {
+            LOGGER.debug("CELLAR FEATURE: refresh repositories {}", refresh);
+            featuresService.refreshRepositories(refresh);
+        }
+        descriptors.putAll(loaded);
+    }
+
+    private boolean isChanged(String uri, Set<String> changed, Map<String, RepositoryDescriptor> loaded, Set<String> visited) {
+        if (changed.contains(uri)) {
+            return true;
+        }
+        if (!visited.add(uri)) {
+            return false;
+        }
+        RepositoryDescriptor descriptor = loaded.containsKey(uri) ? loaded.get(uri) : descriptors.get(uri);
+        if (descriptor == null) {
+            return true;
+        }
+        for (String nested : descriptor.getRepositories()) {
+            if (isChanged(nested, changed, loaded, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Future<RepositoryDescriptor> submit(final String uri) {
+        return executor.submit(() -> {
+            if (!isReadLocally(uri)) {
+                return null;
+            }
+            RepositoryDescriptor previous = descriptors.get(uri);
+            if (previous != null && ArtifactCache.isCacheable(uri)) {
+                // released Maven artifacts never change
+                return previous;
+            }
+            if (artifactCache != null) {
+                artifactCache.prefetch(uri);
+            }
+            return fetch(uri, previous);
+        });
+    }
+
+    /**
+     * Check if a features repository is read locally, and so can be read by the loader without downloading it again
+     * in the features service: the files, and the released Maven artifacts when the artifact cache is enabled (the
+     * features service resolving them from the Cellar Maven repository).
+     *
+     * @param uri the features repository URI.
+     * @return true if the repository is read by the loader, false else.
+     */
+    protected boolean isReadLocally(String uri) {
+        if (uri.startsWith("file:")) {
+            return true;
+        }
+        return artifactCache != null && artifactCache.isEnabled() && ArtifactCache.isCacheable(uri);
+    }
+
+    /**
+     * Fetch a features repository, unless it didn't change since the previous fetch.
+     *
+     * @param uri the features repository URI.
+     * @param previous the previous fetch of the repository (can be null).
+     * @return the repository content hash and nested repositories.
+     * @throws Exception in case of fetch failure.
+     */
+    private RepositoryDescriptor fetch(String uri, RepositoryDescriptor previous) throws Exception {
+        URLConnection connection = openConnection(uri);
+        long lastModified = connection.getLastModified();
+        if (previous != null && lastModified > 0 && lastModified == previous.getLastModified()) {
+            close(connection);
+            LOGGER.debug("CELLAR FEATURE: features repository {} not modified", uri);
+            return previous;
+        }
+        byte[] content;
+        try (InputStream is = connection.getInputStream()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            content = os.toByteArray();
+        }
+        LOGGER.debug("CELLAR FEATURE: features repository {} fetched", uri);
+        return new RepositoryDescriptor(lastModified, hash(content), getRepositories(uri, content));
+    }
+
+    /**
+     * Open a connection to a features repository.
+     *
+     * @param uri the features repository URI.
+     * @return the connection.
+     * @throws IOException in case of connection failure.
+     */
+    protected URLConnection openConnection(String uri) throws IOException {
+        return new URL(uri).openConnection();
+    }
+
+    private static void close(URLConnection connection) {
+        try {
+            connection.getInputStream().close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Read the nested repositories of a features repository.
+     *
+     * @param uri the features repository URI, to resolve the relative nested repositories.
+     * @param content the features repository content.
+     * @return the nested repositories URI.
+     * @throws XMLStreamException in case of invalid features repository.
+     */
+    static List<String> getRepositories(String uri, byte[] content) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        List<String> repositories = new ArrayList<String>();
+        XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(content));
+        try {
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamReader.START_ELEMENT) {
+                    depth++;
+                    // the repository elements are direct children of the features element
+                    if (depth == 2 && "repository".equals(reader.getLocalName())) {
+                        String repository = reader.getElementText().trim();
+                        depth--;
+                        if (!repository.isEmpty()) {
+                            URI nested = URI.create(repository);
+                            repositories.add(nested.isAbsolute() ? repository : URI.create(uri).resolve(nested).toString());
+                        }
+                    }
+                } else if (event == XMLStreamReader.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return repositories;
+    }
+
+    private static String hash(byte[] content) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest(content)) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the number of threads loading the repositories defined in etc/org.apache.karaf.cellar.node.cfg.
+     *
+     * @return the number of threads.
+     */
+    private int getThreads() {
+        String value = CellarUtils.getConfigurationProperty(configurationAdmin, Configurations.NODE,
+                Constants.CATEGORY + Configurations.SEPARATOR + Constants.REPOSITORY_THREADS, null);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("CELLAR FEATURE: invalid repository threads {}, using default", value);
+            }
+        }
+        return Constants.DEFAULT_REPOSITORY_THREADS;
+    }
+
+    public FeaturesService getFeaturesService() {
+        return featuresService;
+    }
+
+    public void setFeaturesService(FeaturesService featuresService) {
+        this.featuresService = featuresService;
+    }
+
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+    public ConfigurationAdmin getConfigurationAdmin() {
+        return configurationAdmin;
+    }
+
+    public void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    /**
+     * Last modification date, content hash and nested repositories of a features repository.
+     */
+    private static class RepositoryDescriptor {
+
+        private final long lastModified;
+        private final String hash;
+        private final List<String> repositories;
+
+        RepositoryDescriptor(long lastModified, String hash, List<String> repositories) {
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.repositories = Collections.unmodifiableList(repositories);
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        List<String> getRepositories() {
+            return repositories;
+        }
+
+    }
+
+}
@@ -16,12 +16,15 @@ package org.apache.karaf.cellar.features.internal.osgi;
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.features.FeaturesEventHandler;
 import org.apache.karaf.cellar.features.FeaturesSynchronizer;
+import org.apache.karaf.cellar.features.LocalFeaturesCache;
 import org.apache.karaf.cellar.features.LocalFeaturesListener;
 import org.apache.karaf.cellar.features.RepositoryEventHandler;
+import org.apache.karaf.cellar.features.RepositoryLoader;
 import org.apache.karaf.cellar.features.management.CellarFeaturesMBean;
 import org.apache.karaf.cellar.features.management.internal.CellarFeaturesMBeanImpl;
 import org.apache.karaf.features.FeaturesListener;
@@ -46,6 +49,7 @@ import java.util.Hashtable;
         },
         requires = {
                 @RequireService(ClusterManager.class),
+                @RequireService(ArtifactCache.class),
                 @RequireService(GroupManager.class),
                 @RequireService(EventProducer.class),
                 @RequireService(ConfigurationAdmin.class),
@@ -56,6 +60,8 @@ public class Activator extends BaseActivator {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
+    private LocalFeaturesCache localFeaturesCache;
+    private RepositoryLoader repositoryLoader;
     private LocalFeaturesListener localFeaturesListener;
     private FeaturesSynchronizer featuresSynchronizer;
     private FeaturesEventHandler featuresEventHandler;
@@ -80,11 +86,28 @@ public class Activator extends BaseActivator {
         FeaturesService featuresService = getTrackedService(FeaturesService.class);
         if (featuresService == null)
             return;
+        ArtifactCache artifactCache = getTrackedService(ArtifactCache.class);
+        if (artifactCache == null)
+            return;
+
+        LOGGER.debug("CELLAR FEATURE: init local features cache");
+        localFeaturesCache = new LocalFeaturesCache();
+        localFeaturesCache.setFeaturesService(featuresService);
+        localFeaturesCache.init();
+
+        LOGGER.debug("CELLAR FEATURE: init repository loader");
+        repositoryLoader = new RepositoryLoader();
+        repositoryLoader.setFeaturesService(featuresService);
+        repositoryLoader.setArtifactCache(artifactCache);
+        repositoryLoader.setConfigurationAdmin(configurationAdmin);
+        repositoryLoader.init();
 
         LOGGER.debug("CELLAR FEATURE: init repository event handler");
         repositoryEventHandler = new RepositoryEventHandler();
         repositoryEventHandler.setConfigurationAdmin(configurationAdmin);
         repositoryEventHandler.setFeaturesService(featuresService);
+        repositoryEventHandler.setLocalFeaturesCache(localFeaturesCache);
+        repositoryEventHandler.setRepositoryLoader(repositoryLoader);
         repositoryEventHandler.setClusterManager(clusterManager);
         repositoryEventHandler.setGroupManager(groupManager);
         repositoryEventHandler.init(bundleContext);
@@ -95,6 +118,8 @@ public class Activator extends BaseActivator {
         LOGGER.debug("CELLAR FEATURE: init features event handler");
         featuresEventHandler = new FeaturesEventHandler();
         featuresEventHandler.setFeaturesService(featuresService);
+        featuresEventHandler.setLocalFeaturesCache(localFeaturesCache);
+        featuresEventHandler.setArtifactCache(artifactCache);
         featuresEventHandler.setClusterManager(clusterManager);
         featuresEventHandler.setGroupManager(groupManager);
         featuresEventHandler.setConfigurationAdmin(configurationAdmin);
@@ -108,6 +133,7 @@ public class Activator extends BaseActivator {
         localFeaturesListener.setEventProducer(eventProducer);
         localFeaturesListener.setConfigurationAdmin(configurationAdmin);
         localFeaturesListener.setFeaturesService(featuresService);
+        localFeaturesListener.setLocalFeaturesCache(localFeaturesCache);
         localFeaturesListener.init(bundleContext);
         register(FeaturesListener.class, localFeaturesListener);
 
@@ -118,6 +144,9 @@ public class Activator extends BaseActivator {
         featuresSynchronizer.setEventProducer(eventProducer);
         featuresSynchronizer.setConfigurationAdmin(configurationAdmin);
         featuresSynchronizer.setFeaturesService(featuresService);
+        featuresSynchronizer.setLocalFeaturesCache(localFeaturesCache);
+        featuresSynchronizer.setRepositoryLoader(repositoryLoader);
+        featuresSynchronizer.setArtifactCache(artifactCache);
         featuresSynchronizer.init(bundleContext);
         props = new Hashtable();
         props.put("resource", "feature");
@@ -160,6 +189,14 @@ public class Activator extends BaseActivator {
             repositoryEventHandler.destroy();
             repositoryEventHandler = null;
         }
+        if (repositoryLoader != null) {
+            repositoryLoader.destroy();
+            repositoryLoader = null;
+        }
+        if (localFeaturesCache != null) {
+            localFeaturesCache.destroy();
+            localFeaturesCache = null;
+        }
     }
 
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FeatureStateUpdateTest {
+
+    @Test
+    public void testState() throws Exception {
+        FeatureState state = FeatureStateUpdate.state("foo", "1.0", true).process("foo/1.0", null);
+        Assert.assertNotNull(state);
+        Assert.assertEquals("foo", state.getName());
+        Assert.assertEquals("1.0", state.getVersion());
+        Assert.assertTrue(state.getInstalled());
+
+        state = FeatureStateUpdate.state("foo", "1.0", false).process("foo/1.0", state);
+        Assert.assertFalse(state.getInstalled());
+    }
+
+    @Test
+    public void testInstalled() throws Exception {
+        // the update of a missing feature state is ignored
+        Assert.assertNull(FeatureStateUpdate.installed(true).process("foo/1.0", null));
+
+        FeatureState existing = new FeatureState();
+        existing.setName("foo");
+        existing.setVersion("1.0");
+        existing.setInstalled(false);
+        FeatureState state = FeatureStateUpdate.installed(true).process("foo/1.0", existing);
+        Assert.assertTrue(state.getInstalled());
+        Assert.assertEquals("foo", state.getName());
+        Assert.assertEquals("1.0", state.getVersion());
+    }
+
+}
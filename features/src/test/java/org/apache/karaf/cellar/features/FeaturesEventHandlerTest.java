@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.features.FeatureEvent;
+import org.apache.karaf.features.FeaturesService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FeaturesEventHandlerTest {
+
+    @Test
+    public void testBatchOrder() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        handler.installed.add("bar/1.0");
+
+        handler.apply(Arrays.asList(
+                install("foo", false),
+                install("baz", false),
+                uninstall("bar"),
+                install("bar", false),
+                install("qux", true),
+                uninstall("foo")));
+
+        // the consecutive compatible events share a deployment, and the deployments keep the events order
+        Assert.assertEquals(Arrays.asList(
+                "install [foo/1.0, baz/1.0] []",
+                "uninstall [bar/1.0] []",
+                "install [bar/1.0] []",
+                "install [qux/1.0] [Upgrade]",
+                "uninstall [foo/1.0] []"), handler.deployments);
+    }
+
+    @Test
+    public void testBatchUninstallNotInstalled() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        handler.apply(Arrays.asList(uninstall("foo")));
+        Assert.assertTrue(handler.deployments.isEmpty());
+    }
+
+    private static ClusterFeaturesEvent install(String name, boolean upgrade) {
+        return new ClusterFeaturesEvent(name, "1.0", false, false, false, upgrade, FeatureEvent.EventType.FeatureInstalled);
+    }
+
+    private static ClusterFeaturesEvent uninstall(String name) {
+        return new ClusterFeaturesEvent(name, "1.0", FeatureEvent.EventType.FeatureUninstalled);
+    }
+
+    private static class RecordingHandler extends FeaturesEventHandler {
+
+        private final List<String> deployments = new ArrayList<String>();
+        private final Set<String> installed = new HashSet<String>();
+
+        @Override
+        protected void installFeatures(Set<String> features, EnumSet<FeaturesService.Option> options) {
+            deployments.add("install " + features + " " + options);
+            installed.addAll(features);
+        }
+
+        @Override
+        protected void uninstallFeatures(Set<String> features, EnumSet<FeaturesService.Option> options) {
+            deployments.add("uninstall " + features + " " + options);
+            installed.removeAll(features);
+        }
+
+        @Override
+        public Boolean isFeatureInstalledLocally(String name, String version) {
+            return installed.contains(name + "/" + version);
+        }
+
+    }
+
+}
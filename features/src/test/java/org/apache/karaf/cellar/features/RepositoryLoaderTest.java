@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.cellar.features;
+
+import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.features.FeaturesService;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class RepositoryLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<String>());
+
+    private RepositoryLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration configuration = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(configuration.getProperties()).andReturn(null).anyTimes();
+        ConfigurationAdmin configurationAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configurationAdmin.getConfiguration(Configurations.NODE, null)).andReturn(configuration).anyTimes();
+        EasyMock.replay(configuration, configurationAdmin);
+
+        loader = new RepositoryLoader() {
+            @Override
+            protected URLConnection openConnection(String uri) throws IOException {
+                fetched.add(uri);
+                return super.openConnection(uri);
+            }
+        };
+        loader.setConfigurationAdmin(configurationAdmin);
+        loader.init();
+    }
+
+    @After
+    public void tearDown() {
+        loader.destroy();
+    }
+
+    private String repository(String name, long lastModified, String... repositories) throws IOException {
+        StringBuilder builder = new StringBuilder("<features name=\"" + name + "\" xmlns=\"http://karaf.apache.org/xmlns/features/v1.6.0\">\n");
+        for (String repository : repositories) {
+            builder.append("  <repository>").append(repository).append("</repository>\n");
+        }
+        builder.append("  <feature name=\"").append(name).append("\" version=\"1.0\">\n");
+        builder.append("    <repository>ignored</repository>\n");
+        builder.append("  </feature>\n");
+        builder.append("</features>\n");
+        File file = new File(folder.getRoot(), name + ".xml");
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+        return file.toURI().toString();
+    }
+
+    @Test
+    public void testGetRepositories() throws Exception {
+        String xml = "<features><repository> nested.xml </repository><repository>mvn:foo/bar/1.0/xml/features</repository>"
+                + "<feature name=\"foo\"><repository>ignored</repository></feature></features>";
+        Assert.assertEquals(Arrays.asList("file:/base/nested.xml", "mvn:foo/bar/1.0/xml/features"),
+                RepositoryLoader.getRepositories("file:/base/root.xml", xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testLoadNested() throws Exception {
+        String leaf = repository("leaf", 10000L);
+        String nested = repository("nested", 10000L, leaf);
+        String root = repository("root", 10000L, nested);
+
+        Set<String> changed = loader.load(Collections.singletonList(root));
+        Assert.assertEquals(3, changed.size());
+        Assert.assertTrue(changed.containsAll(Arrays.asList(root, nested, leaf)));
+        // each repository is fetched once
+        Assert.assertEquals(3, fetched.size());
+    }
+
+    @Test
+    public void testLoadUnchanged() throws Exception {
+        String nested = repository("nested", 10000L);
+        String root = repository("root", 10000L, nested);
+        loader.load(Collections.singletonList(root));
+        fetched.clear();
+
+        // the connections are opened to check the modification date, the repositories are not changed
+        Assert.assertTrue(loader.load(Collections.singletonList(root)).isEmpty());
+        Assert.assertEquals(2, fetched.size());
+    }
+
+    @Test
+    public void testLoadModified() throws Exception {
+        String nested = repository("nested", 10000L);
+        String root = repository("root", 10000L, nested);
+        loader.load(Collections.singletonList(root));
+
+        String other = repository("other", 10000L);
+        repository("nested", 20000L, other);
+
+        Set<String> changed = loader.load(Collections.singletonList(root));
+        Assert.assertEquals(2, changed.size());
+        Assert.assertTrue(changed.containsAll(Arrays.asList(nested, other)));
+    }
+
+    @Test
+    public void testLoadRemote() throws Exception {
+        String remote = "http://repository.example.org/features.xml";
+        // without artifact cache, the remote repositories are only fetched by the features service
+        Assert.assertEquals(Collections.singleton(remote), loader.load(Collections.singletonList(remote)));
+        Assert.assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    public void testRefreshFailure() throws Exception {
+        String root = repository("root", 10000L);
+        FeaturesService featuresService = EasyMock.createMock(FeaturesService.class);
+        featuresService.refreshRepositories(Collections.singleton(new URI(root)));
+        EasyMock.expectLastCall().andThrow(new Exception("refresh failure"));
+        featuresService.refreshRepositories(Collections.singleton(new URI(root)));
+        EasyMock.expectLastCall();
+        EasyMock.replay(featuresService);
+        loader.setFeaturesService(featuresService);
+
+        try {
+            loader.refresh(Collections.singletonList(root));
+            Assert.fail("Refresh failure expected");
+        } catch (Exception e) {
+            // expected
+        }
+        // the failed refresh is done again, then the unchanged repository is not refreshed anymore
+        loader.refresh(Collections.singletonList(root));
+        loader.refresh(Collections.singletonList(root));
+        EasyMock.verify(featuresService);
+    }
+
+    @Test
+    public void testGetRoots() throws Exception {
+        String leaf = repository("leaf", 10000L);
+        String nested = repository("nested", 10000L, leaf);
+        String root = repository("root", 10000L, nested);
+        String single = repository("single", 10000L);
+        loader.load(Arrays.asList(leaf, root, single));
+
+        Assert.assertEquals(Arrays.asList(root, single), loader.getRoots(Arrays.asList(leaf, root, single)));
+        Assert.assertEquals(Collections.singletonList(nested), loader.getRoots(Arrays.asList(leaf, nested)));
+        // the nested repositories are roots when their parent is not in the set
+        Assert.assertEquals(Arrays.asList(leaf, single), loader.getRoots(Arrays.asList(leaf, single)));
+    }
+
+    @Test
+    public void testGetRootsCycle() throws Exception {
+        String first = new File(folder.getRoot(), "first.xml").toURI().toString();
+        String second = repository("second", 10000L, first);
+        repository("first", 10000L, second);
+        loader.load(Collections.singletonList(first));
+
+        Assert.assertEquals(Collections.singletonList(first), loader.getRoots(Arrays.asList(first, second)));
+    }
+
+}
@@ -14,9 +14,14 @@
 package org.apache.karaf.cellar.hazelcast;
 
 import com.hazelcast.core.Cluster;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.IdGenerator;
 import com.hazelcast.core.Member;
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+import org.apache.karaf.cellar.core.ClusterEntryReader;
 import org.apache.karaf.cellar.core.ClusterManager;
+import org.apache.karaf.cellar.core.ClusterMapListener;
+import org.apache.karaf.cellar.core.ClusterNodeListener;
 import org.apache.karaf.cellar.core.Group;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.utils.CombinedClassLoader;
@@ -51,6 +56,81 @@ public class HazelcastClusterManager extends HazelcastInstanceAware implements C
         return instance.getMap(mapName);
     }
 
+    /**
+     * Execute an update on a Map entry in Hazelcast, using an entry processor running on the partition owner.
+     *
+     * @param mapName the Map name.
+     * @param key the entry key.
+     * @param processor the update to apply on the entry.
+     * @return the result of the update.
+     */
+    @Override
+    public <K, V> Object executeOnEntry(String mapName, K key, ClusterEntryProcessor<K, V> processor) {
+        IMap<K, V> map = instance.getMap(mapName);
+        return map.executeOnKey(key, new HazelcastEntryProcessor<K, V>(processor));
+    }
+
+    /**
+     * Read a Map entry in Hazelcast, using a read-only entry processor running on the partition owner.
+     *
+     * @param mapName the Map name.
+     * @param key the entry key.
+     * @param reader the read to apply on the entry.
+     * @return the result of the read.
+     */
+    @Override
+    public <K, V> Object readEntry(String mapName, K key, ClusterEntryReader<K, V> reader) {
+        IMap<K, V> map = instance.getMap(mapName);
+        return map.executeOnKey(key, new HazelcastEntryReader<K, V>(reader));
+    }
+
+    /**
+     * Register a listener on a Map in Hazelcast, notified with the entry values.
+     *
+     * @param mapName the Map name.
+     * @param listener the map listener.
+     * @return the listener registration ID.
+     */
+    @Override
+    public <K, V> String addMapListener(String mapName, ClusterMapListener<K, V> listener) {
+        IMap<K, V> map = instance.getMap(mapName);
+        return map.addEntryListener(new HazelcastMapListener<K, V>(listener), true);
+    }
+
+    /**
+     * Unregister a listener from a Map in Hazelcast.
+     *
+     * @param mapName the Map name.
+     * @param registrationId the listener registration ID.
+     */
+    @Override
+    public void removeMapListener(String mapName, String registrationId) {
+        instance.getMap(mapName).removeEntryListener(registrationId);
+    }
+
+    /**
+     * Register a listener on the Hazelcast cluster members.
+     *
+     * @param listener the node listener.
+     * @return the listener registration ID.
+     */
+    @Override
+    public String addNodeListener(ClusterNodeListener listener) {
+        return instance.getCluster().addMembershipListener(new HazelcastNodeListener(listener));
+    }
+
+    /**
+     * Unregister a listener from the Hazelcast cluster members.
+     *
+     * @param registrationId the listener registration ID.
+     */
+    @Override
+    public void removeNodeListener(String registrationId) {
+        if (registrationId != null) {
+            instance.getCluster().removeMembershipListener(registrationId);
+        }
+    }
+
     /**
      * Get a List in Hazelcast.
      *
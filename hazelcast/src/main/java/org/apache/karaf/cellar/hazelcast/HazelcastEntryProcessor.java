@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import org.apache.karaf.cellar.core.ClusterEntryProcessor;
+
+import java.util.Map;
+
+/**
+ * Hazelcast entry processor delegating to a Cellar cluster entry processor.
+ * The processor is applied on the primary and backup replicas, and only the result of the processor is returned to
+ * the caller, not the entry value.
+ */
+public class HazelcastEntryProcessor<K, V> extends AbstractEntryProcessor<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ClusterEntryProcessor<K, V> processor;
+
+    public HazelcastEntryProcessor(ClusterEntryProcessor<K, V> processor) {
+        super(true);
+        this.processor = processor;
+    }
+
+    @Override
+    public Object process(Map.Entry<K, V> entry) {
+        // setting a null value removes the entry
+        V previous = entry.getValue();
+        V value = processor.process(entry.getKey(), previous);
+        entry.setValue(value);
+        return processor.result(entry.getKey(), previous, value);
+    }
+
+}
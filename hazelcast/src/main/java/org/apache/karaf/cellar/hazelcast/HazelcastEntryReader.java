@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.AbstractEntryProcessor;
+import org.apache.karaf.cellar.core.ClusterEntryReader;
+
+import java.util.Map;
+
+/**
+ * Hazelcast read-only entry processor delegating to a Cellar cluster entry reader.
+ * The entry is neither locked nor updated, and the reader is not applied on the backup replicas.
+ */
+public class HazelcastEntryReader<K, V> extends AbstractEntryProcessor<K, V> implements ReadOnly {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ClusterEntryReader<K, V> reader;
+
+    public HazelcastEntryReader(ClusterEntryReader<K, V> reader) {
+        super(false);
+        this.reader = reader;
+    }
+
+    @Override
+    public Object process(Map.Entry<K, V> entry) {
+        return reader.read(entry.getKey(), entry.getValue());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.map.listener.MapEvictedListener;
+import org.apache.karaf.cellar.core.ClusterMapListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hazelcast map listener delegating to a Cellar cluster map listener.
+ */
+public class HazelcastMapListener<K, V> implements EntryAddedListener<K, V>, EntryUpdatedListener<K, V>,
+        EntryRemovedListener<K, V>, EntryEvictedListener<K, V>, MapClearedListener, MapEvictedListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(HazelcastMapListener.class);
+
+    private final ClusterMapListener<K, V> listener;
+
+    public HazelcastMapListener(ClusterMapListener<K, V> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void entryAdded(EntryEvent<K, V> event) {
+        try {
+            listener.entryUpdated(event.getKey(), event.getValue());
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR HAZELCAST: map listener failed on added entry {}", event.getKey(), e);
+        }
+    }
+
+    @Override
+    public void entryUpdated(EntryEvent<K, V> event) {
+        try {
+            listener.entryUpdated(event.getKey(), event.getValue());
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR HAZELCAST: map listener failed on updated entry {}", event.getKey(), e);
+        }
+    }
+
+    @Override
+    public void entryRemoved(EntryEvent<K, V> event) {
+        try {
+            listener.entryRemoved(event.getKey());
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR HAZELCAST: map listener failed on removed entry {}", event.getKey(), e);
+        }
+    }
+
+    @Override
+    public void entryEvicted(EntryEvent<K, V> event) {
+        entryRemoved(event);
+    }
+
+    @Override
+    public void mapCleared(MapEvent event) {
+        listener.mapCleared();
+    }
+
+    @Override
+    public void mapEvicted(MapEvent event) {
+        listener.mapCleared();
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.cellar.hazelcast;
+
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
+import org.apache.karaf.cellar.core.ClusterNodeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hazelcast membership listener delegating to a Cellar cluster node listener.
+ */
+public class HazelcastNodeListener implements MembershipListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(HazelcastNodeListener.class);
+
+    private final ClusterNodeListener listener;
+
+    public HazelcastNodeListener(ClusterNodeListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void memberAdded(MembershipEvent event) {
+        try {
+            listener.nodeAdded(new HazelcastNode(event.getMember()));
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR HAZELCAST: node listener failed on added member {}", event.getMember(), e);
+        }
+    }
+
+    @Override
+    public void memberRemoved(MembershipEvent event) {
+        try {
+            listener.nodeRemoved(new HazelcastNode(event.getMember()));
+        } catch (Exception e) {
+            LOGGER.warn("CELLAR HAZELCAST: node listener failed on removed member {}", event.getMember(), e);
+        }
+    }
+
+    @Override
+    public void memberAttributeChanged(MemberAttributeEvent event) {
+        // nothing to do
+    }
+
+}
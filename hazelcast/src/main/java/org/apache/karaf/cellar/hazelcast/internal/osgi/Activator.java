@@ -19,6 +19,7 @@ import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.GroupManager;
 import org.apache.karaf.cellar.core.Node;
 import org.apache.karaf.cellar.core.Synchronizer;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.command.BasicCommandStore;
 import org.apache.karaf.cellar.core.command.ClusteredExecutionContext;
 import org.apache.karaf.cellar.core.command.CommandStore;
@@ -58,6 +59,7 @@ import java.util.*;
         provides = {
                 @ProvideService(HazelcastInstance.class),
                 @ProvideService(ClusterManager.class),
+                @ProvideService(ArtifactCache.class),
                 @ProvideService(GroupManager.class),
                 @ProvideService(EventTransportFactory.class),
                 @ProvideService(EventProducer.class),
@@ -85,6 +87,7 @@ public class Activator extends BaseActivator implements ManagedService {
     private List<Synchronizer> synchronizers = new ArrayList<Synchronizer>();
     private HazelcastInstance hazelcastInstance;
     private HazelcastGroupManager groupManager;
+    private ArtifactCache artifactCache;
     private DiscoveryTask discoveryTask;
     private CellarExtender extender;
     private TopicProducer producer;
@@ -183,6 +186,13 @@ public class Activator extends BaseActivator implements ManagedService {
         clusterManager.setCombinedClassLoader(combinedClassLoader);
         register(ClusterManager.class, clusterManager);
 
+        LOGGER.debug("CELLAR HAZELCAST: register cluster artifact cache");
+        artifactCache = new ArtifactCache();
+        artifactCache.setClusterManager(clusterManager);
+        artifactCache.setConfigurationAdmin(configurationAdmin);
+        artifactCache.init();
+        register(ArtifactCache.class, artifactCache);
+
         LOGGER.debug("CELLAR HAZELCAST: create Hazelcast event transport factory");
         HazelcastEventTransportFactory eventTransportFactory = new HazelcastEventTransportFactory();
         eventTransportFactory.setCombinedClassLoader(combinedClassLoader);
@@ -372,6 +382,10 @@ public class Activator extends BaseActivator implements ManagedService {
             }
             groupManager = null;
         }
+        if (artifactCache != null) {
+            artifactCache.destroy();
+            artifactCache = null;
+        }
         if (hazelcastServiceFactory != null) {
             hazelcastServiceFactory.destroy();
             hazelcastServiceFactory = null;
@@ -15,6 +15,7 @@ package org.apache.karaf.cellar.kar;
 
 import org.apache.karaf.cellar.core.CellarSupport;
 import org.apache.karaf.cellar.core.Configurations;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.control.BasicSwitch;
 import org.apache.karaf.cellar.core.control.Switch;
 import org.apache.karaf.cellar.core.event.EventHandler;
@@ -36,11 +37,16 @@ public class KarEventHandler extends CellarSupport implements EventHandler<Clust
     @Reference
     private KarService karService;
 
+    private ArtifactCache artifactCache;
+
     @Override
     public void handle(ClusterKarEvent event) {
         if (event.isInstall()) {
             try {
                 String karUrl = event.getId();
+                if (artifactCache != null) {
+                    artifactCache.prefetch(karUrl);
+                }
                 karService.install(new URI(karUrl));
             } catch (Exception e) {
                 LOGGER.error("CELLAR KAR: can't install {}", event.getId(), e);
@@ -74,4 +80,12 @@ public class KarEventHandler extends CellarSupport implements EventHandler<Clust
         this.karService = karService;
     }
 
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
 }
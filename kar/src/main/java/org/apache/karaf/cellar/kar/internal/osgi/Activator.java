@@ -15,6 +15,7 @@ package org.apache.karaf.cellar.kar.internal.osgi;
 
 import org.apache.karaf.cellar.core.ClusterManager;
 import org.apache.karaf.cellar.core.GroupManager;
+import org.apache.karaf.cellar.core.artifact.ArtifactCache;
 import org.apache.karaf.cellar.core.event.EventHandler;
 import org.apache.karaf.cellar.core.event.EventProducer;
 import org.apache.karaf.cellar.kar.KarEventHandler;
@@ -35,6 +36,7 @@ import java.util.Hashtable;
     },
     requires = {
         @RequireService(ClusterManager.class),
+        @RequireService(ArtifactCache.class),
         @RequireService(GroupManager.class),
         @RequireService(EventProducer.class),
         @RequireService(ConfigurationAdmin.class),
@@ -65,6 +67,9 @@ public class Activator extends BaseActivator {
         KarService karService = getTrackedService(KarService.class);
         if (karService == null)
             return;
+        ArtifactCache artifactCache = getTrackedService(ArtifactCache.class);
+        if (artifactCache == null)
+            return;
 
         LOGGER.debug("CELLAR KAR: init event handler");
         karEventHandler = new KarEventHandler();
@@ -72,6 +77,7 @@ public class Activator extends BaseActivator {
         karEventHandler.setClusterManager(clusterManager);
         karEventHandler.setGroupManager(groupManager);
         karEventHandler.setKarService(karService);
+        karEventHandler.setArtifactCache(artifactCache);
         Hashtable props = new Hashtable();
         props.put("managed", "true");
         register(new Class[]{ EventHandler.class }, karEventHandler, props);